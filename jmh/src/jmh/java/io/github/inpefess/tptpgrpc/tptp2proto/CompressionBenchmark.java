@@ -0,0 +1,108 @@
+/*
+ *  Copyright 2023 Boris Shminke
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+
+package io.github.inpefess.tptpgrpc.tptp2proto;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import io.grpc.Codec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Benchmarks of compressing responses with large included files.
+ *
+ * <p>The compressed size of the response is printed during set-up, so the time can be weighed
+ * against the saved bytes.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class CompressionBenchmark {
+  @Param({"2000"})
+  public int clauseCount;
+  @Param({"4"})
+  public int depth;
+  @Param({"5"})
+  public int includeCount;
+  @Param({"identity", "gzip", "deflate"})
+  public String encoding;
+
+  private Codec codec;
+  private byte[] serializedResponse;
+  private byte[] compressedResponse;
+
+  /**
+   * Convert a problem with included files and compress it once.
+   *
+   * @throws IOException if unable to write the included files
+   * @throws TptpSyntaxErrorException on syntax error
+   */
+  @Setup
+  public void setUp() throws IOException, TptpSyntaxErrorException {
+    final Path tptpPath = Files.createTempDirectory("tptp");
+    final String problem = new SyntheticProblems(0, depth)
+        .writeProblemWithIncludes(tptpPath, includeCount, clauseCount);
+    serializedResponse = new Tptp2Proto(new ParserConfig(tptpPath.toString())
+        .withIncludeCache(new IncludeCache(includeCount))
+        .withParserEngine(ParserEngine.HANDWRITTEN)).tptp2Proto(new StringReader(problem)).toByteArray();
+    codec = (Codec) AdaptiveCompression.compressorRegistry().lookupCompressor(encoding);
+    compressedResponse = compress().toByteArray();
+    System.out.printf("%n%s: %d bytes compressed to %d bytes%n", encoding,
+        serializedResponse.length, compressedResponse.length);
+  }
+
+  /**
+   * Compress a response as the server does.
+   *
+   * @return the compressed response
+   * @throws IOException if unable to compress
+   */
+  @Benchmark
+  public ByteArrayOutputStream compress() throws IOException {
+    final ByteArrayOutputStream compressed = new ByteArrayOutputStream(serializedResponse.length);
+    try (OutputStream output = codec.compress(compressed)) {
+      output.write(serializedResponse);
+    }
+    return compressed;
+  }
+
+  /**
+   * Decompress a response as the client does.
+   *
+   * @return the decompressed response
+   * @throws IOException if unable to decompress
+   */
+  @Benchmark
+  public byte[] decompress() throws IOException {
+    try (InputStream input = codec.decompress(new ByteArrayInputStream(compressedResponse))) {
+      return input.readAllBytes();
+    }
+  }
+}
@@ -0,0 +1,73 @@
+/*
+ *  Copyright 2023 Boris Shminke
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+
+package io.github.inpefess.tptpgrpc.tptp2proto;
+
+import java.io.StringReader;
+import java.util.HashSet;
+import java.util.concurrent.TimeUnit;
+import com.theoremsandstuff.tptp.parser.cnf_or;
+import com.theoremsandstuff.tptp.parser.cnf_root;
+import io.github.inpefess.tptpgrpc.tptpproto.Node;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Benchmarks of converting a clause with a deep term, like {@literal p(s(s(...s(X)...)))}, with
+ * the iterative and the recursive converters.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class DeepTermBenchmark {
+  // the Xtext parser is recursive, so the depth is limited by its stack usage
+  @Param({"100", "1000"})
+  public int depth;
+
+  private cnf_or clause;
+
+  /**
+   * Parse a clause with a deep term.
+   *
+   * @throws TptpSyntaxErrorException on syntax error
+   */
+  @Setup
+  public void setUp() throws TptpSyntaxErrorException {
+    final StringBuilder term = new StringBuilder("X");
+    for (int i = 0; i < depth; i++) {
+      term.insert(0, "s(").append(')');
+    }
+    final String problem = "cnf(deep, axiom, p(" + term + ") | X = " + term + ").";
+    clause = ((cnf_root) new Tptp2Proto("").parseAst(new StringReader(problem)).eContents().get(0))
+        .getExp().getDisjunction();
+  }
+
+  @Benchmark
+  public Node iterative() {
+    return new ClauseConverter(new HashSet<>()).convertClause(clause);
+  }
+
+  @Benchmark
+  public Node recursive() {
+    return new RecursiveClauseConverter(new HashSet<>()).convertClause(clause);
+  }
+}
@@ -0,0 +1,87 @@
+/*
+ *  Copyright 2023 Boris Shminke
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+
+package io.github.inpefess.tptpgrpc.tptp2proto;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import io.github.inpefess.tptpgrpc.tptpproto.Node;
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Benchmarks of parsing requests sent to an in-process server.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class GrpcBenchmark {
+  @Param({"100", "1000"})
+  public int clauseCount;
+  @Param({"4"})
+  public int depth;
+
+  private Server server;
+  private ManagedChannel channel;
+  private TptpGrpcClient client;
+  private String problem;
+
+  /**
+   * Start an in-process server and connect a client to it.
+   *
+   * @throws IOException if unable to start the server
+   */
+  @Setup
+  public void setUp() throws IOException {
+    final String serverName = InProcessServerBuilder.generateName();
+    server = InProcessServerBuilder.forName(serverName)
+        .addService(new TptpParserServer.TptpParserImpl(ServerOptions.parse(
+            new String[] {String.valueOf(Runtime.getRuntime().availableProcessors())},
+            Collections.emptyMap())))
+        .build().start();
+    channel = InProcessChannelBuilder.forName(serverName).build();
+    client = new TptpGrpcClient(channel);
+    problem = new SyntheticProblems(0, depth).clauses(clauseCount);
+  }
+
+  /**
+   * Stop the server.
+   *
+   * @throws InterruptedException if interrupted while waiting for termination
+   */
+  @TearDown
+  public void tearDown() throws InterruptedException {
+    channel.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+    server.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+  }
+
+  @Benchmark
+  public Node roundTrip() {
+    return client.parseTptp(problem);
+  }
+}
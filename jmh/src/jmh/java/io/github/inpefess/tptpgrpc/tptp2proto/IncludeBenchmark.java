@@ -0,0 +1,76 @@
+/*
+ *  Copyright 2023 Boris Shminke
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+
+package io.github.inpefess.tptpgrpc.tptp2proto;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import io.github.inpefess.tptpgrpc.tptpproto.Node;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Benchmarks of converting a problem which includes several axiom files.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class IncludeBenchmark {
+  @Param({"5"})
+  public int includeCount;
+  @Param({"1000"})
+  public int clauseCount;
+  @Param({"4"})
+  public int depth;
+
+  private Tptp2Proto cachingTptp2Proto;
+  private Tptp2Proto nonCachingTptp2Proto;
+  private String problem;
+
+  /**
+   * Write axiom files to a temporary TPTP folder.
+   *
+   * @throws IOException if unable to write files
+   */
+  @Setup
+  public void setUp() throws IOException {
+    final Path tptpPath = Files.createTempDirectory("TPTP");
+    problem = new SyntheticProblems(0, depth).writeProblemWithIncludes(tptpPath, includeCount,
+        clauseCount);
+    cachingTptp2Proto = new Tptp2Proto(tptpPath.toString());
+    nonCachingTptp2Proto =
+        new Tptp2Proto(new ParserConfig(tptpPath.toString()).withIncludeCache(new IncludeCache(0)));
+  }
+
+  @Benchmark
+  public Node cachedIncludes() throws IOException, TptpSyntaxErrorException {
+    return cachingTptp2Proto.tptp2Proto(new StringReader(problem));
+  }
+
+  @Benchmark
+  public Node parsedIncludes() throws IOException, TptpSyntaxErrorException {
+    return nonCachingTptp2Proto.tptp2Proto(new StringReader(problem));
+  }
+}
@@ -0,0 +1,117 @@
+/*
+ *  Copyright 2023 Boris Shminke
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+
+package io.github.inpefess.tptpgrpc.tptp2proto;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import com.theoremsandstuff.tptp.parser.cnf_or;
+import com.theoremsandstuff.tptp.parser.cnf_root;
+import io.github.inpefess.tptpgrpc.tptpproto.Node;
+import org.eclipse.emf.ecore.EObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Benchmarks of parsing a problem with Xtext and converting the AST to protobuf, compared to the
+ * hand-written CNF parser.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ParseBenchmark {
+  @Param({"100", "1000"})
+  public int clauseCount;
+  @Param({"4", "8"})
+  public int depth;
+
+  private Tptp2Proto tptp2Proto;
+  private Tptp2Proto handwritten;
+  private String problem;
+  private List<cnf_or> clauses;
+
+  /**
+   * Generate and parse a problem.
+   *
+   * @throws TptpSyntaxErrorException on syntax error
+   */
+  @Setup
+  public void setUp() throws TptpSyntaxErrorException {
+    tptp2Proto = new Tptp2Proto("");
+    handwritten = new Tptp2Proto(new ParserConfig("").withIncludeCache(new IncludeCache(1))
+        .withParserEngine(ParserEngine.HANDWRITTEN));
+    problem = new SyntheticProblems(0, depth).clauses(clauseCount);
+    clauses = new ArrayList<>();
+    for (final EObject entry : tptp2Proto.parseAst(new StringReader(problem)).eContents()) {
+      clauses.add(((cnf_root) entry).getExp().getDisjunction());
+    }
+  }
+
+  @Benchmark
+  public EObject parse() throws TptpSyntaxErrorException {
+    return tptp2Proto.parseAst(new StringReader(problem));
+  }
+
+  /**
+   * Convert the AST with {@link ClauseConverter}.
+   *
+   * @return converted clauses
+   */
+  @Benchmark
+  public List<Node> convert() {
+    final ClauseConverter clauseConverter = new ClauseConverter(new HashSet<>());
+    final List<Node> convertedClauses = new ArrayList<>(clauses.size());
+    for (final cnf_or clause : clauses) {
+      convertedClauses.add(clauseConverter.convertClause(clause));
+    }
+    return convertedClauses;
+  }
+
+  /**
+   * Convert the AST with {@link LegacyClauseConverter}.
+   *
+   * @return converted clauses
+   */
+  @Benchmark
+  public List<Node> convertLegacy() {
+    final LegacyClauseConverter clauseConverter = new LegacyClauseConverter();
+    final List<Node> convertedClauses = new ArrayList<>(clauses.size());
+    for (final cnf_or clause : clauses) {
+      convertedClauses.add(clauseConverter.transform_clause(clause).nodeBuilder.build());
+    }
+    return convertedClauses;
+  }
+
+  @Benchmark
+  public Node parseAndConvert() throws IOException, TptpSyntaxErrorException {
+    return tptp2Proto.tptp2Proto(new StringReader(problem));
+  }
+
+  @Benchmark
+  public Node parseAndConvertHandwritten() throws IOException, TptpSyntaxErrorException {
+    return handwritten.tptp2Proto(new StringReader(problem));
+  }
+}
@@ -0,0 +1,78 @@
+/*
+ *  Copyright 2023 Boris Shminke
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+
+package io.github.inpefess.tptpgrpc.tptp2proto;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+import io.github.inpefess.tptpgrpc.tptpproto.Node;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Benchmarks of protobuf serialisation of parsed problems.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SerializationBenchmark {
+  @Param({"1000"})
+  public int clauseCount;
+  @Param({"4", "8"})
+  public int depth;
+
+  private Node node;
+  private byte[] serializedNode;
+
+  /**
+   * Generate and convert a problem.
+   *
+   * @throws IOException if unable to serialise the problem
+   * @throws TptpSyntaxErrorException on syntax error
+   */
+  @Setup
+  public void setUp() throws IOException, TptpSyntaxErrorException {
+    node = new Tptp2Proto("")
+        .tptp2Proto(new StringReader(new SyntheticProblems(0, depth).clauses(clauseCount)));
+    serializedNode = node.toByteArray();
+  }
+
+  /**
+   * Serialise a problem to a stream.
+   *
+   * @return serialised problem
+   * @throws IOException if unable to write
+   */
+  @Benchmark
+  public ByteArrayOutputStream writeTo() throws IOException {
+    final ByteArrayOutputStream outputStream = new ByteArrayOutputStream(serializedNode.length);
+    node.writeTo(outputStream);
+    return outputStream;
+  }
+
+  @Benchmark
+  public Node parseFrom() throws IOException {
+    return Node.parseFrom(serializedNode);
+  }
+}
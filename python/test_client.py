@@ -9,3 +9,17 @@ with grpc.insecure_channel("localhost:50051") as channel:
     server_connection = tptp_parser_pb2_grpc.TptpParserStub(channel)
     response_proto = server_connection.parseTptp(request_proto)
     print(f"Parsed TPTP formula: {response_proto}")
+    batch_proto = tptp_parser_pb2.BatchRequest(
+        string_message=["cnf(test, axiom, p(X)).", "cnf(test, axiom, q(X))."]
+    )
+    for parse_response in server_connection.parseBatch(batch_proto).response:
+        print(f"Parsed TPTP formula #{parse_response.id}: {parse_response}")
+    stream_requests = (
+        tptp_parser_pb2.ParseRequest(
+            id=i, string_message=f"cnf(test, axiom, p(c{i}))."
+        )
+        for i in range(3)
+    )
+    # responses come as soon as they are ready, use ids to match them
+    for parse_response in server_connection.parseTptpStream(stream_requests):
+        print(f"Parsed TPTP formula #{parse_response.id}: {parse_response}")
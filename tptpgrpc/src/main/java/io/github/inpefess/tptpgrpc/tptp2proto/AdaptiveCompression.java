@@ -0,0 +1,131 @@
+/*
+ *  Copyright 2023 Boris Shminke
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+
+package io.github.inpefess.tptpgrpc.tptp2proto;
+
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptor;
+import io.grpc.Codec;
+import io.grpc.CompressorRegistry;
+import io.grpc.DecompressorRegistry;
+import io.grpc.ForwardingClientCall;
+import io.grpc.ForwardingServerCall;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+
+/**
+ * Compression of large messages only, for servers and clients.
+ *
+ * <p>Each call is set up with a message encoding, which gRPC uses only if the other side accepts
+ * it (a server learns it from the {@literal grpc-accept-encoding} header of the call). Each message
+ * is compressed only if its serialised size reaches a threshold, so small messages don't pay for
+ * compression. Messages of unknown size are compressed.
+ */
+final class AdaptiveCompression implements ServerInterceptor, ClientInterceptor {
+  /** The encoding used by default. */
+  static final String DEFAULT_ENCODING = "gzip";
+  /** The compression threshold used by default. */
+  static final int DEFAULT_THRESHOLD_BYTES = 65536;
+
+  private final String encoding;
+  private final int thresholdBytes;
+
+  /**
+   * Constructor.
+   *
+   * @param encoding {@literal gzip}, {@literal deflate}, or {@literal identity} (no compression)
+   * @param thresholdBytes the minimal serialised size of a message to compress
+   * @throws IllegalArgumentException on an unknown encoding
+   */
+  AdaptiveCompression(final String encoding, final int thresholdBytes) {
+    if (compressorRegistry().lookupCompressor(encoding) == null) {
+      throw new IllegalArgumentException("unknown encoding: " + encoding);
+    }
+    this.encoding = encoding;
+    this.thresholdBytes = thresholdBytes;
+  }
+
+  /**
+   * Compressors to set to a server or channel builder.
+   *
+   * @return a registry with {@literal gzip} and {@literal deflate}
+   */
+  static final CompressorRegistry compressorRegistry() {
+    final CompressorRegistry registry = CompressorRegistry.newEmptyInstance();
+    registry.register(Codec.Identity.NONE);
+    registry.register(new Codec.Gzip());
+    registry.register(new DeflateCodec());
+    return registry;
+  }
+
+  /**
+   * Decompressors to set to a server or channel builder.
+   *
+   * @return a registry with {@literal gzip} and {@literal deflate} advertised to the other side
+   */
+  static final DecompressorRegistry decompressorRegistry() {
+    return DecompressorRegistry.getDefaultInstance().with(new DeflateCodec(), true);
+  }
+
+  private final boolean isLarge(final Object message) {
+    final int size = MetricsInterceptor.sizeOf(message);
+    return size < 0 || size >= thresholdBytes;
+  }
+
+  private final boolean isIdentity() {
+    return Codec.Identity.NONE.getMessageEncoding().equals(encoding);
+  }
+
+  @Override
+  public final <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(
+      final ServerCall<ReqT, RespT> call, final Metadata headers,
+      final ServerCallHandler<ReqT, RespT> next) {
+    if (isIdentity()) {
+      return next.startCall(call, headers);
+    }
+    // has to be set before the headers are sent, which is before the first message is known
+    call.setCompression(encoding);
+    return next.startCall(new ForwardingServerCall.SimpleForwardingServerCall<ReqT, RespT>(call) {
+      @Override
+      public void sendMessage(final RespT message) {
+        setMessageCompression(isLarge(message));
+        super.sendMessage(message);
+      }
+    }, headers);
+  }
+
+  @Override
+  public final <ReqT, RespT> ClientCall<ReqT, RespT> interceptCall(
+      final MethodDescriptor<ReqT, RespT> method, final CallOptions callOptions,
+      final Channel next) {
+    if (isIdentity()) {
+      return next.newCall(method, callOptions);
+    }
+    return new ForwardingClientCall.SimpleForwardingClientCall<ReqT, RespT>(
+        next.newCall(method, callOptions.withCompression(encoding))) {
+      @Override
+      public void sendMessage(final ReqT message) {
+        setMessageCompression(isLarge(message));
+        super.sendMessage(message);
+      }
+    };
+  }
+}
@@ -0,0 +1,267 @@
+/*
+ *  Copyright 2023 Boris Shminke
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+
+package io.github.inpefess.tptpgrpc.tptp2proto;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.github.inpefess.tptpgrpc.tptpproto.TptpParserGrpc;
+import io.grpc.CallOptions;
+import io.grpc.ClientCall;
+import io.grpc.Context;
+import io.grpc.ForwardingClientCall;
+import io.grpc.ForwardingClientCallListener;
+import io.grpc.Grpc;
+import io.grpc.InsecureChannelCredentials;
+import io.grpc.ManagedChannel;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+import io.grpc.health.v1.HealthCheckRequest;
+import io.grpc.health.v1.HealthCheckResponse;
+import io.grpc.health.v1.HealthGrpc;
+import io.grpc.stub.StreamObserver;
+
+/**
+ * A channel spreading calls over several backends, e.g. replicas of {@link TptpParserServer}.
+ *
+ * <p>Each backend has its own channel and its parsing service is watched with the standard gRPC
+ * health service. Calls go only to backends reporting {@code SERVING} (a backend without the
+ * health service counts as healthy, as in gRPC client-side health checking). When no backend is
+ * healthy, calls go to all of them and fail or succeed as the backends do. A broken health stream
+ * is opened again after a second.
+ *
+ * <p>With the {@link BalancingPolicy#LEAST_REQUEST} policy, each backend is also asked for its load
+ * (the number of parsing calls in flight from all clients, reported by {@link ServerHealth}) every
+ * second. The load of a backend is the larger of the reported number and the number of calls in
+ * flight from this channel, which is up to date between the checks.
+ */
+public final class BalancedChannel extends ManagedChannel {
+  private static final long RETRY_SECONDS = 1;
+  private static final long LOAD_CHECK_MILLIS = 1000;
+  private static final HealthCheckRequest HEALTH_REQUEST =
+      HealthCheckRequest.newBuilder().setService(TptpParserGrpc.SERVICE_NAME).build();
+
+  private final List<Backend> backends = new ArrayList<>();
+  private final BalancingPolicy policy;
+  private final AtomicInteger nextBackend = new AtomicInteger();
+  // health streams are cancelled with this context on shutdown
+  private final Context.CancellableContext watchContext = Context.ROOT.withCancellation();
+  private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(
+      new ThreadFactoryBuilder().setDaemon(true).setNameFormat("tptp-grpc-health-%d").build());
+
+  /**
+   * Constructor.
+   *
+   * @param channels channels to backends (shut down together with this channel)
+   * @param policy the policy of choosing a backend for a call
+   */
+  public BalancedChannel(final List<ManagedChannel> channels, final BalancingPolicy policy) {
+    this(channels, policy, LOAD_CHECK_MILLIS);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param channels channels to backends (shut down together with this channel)
+   * @param policy the policy of choosing a backend for a call
+   * @param loadCheckMillis the interval of asking backends for their load
+   */
+  BalancedChannel(final List<ManagedChannel> channels, final BalancingPolicy policy,
+      final long loadCheckMillis) {
+    this.policy = policy;
+    for (final ManagedChannel channel : channels) {
+      backends.add(new Backend(channel));
+    }
+    backends.forEach(Backend::watch);
+    if (policy == BalancingPolicy.LEAST_REQUEST) {
+      scheduler.scheduleWithFixedDelay(() -> backends.forEach(Backend::checkLoad),
+          loadCheckMillis, loadCheckMillis, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  /**
+   * Create a channel to one or several servers.
+   *
+   * @param targets comma-separated server addresses (with ports)
+   * @param policy the policy of choosing a server for a call if there are several
+   * @return a channel to the only server or a balanced channel
+   */
+  public static final ManagedChannel forTargets(final String targets,
+      final BalancingPolicy policy) {
+    final List<ManagedChannel> channels = new ArrayList<>();
+    for (final String target : targets.split(",")) {
+      channels.add(Grpc.newChannelBuilder(target, InsecureChannelCredentials.create())
+          .compressorRegistry(AdaptiveCompression.compressorRegistry())
+          .decompressorRegistry(AdaptiveCompression.decompressorRegistry()).build());
+    }
+    return channels.size() == 1 ? channels.get(0) : new BalancedChannel(channels, policy);
+  }
+
+  @Override
+  public final <ReqT, RespT> ClientCall<ReqT, RespT> newCall(
+      final MethodDescriptor<ReqT, RespT> method, final CallOptions callOptions) {
+    return pick().newCall(method, callOptions);
+  }
+
+  private final Backend pick() {
+    final List<Backend> healthyBackends =
+        backends.stream().filter(backend -> backend.healthy).collect(Collectors.toList());
+    final List<Backend> choices = healthyBackends.isEmpty() ? backends : healthyBackends;
+    // the round-robin counter also breaks ties of the least-request policy
+    final int first = Math.floorMod(nextBackend.getAndIncrement(), choices.size());
+    Backend chosen = choices.get(first);
+    if (policy == BalancingPolicy.LEAST_REQUEST) {
+      for (int i = 1; i < choices.size(); i++) {
+        final Backend backend = choices.get((first + i) % choices.size());
+        if (backend.load() < chosen.load()) {
+          chosen = backend;
+        }
+      }
+    }
+    return chosen;
+  }
+
+  @Override
+  public final String authority() {
+    return backends.get(0).channel.authority();
+  }
+
+  @Override
+  public final ManagedChannel shutdown() {
+    watchContext.cancel(null);
+    scheduler.shutdownNow();
+    backends.forEach(backend -> backend.channel.shutdown());
+    return this;
+  }
+
+  @Override
+  public final ManagedChannel shutdownNow() {
+    watchContext.cancel(null);
+    scheduler.shutdownNow();
+    backends.forEach(backend -> backend.channel.shutdownNow());
+    return this;
+  }
+
+  @Override
+  public final boolean isShutdown() {
+    return backends.stream().allMatch(backend -> backend.channel.isShutdown());
+  }
+
+  @Override
+  public final boolean isTerminated() {
+    return backends.stream().allMatch(backend -> backend.channel.isTerminated());
+  }
+
+  @Override
+  public final boolean awaitTermination(final long timeout, final TimeUnit unit)
+      throws InterruptedException {
+    final long deadline = System.nanoTime() + unit.toNanos(timeout);
+    for (final Backend backend : backends) {
+      if (!backend.channel.awaitTermination(deadline - System.nanoTime(),
+          TimeUnit.NANOSECONDS)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * A backend with its health and the number of calls in flight from this channel.
+   */
+  private final class Backend implements StreamObserver<HealthCheckResponse> {
+    private final ManagedChannel channel;
+    private final AtomicInteger callsInFlight = new AtomicInteger();
+    private volatile boolean healthy;
+    private volatile int reportedLoad;
+
+    Backend(final ManagedChannel channel) {
+      this.channel = channel;
+    }
+
+    private void watch() {
+      watchContext.run(() -> HealthGrpc.newStub(channel).watch(HEALTH_REQUEST, this));
+    }
+
+    private void checkLoad() {
+      final ClientCall<HealthCheckRequest, HealthCheckResponse> call =
+          channel.newCall(HealthGrpc.getCheckMethod(), CallOptions.DEFAULT);
+      call.start(new ClientCall.Listener<HealthCheckResponse>() {
+        @Override
+        public void onHeaders(final Metadata headers) {
+          final String load = headers.get(ServerHealth.CALLS_IN_FLIGHT_KEY);
+          // a server without the header reports no load
+          reportedLoad = load == null ? 0 : Integer.parseInt(load);
+        }
+      }, new Metadata());
+      call.request(1);
+      call.sendMessage(HEALTH_REQUEST);
+      call.halfClose();
+    }
+
+    private int load() {
+      return Math.max(callsInFlight.get(), reportedLoad);
+    }
+
+    @Override
+    public void onNext(final HealthCheckResponse response) {
+      healthy = response.getStatus() == HealthCheckResponse.ServingStatus.SERVING;
+    }
+
+    @Override
+    public void onError(final Throwable t) {
+      healthy = Status.fromThrowable(t).getCode() == Status.Code.UNIMPLEMENTED;
+      if (!healthy && !watchContext.isCancelled()) {
+        try {
+          scheduler.schedule(this::watch, RETRY_SECONDS, TimeUnit.SECONDS);
+        } catch (final RejectedExecutionException e) {
+          // the channel is shut down
+        }
+      }
+    }
+
+    @Override
+    public void onCompleted() {
+      onError(Status.UNAVAILABLE.withDescription("health stream closed").asException());
+    }
+
+    private <ReqT, RespT> ClientCall<ReqT, RespT> newCall(
+        final MethodDescriptor<ReqT, RespT> method, final CallOptions callOptions) {
+      return new ForwardingClientCall.SimpleForwardingClientCall<ReqT, RespT>(
+          channel.newCall(method, callOptions)) {
+        @Override
+        public void start(final Listener<RespT> responseListener, final Metadata headers) {
+          callsInFlight.incrementAndGet();
+          super.start(new ForwardingClientCallListener.SimpleForwardingClientCallListener<RespT>(
+              responseListener) {
+            @Override
+            public void onClose(final Status status, final Metadata trailers) {
+              callsInFlight.decrementAndGet();
+              super.onClose(status, trailers);
+            }
+          }, headers);
+        }
+      };
+    }
+  }
+}
@@ -0,0 +1,27 @@
+/*
+ *  Copyright 2023 Boris Shminke
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+
+package io.github.inpefess.tptpgrpc.tptp2proto;
+
+/**
+ * Policies of choosing a backend for a call in {@link BalancedChannel}.
+ */
+public enum BalancingPolicy {
+  /** Healthy backends in turn. */
+  ROUND_ROBIN,
+  /** A healthy backend with the fewest calls in flight from this client. */
+  LEAST_REQUEST
+}
@@ -0,0 +1,259 @@
+/*
+ *  Copyright 2023 Boris Shminke
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+
+package io.github.inpefess.tptpgrpc.tptp2proto;
+
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Logger;
+import com.google.protobuf.MessageLite;
+import io.github.inpefess.tptpgrpc.tptpproto.ManifestEntry;
+import io.github.inpefess.tptpgrpc.tptpproto.Node;
+import io.github.inpefess.tptpgrpc.tptpproto.OutputFormat;
+
+/**
+ * Convert a list of TPTP problems to protobuf binaries using several threads.
+ *
+ * <p>The output file for a problem is named by the order number of the problem in the list (e.g.
+ * {@literal 0.pb}, {@literal 1.pb}, and so forth) whatever the order of conversion is. If a problem
+ * can't be converted, a text file with the same number and the {@literal .error} extension is
+ * written instead, and the conversion of other problems goes on. Problems are saved either as
+ * {@link Node} trees, in the compact form of {@link CompactNodeCodec}, as graphs of
+ * {@link DagNodeCodec}, or as tensors of {@link GraphTensorCodec}. Graph tensors are labelled with
+ * the vocabulary file in the output folder, which is extended by each conversion (so the labels of
+ * problems converted earlier stay valid).
+ *
+ * <p>Instead of a file per problem, problems can be written to shards of a {@link CorpusWriter} in
+ * the order of the list (problems which failed to convert are left out).
+ *
+ * <p>With a file per problem, fingerprints of problems and their includes are saved to a
+ * {@link ConversionManifest}. An incremental conversion uses the manifest of the previous one to
+ * convert only the problems which changed (or include files which changed) and keeps the other
+ * output files in place.
+ */
+public final class BatchConverter {
+  private static final Logger logger = Logger.getLogger(BatchConverter.class.getName());
+
+  private final Tptp2ProtoPool parserPool;
+  private final int workerCount;
+  private final OutputFormat outputFormat;
+  private final long shardBytes;
+  private final boolean incremental;
+
+  /**
+   * Constructor.
+   *
+   * @param tptpPath the absolute path to the TPTP root folder
+   * @param workerCount the number of threads (and parser instances) to use
+   */
+  public BatchConverter(final String tptpPath, final int workerCount) {
+    this(new ParserConfig(tptpPath), workerCount, OutputFormat.TREE, 0, false);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param config the settings of parsers
+   * @param workerCount the number of threads (and parser instances) to use
+   * @param outputFormat the format of protobuf binaries
+   * @param shardBytes the maximal size of a shard of the output corpus (zero for a file per
+   *     problem)
+   * @param incremental whether to keep the output of problems which didn't change since the
+   *     previous conversion to the same folder (only for a file per problem)
+   */
+  public BatchConverter(final ParserConfig config, final int workerCount,
+      final OutputFormat outputFormat, final long shardBytes, final boolean incremental) {
+    if (incremental && shardBytes > 0) {
+      throw new IllegalArgumentException("Incremental conversion needs a file per problem");
+    }
+    this.workerCount = workerCount;
+    this.outputFormat = outputFormat;
+    this.shardBytes = shardBytes;
+    this.incremental = incremental;
+    parserPool = new Tptp2ProtoPool(config, workerCount);
+  }
+
+  /**
+   * Convert TPTP problems and save protobuf binaries to a given folder.
+   *
+   * @param problemList paths to TPTP problem files
+   * @param outputFolder a folder to write protobuf binaries (or shards) and error reports to
+   * @return the number of problems which failed to convert
+   * @throws IOException if unable to read the previous manifest or the vocabulary or write the
+   *     last shard, the manifest, or the vocabulary
+   * @throws InterruptedException if interrupted while waiting for the conversion to finish
+   */
+  public final int convert(final List<String> problemList, final Path outputFolder)
+      throws IOException, InterruptedException {
+    final ExecutorService executor = Executors.newFixedThreadPool(workerCount);
+    final ConversionManifest manifest = shardBytes > 0 ? null
+        : new ConversionManifest(outputFolder, outputFormat, problemList.size(), incremental);
+    final GraphVocabulary vocabulary = outputFormat == OutputFormat.GRAPH
+        ? GraphVocabulary.load(outputFolder.resolve(GraphVocabulary.FILE_NAME)) : null;
+    try (CorpusWriter corpus =
+        shardBytes > 0 ? new CorpusWriter(outputFolder, shardBytes, outputFormat) : null) {
+      final OutputTarget target = new OutputTarget(outputFolder, corpus, manifest, vocabulary);
+      final int failureCount = countFailures(submitAll(executor, problemList, target));
+      target.save();
+      return failureCount;
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private final List<Future<Boolean>> submitAll(final ExecutorService executor,
+      final List<String> problemList, final OutputTarget target) {
+    final List<Future<Boolean>> results = new ArrayList<>(problemList.size());
+    for (int i = 0; i < problemList.size(); i++) {
+      final String problem = problemList.get(i);
+      final int fileIndex = i;
+      results.add(executor.submit(() -> target.manifest != null
+          && target.manifest.isUpToDate(fileIndex, problem)
+          || convertProblem(Path.of(problem), target, fileIndex)));
+    }
+    return results;
+  }
+
+  private final boolean convertProblem(final Path problem, final OutputTarget target,
+      final int fileIndex) throws IOException, InterruptedException {
+    MessageLite output = null;
+    try (FileReader problemReader = new FileReader(problem.toFile())) {
+      // hashed before the conversion, so that edits made meanwhile are seen next time
+      final ManifestEntry.Builder fingerprint = target.manifest == null ? null
+          : target.manifest.fingerprint(fileIndex, problem.toString());
+      final Set<Path> includedFiles = new HashSet<>();
+      output = encode(parserPool.apply(parser -> {
+        final Node parsedTptp = parser.tptp2Proto(problemReader);
+        includedFiles.addAll(parser.getIncludedFiles());
+        return parsedTptp;
+      }), target.vocabulary);
+      target.writeFile(fileIndex, output, fingerprint, includedFiles);
+      return true;
+    } catch (final IOException | TptpSyntaxErrorException | RuntimeException e) {
+      // e.g. a limit, a recursive include, or a bug, none of which should stop other problems
+      reportFailure(problem, target.outputFolder, fileIndex, e);
+      return false;
+    } finally {
+      target.addToCorpus(fileIndex, problem, output);
+    }
+  }
+
+  private static final void reportFailure(final Path problem, final Path outputFolder,
+      final int fileIndex, final Exception e) throws IOException {
+    final String report = problem + System.lineSeparator() + e + System.lineSeparator();
+    // the output of a previous conversion is outdated
+    Files.deleteIfExists(outputFolder.resolve(fileIndex + ".pb"));
+    Files.write(outputFolder.resolve(fileIndex + ".error"),
+        report.getBytes(StandardCharsets.UTF_8));
+    logger.warning("Failed to convert " + problem + ": " + e.getMessage());
+  }
+
+  private final MessageLite encode(final Node parsedTptp, final GraphVocabulary vocabulary) {
+    if (outputFormat == OutputFormat.COMPACT) {
+      return CompactNodeCodec.encode(parsedTptp);
+    }
+    if (outputFormat == OutputFormat.DAG) {
+      return DagNodeCodec.encode(parsedTptp);
+    }
+    if (outputFormat == OutputFormat.GRAPH) {
+      return GraphTensorCodec.encode(parsedTptp, vocabulary);
+    }
+    return parsedTptp;
+  }
+
+  private final int countFailures(final List<Future<Boolean>> results)
+      throws InterruptedException {
+    int failureCount = 0;
+    for (final Future<Boolean> result : results) {
+      try {
+        if (!result.get()) {
+          failureCount++;
+        }
+      } catch (final ExecutionException e) {
+        logger.severe(e.getCause().toString());
+        failureCount++;
+      }
+    }
+    final IncludeCache includeCache = parserPool.getIncludeCache();
+    logger.info("Converted " + (results.size() - failureCount) + " of " + results.size()
+        + " problems, include cache hits: " + includeCache.hitCount() + ", misses: "
+        + includeCache.missCount());
+    return failureCount;
+  }
+
+  /**
+   * Where converted problems go: files (with fingerprints in a manifest) or shards, and the
+   * vocabulary of graph tensors (if any).
+   */
+  private static final class OutputTarget {
+    private final Path outputFolder;
+    private final CorpusWriter corpus;
+    private final ConversionManifest manifest;
+    private final GraphVocabulary vocabulary;
+
+    OutputTarget(final Path outputFolder, final CorpusWriter corpus,
+        final ConversionManifest manifest, final GraphVocabulary vocabulary) {
+      this.outputFolder = outputFolder;
+      this.corpus = corpus;
+      this.manifest = manifest;
+      this.vocabulary = vocabulary;
+    }
+
+    void save() throws IOException {
+      if (manifest != null) {
+        manifest.save();
+      }
+      if (vocabulary != null) {
+        vocabulary.save(outputFolder.resolve(GraphVocabulary.FILE_NAME));
+      }
+    }
+
+    void addToCorpus(final int fileIndex, final Path problem, final MessageLite output)
+        throws IOException, InterruptedException {
+      if (corpus != null) {
+        // a failed problem is skipped, so the next ones don't wait for it
+        corpus.add(fileIndex, problem.toString(), output);
+      }
+    }
+
+    void writeFile(final int fileIndex, final MessageLite output,
+        final ManifestEntry.Builder fingerprint, final Set<Path> includedFiles)
+        throws IOException {
+      if (corpus != null) {
+        return;
+      }
+      try (FileOutputStream outputProtobufFile =
+          new FileOutputStream(outputFolder.resolve(fileIndex + ".pb").toFile())) {
+        output.writeTo(outputProtobufFile);
+      }
+      // the error report of a previous conversion is outdated
+      Files.deleteIfExists(outputFolder.resolve(fileIndex + ".error"));
+      manifest.record(fileIndex, fingerprint, includedFiles);
+    }
+  }
+}
@@ -0,0 +1,116 @@
+/*
+ *  Copyright 2023 Boris Shminke
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+
+package io.github.inpefess.tptpgrpc.tptp2proto;
+
+import java.io.InputStream;
+import com.google.common.hash.HashCode;
+import io.github.inpefess.tptpgrpc.tptpproto.Node;
+import io.github.inpefess.tptpgrpc.tptpproto.StringMessage;
+import io.github.inpefess.tptpgrpc.tptpproto.TptpParserGrpc;
+import io.grpc.MethodDescriptor;
+import io.grpc.ServerMethodDefinition;
+import io.grpc.ServerServiceDefinition;
+import io.grpc.protobuf.ProtoUtils;
+import io.grpc.stub.ServerCalls;
+import io.grpc.stub.StreamObserver;
+
+/**
+ * The {@code parseTptp} method answering repeated requests from a {@link ResponseCache}.
+ *
+ * <p>A cached response is sent as it was serialised the first time. Problems with include
+ * directives are not cached, since the response depends on included files which may change.
+ */
+final class CachingParseTptpMethod implements ServerCalls.UnaryMethod<StringMessage, InputStream> {
+  private static final String INCLUDE = "include(";
+
+  private final TptpParserServer.TptpParserImpl parserService;
+  private final ResponseCache responseCache;
+
+  private CachingParseTptpMethod(final TptpParserServer.TptpParserImpl parserService,
+      final ResponseCache responseCache) {
+    this.parserService = parserService;
+    this.responseCache = responseCache;
+  }
+
+  /**
+   * Bind a parsing service replacing its {@code parseTptp} method with a caching one.
+   *
+   * @param parserService a parsing service
+   * @param responseCache a cache of serialised responses
+   * @return a definition of the service to add to a server
+   */
+  static final ServerServiceDefinition bindService(
+      final TptpParserServer.TptpParserImpl parserService, final ResponseCache responseCache) {
+    final MethodDescriptor<StringMessage, InputStream> parseTptpMethod =
+        TptpParserGrpc.getParseTptpMethod().toBuilder(
+            ProtoUtils.marshaller(StringMessage.getDefaultInstance()),
+            new PreSerializedMarshaller()).build();
+    final ServerServiceDefinition.Builder service =
+        ServerServiceDefinition.builder(TptpParserGrpc.SERVICE_NAME).addMethod(parseTptpMethod,
+            ServerCalls.asyncUnaryCall(new CachingParseTptpMethod(parserService, responseCache)));
+    for (final ServerMethodDefinition<?, ?> method : parserService.bindService().getMethods()) {
+      if (!method.getMethodDescriptor().getFullMethodName()
+          .equals(parseTptpMethod.getFullMethodName())) {
+        service.addMethod(method);
+      }
+    }
+    return service.build();
+  }
+
+  /**
+   * Check whether a problem may include files (an include directive in a comment counts too).
+   *
+   * @param tptpText a TPTP text to parse
+   * @return whether the text has an include directive
+   */
+  static final boolean hasIncludes(final String tptpText) {
+    return tptpText.contains(INCLUDE);
+  }
+
+  @Override
+  public final void invoke(final StringMessage request,
+      final StreamObserver<InputStream> responseObserver) {
+    final HashCode key = hasIncludes(request.getStringMessage()) ? null
+        : ResponseCache.key(request.getStringMessage());
+    final byte[] cachedResponse = key == null ? null : responseCache.get(key);
+    if (cachedResponse != null) {
+      responseObserver.onNext(PreSerializedMarshaller.streamOf(cachedResponse));
+      responseObserver.onCompleted();
+    } else {
+      parserService.parseTptp(request, new StreamObserver<Node>() {
+        @Override
+        public void onNext(final Node response) {
+          final byte[] serializedResponse = response.toByteArray();
+          if (key != null) {
+            responseCache.put(key, serializedResponse);
+          }
+          responseObserver.onNext(PreSerializedMarshaller.streamOf(serializedResponse));
+        }
+
+        @Override
+        public void onError(final Throwable t) {
+          responseObserver.onError(t);
+        }
+
+        @Override
+        public void onCompleted() {
+          responseObserver.onCompleted();
+        }
+      });
+    }
+  }
+}
@@ -0,0 +1,187 @@
+/*
+ *  Copyright 2023 Boris Shminke
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+
+package io.github.inpefess.tptpgrpc.tptp2proto;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+import com.theoremsandstuff.tptp.parser.cnf_constant;
+import com.theoremsandstuff.tptp.parser.cnf_equality;
+import com.theoremsandstuff.tptp.parser.cnf_expression;
+import com.theoremsandstuff.tptp.parser.cnf_not;
+import com.theoremsandstuff.tptp.parser.cnf_or;
+import com.theoremsandstuff.tptp.parser.cnf_var;
+import io.github.inpefess.tptpgrpc.tptpproto.Node;
+
+/**
+ * Converter of CNF clauses from the Xtext AST to protobuf.
+ *
+ * <p>Each clause is walked once. Variables go to one set per clause and functions and predicates
+ * go to one set per problem, so no intermediate collections are allocated for subterms. Terms are
+ * walked with an explicit stack instead of recursion, so their depth is limited only by the heap.
+ */
+final class ClauseConverter {
+  // the only escape sequences of single-quoted words
+  private static final Pattern ESCAPED = Pattern.compile("\\\\([\\\\'])");
+  private final Set<String> functionAndPredicateNames;
+  private final ConversionGuard guard;
+  private Set<String> variableNames;
+  // reusable frames of the term stack, the ones above {@code stackSize} are free
+  private final List<TermFrame> stack = new ArrayList<>();
+  private int stackSize;
+
+  /**
+   * Constructor.
+   *
+   * @param functionAndPredicateNames a set collecting functions and predicates of a problem
+   */
+  ClauseConverter(final Set<String> functionAndPredicateNames) {
+    this(functionAndPredicateNames, ConversionGuard.NONE);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param functionAndPredicateNames a set collecting functions and predicates of a problem
+   * @param guard a guard checking the depth of terms
+   */
+  ClauseConverter(final Set<String> functionAndPredicateNames, final ConversionGuard guard) {
+    this.functionAndPredicateNames = functionAndPredicateNames;
+    this.guard = guard;
+  }
+
+  /**
+   * Convert a clause.
+   *
+   * @param clause a disjunction of literals
+   * @return the clause universally quantified over its variables
+   */
+  final Node convertClause(final cnf_or clause) {
+    variableNames = new HashSet<>();
+    final Node.Builder disjunction = Node.newBuilder().setValue("|");
+    for (final cnf_not literal : clause.getOr()) {
+      final Node predicate = convertPredicate(literal.getLiteral());
+      if (literal.isNegated()) {
+        disjunction.addChild(Node.newBuilder().setValue("~").addChild(predicate));
+      } else {
+        disjunction.addChild(predicate);
+      }
+    }
+    return quantify(disjunction.build(), "!", variableNames).build();
+  }
+
+  private final Node convertPredicate(final cnf_equality predicate) {
+    if (predicate.getExpR() != null) {
+      return Node.newBuilder().setValue(predicate.getEq())
+          .addChild(convertTerm(predicate.getExpL())).addChild(convertTerm(predicate.getExpR()))
+          .build();
+    }
+    if (predicate.getExpL() instanceof cnf_constant) {
+      return convertTerm(predicate.getExpL());
+    }
+    return Node.newBuilder().setValue(predicate.getExpL().getCnf_exp()).build();
+  }
+
+  /**
+   * Convert a term in preorder (the same order of collecting symbols as a recursive walk).
+   *
+   * @param term a term
+   * @return the converted term
+   */
+  private final Node convertTerm(final cnf_expression term) {
+    push(term);
+    while (true) {
+      final TermFrame frame = stack.get(stackSize - 1);
+      if (frame.arguments != null && frame.nextArgument < frame.arguments.size()) {
+        push(frame.arguments.get(frame.nextArgument++));
+      } else {
+        final Node node = pop();
+        if (stackSize == 0) {
+          return node;
+        }
+        stack.get(stackSize - 1).node.addChild(node);
+      }
+    }
+  }
+
+  private final void push(final cnf_expression term) {
+    if (stackSize == stack.size()) {
+      stack.add(new TermFrame());
+    }
+    final TermFrame frame = stack.get(stackSize++);
+    guard.checkTermDepth(stackSize);
+    final String name = symbolName(term.getName());
+    frame.node = Node.newBuilder().setValue(name);
+    frame.nextArgument = 0;
+    final boolean variable = term instanceof cnf_var;
+    frame.arguments = variable ? null : ((cnf_constant) term).getParam();
+    (variable ? variableNames : functionAndPredicateNames).add(name);
+  }
+
+  private final Node pop() {
+    final TermFrame frame = stack.get(--stackSize);
+    final Node node = frame.node.build();
+    frame.node = null;
+    frame.arguments = null;
+    return node;
+  }
+
+  /**
+   * The name of a symbol as written in the output.
+   *
+   * <p>Quotes are not a part of a single-quoted name (e.g. {@code 'cat'} and {@code cat} are the
+   * same symbol), like in include directives. Distinct objects keep their double quotes.
+   *
+   * @param token a symbol as it's written in a problem
+   * @return the name of the symbol
+   */
+  static final String symbolName(final String token) {
+    if (token.length() < 2 || token.charAt(0) != '\'') {
+      return token;
+    }
+    return ESCAPED.matcher(token.substring(1, token.length() - 1)).replaceAll("$1");
+  }
+
+  /**
+   * Add a quantifier over given symbols on top of a node.
+   *
+   * @param node a node to quantify
+   * @param quantor the quantifier symbol
+   * @param symbolNames symbols to quantify over
+   * @return a partly built quantifier node
+   */
+  static final Node.Builder quantify(final Node node, final String quantor,
+      final Set<String> symbolNames) {
+    final Node.Builder universalQuantifier = Node.newBuilder();
+    universalQuantifier.setValue(quantor);
+    for (final String symbolName : symbolNames) {
+      final Node.Builder variable = Node.newBuilder();
+      variable.setValue(symbolName);
+      universalQuantifier.addChild(variable.build());
+    }
+    universalQuantifier.addChild(node);
+    return universalQuantifier;
+  }
+
+  private static final class TermFrame {
+    private Node.Builder node;
+    private List<cnf_expression> arguments;
+    private int nextArgument;
+  }
+}
@@ -0,0 +1,198 @@
+/*
+ *  Copyright 2023 Boris Shminke
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+
+package io.github.inpefess.tptpgrpc.tptp2proto;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import com.google.common.io.CharStreams;
+
+/**
+ * Lexer of the TPTP syntax for {@link CnfParser}.
+ *
+ * <p>The lexer always holds the current token, which is the only lookahead the parser needs.
+ * Whitespace and comments are skipped.
+ */
+final class CnfLexer {
+  private static final String SYMBOLS = "()[],.|~=";
+  private static final TokenType[] SYMBOL_TYPES = {TokenType.LEFT_PARENTHESIS,
+      TokenType.RIGHT_PARENTHESIS, TokenType.LEFT_BRACKET, TokenType.RIGHT_BRACKET,
+      TokenType.COMMA, TokenType.FULL_STOP, TokenType.OR, TokenType.NOT, TokenType.EQUALS};
+  // integers, rationals and reals, all of them signed or not
+  private static final Pattern NUMBER =
+      Pattern.compile("[+-]?[0-9]+(/[0-9]+|(\\.[0-9]+)?([eE][+-]?[0-9]+)?)");
+
+  private final String text;
+  private final Matcher numberMatcher;
+  private int position;
+  private int tokenStart;
+  private TokenType type;
+
+  /**
+   * Constructor.
+   *
+   * @param reader a reader of a TPTP text
+   * @throws IOException if encounters errors when reading the text
+   * @throws TptpSyntaxErrorException if the first token is malformed
+   */
+  CnfLexer(final Reader reader) throws IOException, TptpSyntaxErrorException {
+    text = CharStreams.toString(reader);
+    numberMatcher = NUMBER.matcher(text);
+    advance();
+  }
+
+  /**
+   * The type of the current token.
+   *
+   * @return the type of the current token
+   */
+  final TokenType type() {
+    return type;
+  }
+
+  /**
+   * The text of the current token.
+   *
+   * @return the text of the current token (quoted tokens keep their quotes)
+   */
+  final String text() {
+    return text.substring(tokenStart, position);
+  }
+
+  /**
+   * Move to the next token.
+   *
+   * @throws TptpSyntaxErrorException if the next token is malformed
+   */
+  final void advance() throws TptpSyntaxErrorException {
+    skipLayout();
+    tokenStart = position;
+    if (position == text.length()) {
+      type = TokenType.END;
+    } else if (text.charAt(position) == '\'' || text.charAt(position) == '"') {
+      type = scanQuoted(text.charAt(position));
+    } else if (numberMatcher.region(position, text.length()).lookingAt()) {
+      position = numberMatcher.end();
+      type = TokenType.NUMBER;
+    } else if (Character.isLetter(text.charAt(position)) || text.charAt(position) == '$') {
+      type = scanWord(text.charAt(position));
+    } else {
+      type = scanSymbol(text.charAt(position));
+    }
+  }
+
+  /**
+   * Make an exception about the current token.
+   *
+   * @param expected what should have been in place of the current token
+   * @return an exception with the position of the current token
+   */
+  final TptpSyntaxErrorException unexpected(final String expected) {
+    int line = 1;
+    int lineStart = 0;
+    for (int i = text.indexOf('\n'); i != -1 && i < tokenStart; i = text.indexOf('\n', i + 1)) {
+      line++;
+      lineStart = i + 1;
+    }
+    final String found = tokenStart == position ? "end of input" : "'" + text() + "'";
+    return new TptpSyntaxErrorException("unexpected " + found + ", expected " + expected, line,
+        tokenStart - lineStart + 1);
+  }
+
+  private final void skipLayout() throws TptpSyntaxErrorException {
+    while (position < text.length()) {
+      final char current = text.charAt(position);
+      if (current == '%') {
+        final int lineEnd = text.indexOf('\n', position);
+        position = lineEnd == -1 ? text.length() : lineEnd;
+      } else if (text.startsWith("/*", position)) {
+        skipBlockComment();
+      } else if (Character.isWhitespace(current)) {
+        position++;
+      } else {
+        return;
+      }
+    }
+  }
+
+  private final void skipBlockComment() throws TptpSyntaxErrorException {
+    tokenStart = position;
+    final int commentEnd = text.indexOf("*/", position + 2);
+    if (commentEnd == -1) {
+      throw unexpected("'*/'");
+    }
+    position = commentEnd + 2;
+  }
+
+  private final TokenType scanQuoted(final char quote) throws TptpSyntaxErrorException {
+    position++;
+    while (position < text.length() && text.charAt(position) != quote) {
+      position += text.charAt(position) == '\\' ? 2 : 1;
+    }
+    if (position >= text.length()) {
+      position = tokenStart;
+      throw unexpected("closing " + quote);
+    }
+    position++;
+    return quote == '\'' ? TokenType.SINGLE_QUOTED : TokenType.DISTINCT_OBJECT;
+  }
+
+  private final TokenType scanWord(final char first) {
+    position += text.startsWith("$$", position) ? 2 : 1;
+    while (position < text.length()
+        && (Character.isLetterOrDigit(text.charAt(position)) || text.charAt(position) == '_')) {
+      position++;
+    }
+    if (first == '$') {
+      return TokenType.DOLLAR_WORD;
+    }
+    return Character.isUpperCase(first) ? TokenType.UPPER_WORD : TokenType.LOWER_WORD;
+  }
+
+  private final TokenType scanSymbol(final char first) {
+    position++;
+    if (first == '!' && text.startsWith("=", position)) {
+      position++;
+      return TokenType.NOT_EQUALS;
+    }
+    final int index = SYMBOLS.indexOf(first);
+    return index == -1 ? TokenType.OTHER : SYMBOL_TYPES[index];
+  }
+
+  /**
+   * Token types.
+   */
+  enum TokenType {
+    LOWER_WORD("a lower word"), UPPER_WORD("a variable"), DOLLAR_WORD("a dollar word"),
+    SINGLE_QUOTED("a single-quoted word"), DISTINCT_OBJECT("a distinct object"),
+    NUMBER("a number"), LEFT_PARENTHESIS("'('"), RIGHT_PARENTHESIS("')'"),
+    LEFT_BRACKET("'['"), RIGHT_BRACKET("']'"), COMMA("','"), FULL_STOP("'.'"), OR("'|'"),
+    NOT("'~'"), EQUALS("'='"), NOT_EQUALS("'!='"), OTHER("a symbol"), END("end of input");
+
+    private final String description;
+
+    TokenType(final String description) {
+      this.description = description;
+    }
+
+    @Override
+    public final String toString() {
+      return description;
+    }
+  }
+}
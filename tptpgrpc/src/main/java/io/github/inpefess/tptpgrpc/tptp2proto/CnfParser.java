@@ -0,0 +1,196 @@
+/*
+ *  Copyright 2023 Boris Shminke
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+
+package io.github.inpefess.tptpgrpc.tptp2proto;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.Consumer;
+import io.github.inpefess.tptpgrpc.tptp2proto.CnfLexer.TokenType;
+import io.github.inpefess.tptpgrpc.tptpproto.Node;
+
+/**
+ * Hand-written parser of the CNF subset of TPTP.
+ *
+ * <p>It needs only one token of lookahead and never backtracks. Clauses are converted to protobuf
+ * as they are read, without building an AST, and the output is the same as with the Xtext parser
+ * and {@link ClauseConverter}. Other kinds of annotated formulae are skipped, like in the Xtext
+ * path.
+ */
+final class CnfParser {
+  private static final Set<String> SKIPPED_KINDS = Set.of("fof", "tff", "tcf", "thf", "tpi");
+  private static final Set<TokenType> NAME_TYPES =
+      EnumSet.of(TokenType.LOWER_WORD, TokenType.SINGLE_QUOTED, TokenType.NUMBER);
+  private static final Set<String> PROPOSITIONS = Set.of("$true", "$false");
+
+  private final CnfLexer lexer;
+  private final CnfTermParser termParser;
+  private Set<String> variableNames;
+
+  /**
+   * Constructor.
+   *
+   * @param reader a reader of a TPTP text
+   * @param functionAndPredicateNames a set collecting functions and predicates of the problem
+   * @param guard a guard checking the depth of terms
+   * @throws IOException if encounters errors when reading the text
+   * @throws TptpSyntaxErrorException if the first token is malformed
+   */
+  CnfParser(final Reader reader, final Set<String> functionAndPredicateNames,
+      final ConversionGuard guard) throws IOException, TptpSyntaxErrorException {
+    lexer = new CnfLexer(reader);
+    termParser = new CnfTermParser(lexer, functionAndPredicateNames, guard);
+  }
+
+  /**
+   * Parse the text passing its clauses and included files one by one.
+   *
+   * @param clauses a consumer of quantified clauses
+   * @param includes a handler of included files
+   * @throws IOException if the include handler fails
+   * @throws TptpSyntaxErrorException on syntax error
+   */
+  final void parse(final Consumer<Node> clauses, final IncludeHandler includes)
+      throws IOException, TptpSyntaxErrorException {
+    while (lexer.type() != TokenType.END) {
+      parseEntry(clauses, includes);
+    }
+  }
+
+  private final void parseEntry(final Consumer<Node> clauses, final IncludeHandler includes)
+      throws IOException, TptpSyntaxErrorException {
+    final String kind = lexer.type() == TokenType.LOWER_WORD ? lexer.text() : "";
+    if (!("cnf".equals(kind) || "include".equals(kind) || SKIPPED_KINDS.contains(kind))) {
+      throw lexer.unexpected("an annotated formula or an include directive");
+    }
+    lexer.advance();
+    expect(TokenType.LEFT_PARENTHESIS);
+    if ("cnf".equals(kind)) {
+      clauses.accept(parseCnf());
+    } else if ("include".equals(kind)) {
+      includes.include(parseInclude());
+    } else {
+      skipArguments();
+    }
+    expect(TokenType.RIGHT_PARENTHESIS);
+    expect(TokenType.FULL_STOP);
+  }
+
+  private final Node parseCnf() throws TptpSyntaxErrorException {
+    if (!NAME_TYPES.contains(lexer.type())) {
+      throw lexer.unexpected("a formula name");
+    }
+    lexer.advance();
+    expect(TokenType.COMMA);
+    expect(TokenType.LOWER_WORD);
+    expect(TokenType.COMMA);
+    final Node clause = parseClause();
+    if (lexer.type() == TokenType.COMMA) {
+      skipArguments();
+    }
+    return clause;
+  }
+
+  private final String parseInclude() throws TptpSyntaxErrorException {
+    final String path = expect(TokenType.SINGLE_QUOTED);
+    if (lexer.type() == TokenType.COMMA) {
+      skipArguments();
+    }
+    return ClauseConverter.symbolName(path);
+  }
+
+  /**
+   * Skip tokens (like annotations) up to the parenthesis closing the current entry.
+   */
+  private final void skipArguments() throws TptpSyntaxErrorException {
+    int depth = 0;
+    while (depth > 0 || lexer.type() != TokenType.RIGHT_PARENTHESIS) {
+      if (lexer.type() == TokenType.END) {
+        throw lexer.unexpected(TokenType.RIGHT_PARENTHESIS.toString());
+      }
+      if (lexer.type() == TokenType.LEFT_PARENTHESIS || lexer.type() == TokenType.LEFT_BRACKET) {
+        depth++;
+      }
+      if (lexer.type() == TokenType.RIGHT_PARENTHESIS
+          || lexer.type() == TokenType.RIGHT_BRACKET) {
+        depth--;
+      }
+      lexer.advance();
+    }
+  }
+
+  private final Node parseClause() throws TptpSyntaxErrorException {
+    variableNames = new HashSet<>();
+    final boolean parenthesised = lexer.type() == TokenType.LEFT_PARENTHESIS;
+    if (parenthesised) {
+      lexer.advance();
+    }
+    final Node.Builder disjunction = Node.newBuilder().setValue("|").addChild(parseLiteral());
+    while (lexer.type() == TokenType.OR) {
+      lexer.advance();
+      disjunction.addChild(parseLiteral());
+    }
+    if (parenthesised) {
+      expect(TokenType.RIGHT_PARENTHESIS);
+    }
+    return ClauseConverter.quantify(disjunction.build(), "!", variableNames).build();
+  }
+
+  private final Node parseLiteral() throws TptpSyntaxErrorException {
+    if (lexer.type() == TokenType.NOT) {
+      lexer.advance();
+      return Node.newBuilder().setValue("~").addChild(parseAtom()).build();
+    }
+    return parseAtom();
+  }
+
+  private final Node parseAtom() throws TptpSyntaxErrorException {
+    if (lexer.type() == TokenType.DOLLAR_WORD && PROPOSITIONS.contains(lexer.text())) {
+      return Node.newBuilder().setValue(expect(TokenType.DOLLAR_WORD)).build();
+    }
+    final boolean variable = lexer.type() == TokenType.UPPER_WORD;
+    final Node left = termParser.parseTerm(variableNames);
+    if (lexer.type() == TokenType.EQUALS || lexer.type() == TokenType.NOT_EQUALS) {
+      final String equality = expect(lexer.type());
+      return Node.newBuilder().setValue(equality).addChild(left)
+          .addChild(termParser.parseTerm(variableNames)).build();
+    }
+    if (variable) {
+      throw lexer.unexpected("'=' or '!='");
+    }
+    return left;
+  }
+
+  private final String expect(final TokenType expected) throws TptpSyntaxErrorException {
+    if (lexer.type() != expected) {
+      throw lexer.unexpected(expected.toString());
+    }
+    final String tokenText = lexer.text();
+    lexer.advance();
+    return tokenText;
+  }
+
+  /**
+   * A handler of included files.
+   */
+  @FunctionalInterface
+  interface IncludeHandler {
+    void include(String path) throws IOException, TptpSyntaxErrorException;
+  }
+}
@@ -0,0 +1,118 @@
+/*
+ *  Copyright 2023 Boris Shminke
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+
+package io.github.inpefess.tptpgrpc.tptp2proto;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import io.github.inpefess.tptpgrpc.tptp2proto.CnfLexer.TokenType;
+import io.github.inpefess.tptpgrpc.tptpproto.Node;
+
+/**
+ * Parser of CNF terms for {@link CnfParser}.
+ *
+ * <p>Like {@link ClauseConverter}, it collects symbols in preorder and keeps unfinished terms on
+ * an explicit stack instead of recursing.
+ */
+final class CnfTermParser {
+  private static final Set<TokenType> FUNCTOR_TYPES = EnumSet.of(TokenType.LOWER_WORD,
+      TokenType.SINGLE_QUOTED, TokenType.DOLLAR_WORD, TokenType.DISTINCT_OBJECT, TokenType.NUMBER);
+
+  private final CnfLexer lexer;
+  private final Set<String> functionAndPredicateNames;
+  private final ConversionGuard guard;
+  // terms waiting for the rest of their arguments
+  private final List<Node.Builder> stack = new ArrayList<>();
+
+  /**
+   * Constructor.
+   *
+   * @param lexer a lexer of a TPTP text
+   * @param functionAndPredicateNames a set collecting functions and predicates of a problem
+   * @param guard a guard checking the depth of terms
+   */
+  CnfTermParser(final CnfLexer lexer, final Set<String> functionAndPredicateNames,
+      final ConversionGuard guard) {
+    this.lexer = lexer;
+    this.functionAndPredicateNames = functionAndPredicateNames;
+    this.guard = guard;
+  }
+
+  /**
+   * Parse a term starting at the current token.
+   *
+   * @param variableNames a set collecting variables of a clause
+   * @return the parsed term
+   * @throws TptpSyntaxErrorException on syntax error
+   */
+  final Node parseTerm(final Set<String> variableNames) throws TptpSyntaxErrorException {
+    Node term = startTerm(variableNames);
+    while (term == null || !stack.isEmpty()) {
+      term = term == null ? startTerm(variableNames) : finishArgument(term);
+    }
+    return term;
+  }
+
+  /**
+   * Read a symbol and its opening parenthesis if it has arguments.
+   *
+   * @return a variable or a constant or {@code null} if the term waits for its arguments
+   */
+  private final Node startTerm(final Set<String> variableNames)
+      throws TptpSyntaxErrorException {
+    final boolean variable = lexer.type() == TokenType.UPPER_WORD;
+    if (!variable && !FUNCTOR_TYPES.contains(lexer.type())) {
+      throw lexer.unexpected("a term");
+    }
+    final String name = ClauseConverter.symbolName(lexer.text());
+    lexer.advance();
+    (variable ? variableNames : functionAndPredicateNames).add(name);
+    if (variable || lexer.type() != TokenType.LEFT_PARENTHESIS) {
+      return Node.newBuilder().setValue(name).build();
+    }
+    push(name);
+    return null;
+  }
+
+  private final void push(final String name) throws TptpSyntaxErrorException {
+    lexer.advance();
+    stack.add(Node.newBuilder().setValue(name));
+    // arguments are one level deeper (the depth of a term as on the stack of ClauseConverter)
+    guard.checkTermDepth(stack.size() + 1);
+  }
+
+  /**
+   * Add an argument to the innermost unfinished term.
+   *
+   * @return the term if it was its last argument or {@code null} otherwise
+   */
+  private final Node finishArgument(final Node argument) throws TptpSyntaxErrorException {
+    final Node.Builder term = stack.get(stack.size() - 1);
+    term.addChild(argument);
+    if (lexer.type() == TokenType.COMMA) {
+      lexer.advance();
+      return null;
+    }
+    if (lexer.type() != TokenType.RIGHT_PARENTHESIS) {
+      throw lexer.unexpected("',' or ')'");
+    }
+    lexer.advance();
+    stack.remove(stack.size() - 1);
+    return term.build();
+  }
+}
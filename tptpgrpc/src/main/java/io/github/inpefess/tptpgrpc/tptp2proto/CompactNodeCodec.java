@@ -0,0 +1,105 @@
+/*
+ *  Copyright 2023 Boris Shminke
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+
+package io.github.inpefess.tptpgrpc.tptp2proto;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import io.github.inpefess.tptpgrpc.tptpproto.CompactNode;
+import io.github.inpefess.tptpgrpc.tptpproto.Node;
+
+/**
+ * Conversion between {@link Node} trees and their compact form.
+ *
+ * <p>A {@link CompactNode} stores every distinct symbol once and lists nodes in preorder as pairs
+ * of a symbol index and a number of children.
+ */
+public final class CompactNodeCodec {
+  private CompactNodeCodec() {}
+
+  /**
+   * Flatten a tree.
+   *
+   * @param root the root of a tree
+   * @return a compact form of the tree
+   */
+  public static final CompactNode encode(final Node root) {
+    final CompactNode.Builder compactNode = CompactNode.newBuilder();
+    final Map<String, Integer> symbolIds = new HashMap<>();
+    final Deque<Node> nodes = new ArrayDeque<>();
+    nodes.push(root);
+    while (!nodes.isEmpty()) {
+      final Node node = nodes.pop();
+      compactNode.addSymbolId(symbolId(compactNode, symbolIds, node.getValue()));
+      compactNode.addChildCount(node.getChildCount());
+      for (int i = node.getChildCount() - 1; i >= 0; i--) {
+        nodes.push(node.getChild(i));
+      }
+    }
+    return compactNode.build();
+  }
+
+  private static final int symbolId(final CompactNode.Builder compactNode,
+      final Map<String, Integer> symbolIds, final String symbol) {
+    final Integer knownId = symbolIds.get(symbol);
+    if (knownId != null) {
+      return knownId;
+    }
+    symbolIds.put(symbol, compactNode.getSymbolCount());
+    compactNode.addSymbol(symbol);
+    return compactNode.getSymbolCount() - 1;
+  }
+
+  /**
+   * Restore a tree.
+   *
+   * @param compactNode a compact form of a tree
+   * @return the root of the tree
+   */
+  public static final Node decode(final CompactNode compactNode) {
+    final Deque<PartialNode> ancestors = new ArrayDeque<>();
+    for (int i = 0; i < compactNode.getSymbolIdCount(); i++) {
+      final Node.Builder node =
+          Node.newBuilder().setValue(compactNode.getSymbol(compactNode.getSymbolId(i)));
+      ancestors.push(new PartialNode(node, compactNode.getChildCount(i)));
+      while (ancestors.peek().missingChildCount == 0) {
+        final Node finishedNode = ancestors.pop().nodeBuilder.build();
+        if (ancestors.isEmpty()) {
+          return finishedNode;
+        }
+        ancestors.peek().addChild(finishedNode);
+      }
+    }
+    throw new IllegalArgumentException("Incomplete compact node");
+  }
+
+  private static final class PartialNode {
+    private final Node.Builder nodeBuilder;
+    private int missingChildCount;
+
+    PartialNode(final Node.Builder nodeBuilder, final int childCount) {
+      this.nodeBuilder = nodeBuilder;
+      this.missingChildCount = childCount;
+    }
+
+    void addChild(final Node child) {
+      nodeBuilder.addChild(child);
+      missingChildCount--;
+    }
+  }
+}
@@ -0,0 +1,93 @@
+/*
+ *  Copyright 2023 Boris Shminke
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+
+package io.github.inpefess.tptpgrpc.tptp2proto;
+
+import io.grpc.Context;
+import io.grpc.Contexts;
+
+/**
+ * Checks of the conversion of one problem: its limits and the cancellation of its call.
+ *
+ * <p>The parser calls it at clause and include boundaries and for every term. The call context is
+ * captured when the guard is created, so the checks work on any thread (e.g. in a conversion
+ * pool). A cancelled call (or one past its deadline) stops the conversion with the
+ * {@link io.grpc.Status.Code#CANCELLED} (or {@link io.grpc.Status.Code#DEADLINE_EXCEEDED})
+ * status.
+ */
+final class ConversionGuard {
+  /** A guard which never stops a conversion. */
+  static final ConversionGuard NONE = new ConversionGuard(ConversionLimits.NONE, Context.ROOT);
+
+  private final ConversionLimits limits;
+  private final Context context;
+  private final boolean countsClauses;
+  // counted on the thread passing the clauses of the problem on
+  private int clauseCount;
+
+  /**
+   * Constructor.
+   *
+   * @param limits the limits of the problem
+   * @param context the context of the call converting the problem
+   */
+  ConversionGuard(final ConversionLimits limits, final Context context) {
+    this(limits, context, true);
+  }
+
+  private ConversionGuard(final ConversionLimits limits, final Context context,
+      final boolean countsClauses) {
+    this.limits = limits;
+    this.context = context;
+    this.countsClauses = countsClauses;
+  }
+
+  /**
+   * A guard for parsing an included file.
+   *
+   * <p>Parsed included files are shared through {@link IncludeCache} by concurrent calls waiting
+   * for the same file, so the parsing doesn't depend on the call which started it: it isn't
+   * cancelled with that call (the call checks its cancellation when it gets the file), and clauses
+   * are counted when the problem gets them.
+   *
+   * @return a guard with the same limits which doesn't count clauses and is never cancelled
+   */
+  final ConversionGuard forInclude() {
+    return new ConversionGuard(limits, Context.ROOT, false);
+  }
+
+  final void checkCancelled() {
+    if (context.isCancelled()) {
+      throw Contexts.statusFromCancelled(context).asRuntimeException();
+    }
+  }
+
+  final void countClause() {
+    checkCancelled();
+    if (countsClauses) {
+      limits.checkClauseCount(++clauseCount);
+    }
+  }
+
+  final void checkIncludeCount(final int includeCount) {
+    checkCancelled();
+    limits.checkIncludeCount(includeCount);
+  }
+
+  final void checkTermDepth(final int termDepth) {
+    limits.checkTermDepth(termDepth);
+  }
+}
@@ -0,0 +1,87 @@
+/*
+ *  Copyright 2023 Boris Shminke
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+
+package io.github.inpefess.tptpgrpc.tptp2proto;
+
+import io.grpc.Status;
+
+/**
+ * Per-problem limits on the work of the parser.
+ *
+ * <p>A zero limit means no limit. A problem over a limit fails with the
+ * {@link Status.Code#RESOURCE_EXHAUSTED} status as soon as the limit is reached, so an oversized
+ * problem doesn't use more memory and time than allowed.
+ */
+public final class ConversionLimits {
+  /** No limits at all. */
+  public static final ConversionLimits NONE = new ConversionLimits(0, 0, 0, 0);
+
+  private final long maxInputBytes;
+  private final int maxClauseCount;
+  private final int maxTermDepth;
+  private final int maxIncludeCount;
+
+  /**
+   * Constructor.
+   *
+   * @param maxInputBytes the maximal size of a problem text in bytes (without included files)
+   * @param maxClauseCount the maximal number of clauses (including the ones of included files)
+   * @param maxTermDepth the maximal depth of a term (a predicate with constant arguments has depth
+   *     two)
+   * @param maxIncludeCount the maximal number of files included directly or not
+   */
+  public ConversionLimits(final long maxInputBytes, final int maxClauseCount,
+      final int maxTermDepth, final int maxIncludeCount) {
+    this.maxInputBytes = maxInputBytes;
+    this.maxClauseCount = maxClauseCount;
+    this.maxTermDepth = maxTermDepth;
+    this.maxIncludeCount = maxIncludeCount;
+  }
+
+  /**
+   * Check the size of a problem text before parsing it.
+   *
+   * @param inputBytes the size of a problem text in bytes
+   */
+  public final void checkInputBytes(final long inputBytes) {
+    check(maxInputBytes, inputBytes, "bytes of input");
+  }
+
+  final void checkClauseCount(final int clauseCount) {
+    check(maxClauseCount, clauseCount, "clauses");
+  }
+
+  final void checkTermDepth(final int termDepth) {
+    check(maxTermDepth, termDepth, "levels of term nesting");
+  }
+
+  final void checkIncludeCount(final int includeCount) {
+    check(maxIncludeCount, includeCount, "included files");
+  }
+
+  private static final void check(final long limit, final long value, final String what) {
+    if (limit > 0 && value > limit) {
+      throw Status.RESOURCE_EXHAUSTED.withDescription("More than " + limit + " " + what)
+          .asRuntimeException();
+    }
+  }
+
+  @Override
+  public final String toString() {
+    return "max input bytes: " + maxInputBytes + ", max clauses: " + maxClauseCount
+        + ", max term depth: " + maxTermDepth + ", max includes: " + maxIncludeCount;
+  }
+}
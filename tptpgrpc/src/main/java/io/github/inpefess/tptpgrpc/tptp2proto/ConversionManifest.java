@@ -0,0 +1,167 @@
+/*
+ *  Copyright 2023 Boris Shminke
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+
+package io.github.inpefess.tptpgrpc.tptp2proto;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import com.google.common.hash.Hashing;
+import com.google.protobuf.ByteString;
+import io.github.inpefess.tptpgrpc.tptpproto.Manifest;
+import io.github.inpefess.tptpgrpc.tptpproto.ManifestEntry;
+import io.github.inpefess.tptpgrpc.tptpproto.OutputFormat;
+
+/**
+ * Fingerprints of converted problems for incremental conversion.
+ *
+ * <p>The manifest ({@literal manifest.pb} in the output folder) has SHA-256 hashes of each problem
+ * and of the files it includes (directly or not) as they were before the problem was converted. A
+ * problem is up to date if it has the same place in the problem list, none of these files changed,
+ * and its output is in place. Each file is hashed once per conversion.
+ */
+final class ConversionManifest {
+  static final String FILE_NAME = "manifest.pb";
+
+  private final Path outputFolder;
+  private final OutputFormat format;
+  private final Manifest previousManifest;
+  private final ManifestEntry[] entries;
+  private final Map<Path, ByteString> fileHashes = new ConcurrentHashMap<>();
+
+  /**
+   * Read the manifest of the previous conversion (if any).
+   *
+   * @param outputFolder the output folder of the conversion
+   * @param format the output format (all problems are converted if it changed)
+   * @param problemCount the number of problems in the list
+   * @param incremental whether to use the previous manifest (if not, nothing is up to date)
+   * @throws IOException if unable to read the previous manifest
+   */
+  ConversionManifest(final Path outputFolder, final OutputFormat format, final int problemCount,
+      final boolean incremental) throws IOException {
+    this.outputFolder = outputFolder;
+    this.format = format;
+    final Path manifestFile = outputFolder.resolve(FILE_NAME);
+    final Manifest manifest = incremental && Files.exists(manifestFile)
+        ? Manifest.parseFrom(Files.readAllBytes(manifestFile)) : Manifest.getDefaultInstance();
+    previousManifest = manifest.getFormat() == format ? manifest : Manifest.getDefaultInstance();
+    entries = new ManifestEntry[problemCount];
+  }
+
+  /**
+   * Check whether the output of a problem can be kept (and keep its fingerprints if so).
+   *
+   * @param problemIndex the place of a problem in the list
+   * @param problem the path of the problem
+   * @return whether the problem was converted and nothing changed since then
+   * @throws IOException if unable to read files
+   */
+  final boolean isUpToDate(final int problemIndex, final String problem) throws IOException {
+    if (problemIndex >= previousManifest.getEntryCount()) {
+      return false;
+    }
+    final ManifestEntry entry = previousManifest.getEntry(problemIndex);
+    if (!entry.getName().equals(problem) || !entry.getHash().equals(hash(Path.of(problem)))
+        || !Files.exists(outputFolder.resolve(problemIndex + ".pb"))) {
+      return false;
+    }
+    for (int i = 0; i < entry.getIncludedFileCount(); i++) {
+      if (!entry.getIncludedFileHash(i).equals(hash(Path.of(entry.getIncludedFile(i))))) {
+        return false;
+      }
+    }
+    entries[problemIndex] = entry;
+    return true;
+  }
+
+  /**
+   * Hash a problem before converting it.
+   *
+   * <p>The problem and the files it included in the previous conversion are hashed before it's
+   * converted, so if they are edited meanwhile, the next conversion sees the change. Files included
+   * for the first time can only be hashed when the conversion finds them.
+   *
+   * @param problemIndex the place of a problem in the list
+   * @param problem the path of the problem
+   * @return fingerprints to record when the problem is converted
+   * @throws IOException if unable to read files
+   */
+  final ManifestEntry.Builder fingerprint(final int problemIndex, final String problem)
+      throws IOException {
+    if (problemIndex < previousManifest.getEntryCount()
+        && previousManifest.getEntry(problemIndex).getName().equals(problem)) {
+      // hashes are kept for the whole conversion
+      for (final String includedFile : previousManifest.getEntry(problemIndex)
+          .getIncludedFileList()) {
+        hash(Path.of(includedFile));
+      }
+    }
+    return ManifestEntry.newBuilder().setName(problem).setHash(hash(Path.of(problem)));
+  }
+
+  /**
+   * Record fingerprints of a converted problem.
+   *
+   * @param problemIndex the place of a problem in the list
+   * @param fingerprint the fingerprint of the problem taken before converting it
+   * @param includedFiles files included by the problem (directly or not)
+   * @throws IOException if unable to read files
+   */
+  final void record(final int problemIndex, final ManifestEntry.Builder fingerprint,
+      final Set<Path> includedFiles) throws IOException {
+    for (final Path includedFile : new TreeSet<>(includedFiles)) {
+      fingerprint.addIncludedFile(includedFile.toString())
+          .addIncludedFileHash(hash(includedFile));
+    }
+    entries[problemIndex] = fingerprint.build();
+  }
+
+  /**
+   * Write the manifest (problems without fingerprints will be converted next time).
+   *
+   * @throws IOException if unable to write
+   */
+  final void save() throws IOException {
+    final Manifest.Builder manifest = Manifest.newBuilder().setFormat(format);
+    for (final ManifestEntry entry : entries) {
+      manifest.addEntry(entry == null ? ManifestEntry.getDefaultInstance() : entry);
+    }
+    Files.write(outputFolder.resolve(FILE_NAME), manifest.build().toByteArray());
+  }
+
+  private final ByteString hash(final Path file) throws IOException {
+    final ByteString knownHash = fileHashes.get(file);
+    if (knownHash != null) {
+      return knownHash;
+    }
+    ByteString fileHash;
+    try {
+      fileHash =
+          ByteString.copyFrom(Hashing.sha256().hashBytes(Files.readAllBytes(file)).asBytes());
+    } catch (final NoSuchFileException e) {
+      // differs from the hash of any existing file
+      fileHash = ByteString.EMPTY;
+    }
+    fileHashes.putIfAbsent(file, fileHash);
+    return fileHash;
+  }
+}
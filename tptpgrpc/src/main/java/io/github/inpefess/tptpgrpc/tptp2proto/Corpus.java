@@ -0,0 +1,159 @@
+/*
+ *  Copyright 2023 Boris Shminke
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+
+package io.github.inpefess.tptpgrpc.tptp2proto;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import com.google.protobuf.InvalidProtocolBufferException;
+import io.github.inpefess.tptpgrpc.tptpproto.Node;
+import io.github.inpefess.tptpgrpc.tptpproto.OutputFormat;
+
+/**
+ * All shards of a corpus written by {@link CorpusWriter}.
+ *
+ * <p>Problems are numbered through all shards in the order they were written.
+ */
+public final class Corpus {
+  private final List<CorpusShard> shards;
+  // the number of the first problem of each shard and the total number of problems
+  private final int[] firstProblemIds;
+
+  private Corpus(final List<CorpusShard> shards) {
+    this.shards = shards;
+    firstProblemIds = new int[shards.size() + 1];
+    for (int i = 0; i < shards.size(); i++) {
+      firstProblemIds[i + 1] = firstProblemIds[i] + shards.get(i).size();
+    }
+  }
+
+  /**
+   * Map all shards of a folder to memory.
+   *
+   * @param folder a folder with shards and their indices
+   * @return the corpus
+   * @throws IOException if unable to read the shards
+   */
+  public static final Corpus open(final Path folder) throws IOException {
+    final List<Path> shardFiles = new ArrayList<>();
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(folder, "shard-*.pb")) {
+      files.forEach(shardFiles::add);
+    }
+    shardFiles.sort(null);
+    final List<CorpusShard> shards = new ArrayList<>(shardFiles.size());
+    for (final Path shardFile : shardFiles) {
+      shards.add(CorpusShard.open(shardFile));
+    }
+    return new Corpus(shards);
+  }
+
+  /**
+   * The number of problems.
+   *
+   * @return the number of problems in all shards
+   */
+  public final int size() {
+    return firstProblemIds[shards.size()];
+  }
+
+  /**
+   * The format of problems.
+   *
+   * @return the format of all shards ({@literal TREE} for an empty corpus)
+   */
+  public final OutputFormat getFormat() {
+    return shards.isEmpty() ? OutputFormat.TREE : shards.get(0).getFormat();
+  }
+
+  /**
+   * The original path of a problem.
+   *
+   * @param problemId the number of a problem in the corpus
+   * @return the original path of the problem
+   */
+  public final String getName(final int problemId) {
+    final int shardId = shardId(problemId);
+    return shards.get(shardId).getName(problemId - firstProblemIds[shardId]);
+  }
+
+  /**
+   * Find a problem.
+   *
+   * @param name the original path of a problem
+   * @return the number of the first record of the problem or -1 if it's not in the corpus
+   */
+  public final int indexOf(final String name) {
+    for (int i = 0; i < shards.size(); i++) {
+      final int recordId = shards.get(i).indexOf(name);
+      if (recordId >= 0) {
+        return firstProblemIds[i] + recordId;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Serialised problem.
+   *
+   * @param problemId the number of a problem in the corpus
+   * @return a read-only view of the record of the problem in its mapped shard
+   */
+  public final ByteBuffer getRecord(final int problemId) {
+    final int shardId = shardId(problemId);
+    return shards.get(shardId).getRecord(problemId - firstProblemIds[shardId]);
+  }
+
+  /**
+   * Parse a problem.
+   *
+   * @param problemId the number of a problem in the corpus
+   * @return the parsed problem
+   * @throws InvalidProtocolBufferException if the record is broken
+   */
+  public final Node getNode(final int problemId) throws InvalidProtocolBufferException {
+    final int shardId = shardId(problemId);
+    return shards.get(shardId).getNode(problemId - firstProblemIds[shardId]);
+  }
+
+  /**
+   * Parse a problem of any format, expanding graph tensors with their vocabulary.
+   *
+   * @param problemId the number of a problem in the corpus
+   * @param vocabulary the vocabulary the graph tensors were labelled with
+   * @return the parsed problem
+   * @throws InvalidProtocolBufferException if the record is broken
+   */
+  public final Node getNode(final int problemId, final GraphVocabulary vocabulary)
+      throws InvalidProtocolBufferException {
+    final int shardId = shardId(problemId);
+    return shards.get(shardId).getNode(problemId - firstProblemIds[shardId], vocabulary);
+  }
+
+  private final int shardId(final int problemId) {
+    if (problemId < 0 || problemId >= size()) {
+      throw new IndexOutOfBoundsException("Problem " + problemId + " of " + size());
+    }
+    final int position = Arrays.binarySearch(firstProblemIds, problemId);
+    // shards are never empty, so their first problem numbers are distinct
+    return position >= 0 ? position : -position - 2;
+  }
+}
@@ -0,0 +1,112 @@
+/*
+ *  Copyright 2023 Boris Shminke
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+
+package io.github.inpefess.tptpgrpc.tptp2proto;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.WireFormat;
+import io.github.inpefess.tptpgrpc.tptpproto.OutputFormat;
+import io.github.inpefess.tptpgrpc.tptpproto.ParseResponse;
+import io.github.inpefess.tptpgrpc.tptpproto.StringMessage;
+import io.github.inpefess.tptpgrpc.tptpproto.TptpParserGrpc;
+import io.grpc.MethodDescriptor;
+import io.grpc.ServerMethodDefinition;
+import io.grpc.ServerServiceDefinition;
+import io.grpc.Status;
+import io.grpc.protobuf.ProtoUtils;
+import io.grpc.stub.ServerCalls;
+import io.grpc.stub.StreamObserver;
+
+/**
+ * The {@code getProblem} method serving problems from a memory-mapped {@link Corpus}.
+ *
+ * <p>A record is sent from the mapped shard as it is. Only a field header is prepended to make it
+ * the {@code node}, {@code compact_node}, {@code dag_node}, or {@code graph_tensors} of a
+ * {@link ParseResponse}, so no message objects are built.
+ */
+final class CorpusProblemMethod implements ServerCalls.UnaryMethod<StringMessage, InputStream> {
+  private final Corpus corpus;
+  private final int fieldNumber;
+
+  private CorpusProblemMethod(final Corpus corpus) {
+    this.corpus = corpus;
+    if (corpus.getFormat() == OutputFormat.COMPACT) {
+      fieldNumber = ParseResponse.COMPACT_NODE_FIELD_NUMBER;
+    } else if (corpus.getFormat() == OutputFormat.DAG) {
+      fieldNumber = ParseResponse.DAG_NODE_FIELD_NUMBER;
+    } else if (corpus.getFormat() == OutputFormat.GRAPH) {
+      fieldNumber = ParseResponse.GRAPH_TENSORS_FIELD_NUMBER;
+    } else {
+      fieldNumber = ParseResponse.NODE_FIELD_NUMBER;
+    }
+  }
+
+  /**
+   * Bind a service replacing its {@code getProblem} method with one serving a corpus.
+   *
+   * @param service a definition of the parsing service
+   * @param corpus a converted corpus
+   * @return a definition of the service to add to a server
+   */
+  static final ServerServiceDefinition bindService(final ServerServiceDefinition service,
+      final Corpus corpus) {
+    final MethodDescriptor<StringMessage, InputStream> getProblemMethod =
+        TptpParserGrpc.getGetProblemMethod().toBuilder(
+            ProtoUtils.marshaller(StringMessage.getDefaultInstance()),
+            new PreSerializedMarshaller()).build();
+    final ServerServiceDefinition.Builder corpusService =
+        ServerServiceDefinition.builder(TptpParserGrpc.SERVICE_NAME).addMethod(getProblemMethod,
+            ServerCalls.asyncUnaryCall(new CorpusProblemMethod(corpus)));
+    for (final ServerMethodDefinition<?, ?> method : service.getMethods()) {
+      if (!method.getMethodDescriptor().getFullMethodName()
+          .equals(getProblemMethod.getFullMethodName())) {
+        corpusService.addMethod(method);
+      }
+    }
+    return corpusService.build();
+  }
+
+  @Override
+  public final void invoke(final StringMessage request,
+      final StreamObserver<InputStream> responseObserver) {
+    final int problemId = corpus.indexOf(request.getStringMessage());
+    if (problemId < 0) {
+      responseObserver.onError(Status.NOT_FOUND
+          .withDescription("No problem in the corpus: " + request.getStringMessage())
+          .asRuntimeException());
+      return;
+    }
+    final ByteBuffer record = corpus.getRecord(problemId);
+    try {
+      responseObserver.onNext(PreSerializedMarshaller.streamOf(header(record.remaining()), record));
+      responseObserver.onCompleted();
+    } catch (final IOException e) {
+      responseObserver.onError(Status.INTERNAL.withCause(e).asRuntimeException());
+    }
+  }
+
+  private final ByteBuffer header(final int recordSize) throws IOException {
+    final byte[] header = new byte[CodedOutputStream.computeTagSize(fieldNumber)
+        + CodedOutputStream.computeUInt32SizeNoTag(recordSize)];
+    final CodedOutputStream output = CodedOutputStream.newInstance(header);
+    output.writeTag(fieldNumber, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+    output.writeUInt32NoTag(recordSize);
+    return ByteBuffer.wrap(header);
+  }
+}
@@ -0,0 +1,160 @@
+/*
+ *  Copyright 2023 Boris Shminke
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+
+package io.github.inpefess.tptpgrpc.tptp2proto;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import com.google.protobuf.InvalidProtocolBufferException;
+import io.github.inpefess.tptpgrpc.tptpproto.CompactNode;
+import io.github.inpefess.tptpgrpc.tptpproto.DagNode;
+import io.github.inpefess.tptpgrpc.tptpproto.GraphTensors;
+import io.github.inpefess.tptpgrpc.tptpproto.Node;
+import io.github.inpefess.tptpgrpc.tptpproto.OutputFormat;
+import io.github.inpefess.tptpgrpc.tptpproto.ShardIndex;
+
+/**
+ * A memory-mapped shard of a corpus written by {@link CorpusWriter}.
+ *
+ * <p>Records are read by random access without copying them from the page cache. The shard is
+ * unmapped when it's garbage-collected.
+ */
+public final class CorpusShard {
+  private final ShardIndex index;
+  private final ByteBuffer records;
+  private final Map<String, Integer> recordIds = new HashMap<>();
+
+  private CorpusShard(final ShardIndex index, final ByteBuffer records) {
+    this.index = index;
+    this.records = records;
+    for (int i = 0; i < index.getNameCount(); i++) {
+      recordIds.putIfAbsent(index.getName(i), i);
+    }
+  }
+
+  /**
+   * Map a shard to memory.
+   *
+   * @param shardFile a shard file (its index should be next to it)
+   * @return the mapped shard
+   * @throws IOException if unable to read the shard or its index
+   */
+  public static final CorpusShard open(final Path shardFile) throws IOException {
+    final ShardIndex index =
+        ShardIndex.parseFrom(Files.readAllBytes(CorpusWriter.indexFile(shardFile)));
+    try (FileChannel channel = FileChannel.open(shardFile, StandardOpenOption.READ)) {
+      return new CorpusShard(index, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+    }
+  }
+
+  /**
+   * The number of records.
+   *
+   * @return the number of records in the shard
+   */
+  public final int size() {
+    return index.getNameCount();
+  }
+
+  /**
+   * The format of records.
+   *
+   * @return the format of all records in the shard
+   */
+  public final OutputFormat getFormat() {
+    return index.getFormat();
+  }
+
+  /**
+   * The original path of a problem.
+   *
+   * @param recordId the number of a record in the shard
+   * @return the original path of the problem of the record
+   */
+  public final String getName(final int recordId) {
+    return index.getName(recordId);
+  }
+
+  /**
+   * Find a problem.
+   *
+   * @param name the original path of a problem
+   * @return the number of the first record of the problem or -1 if it's not in the shard
+   */
+  public final int indexOf(final String name) {
+    return recordIds.getOrDefault(name, -1);
+  }
+
+  /**
+   * Serialised record.
+   *
+   * @param recordId the number of a record in the shard
+   * @return a read-only view of the record in the mapped shard
+   */
+  public final ByteBuffer getRecord(final int recordId) {
+    final int offset = (int) index.getOffset(recordId);
+    final ByteBuffer record = records.duplicate();
+    record.position(offset).limit(offset + index.getSize(recordId));
+    return record.slice();
+  }
+
+  /**
+   * Parse a record (and expand it from the compact or DAG format if needed).
+   *
+   * <p>Graph tensors can't be expanded without their vocabulary, see
+   * {@link #getNode(int, GraphVocabulary)}.
+   *
+   * @param recordId the number of a record in the shard
+   * @return the parsed problem
+   * @throws InvalidProtocolBufferException if the record is broken
+   */
+  public final Node getNode(final int recordId) throws InvalidProtocolBufferException {
+    if (index.getFormat() == OutputFormat.GRAPH) {
+      throw new IllegalStateException(
+          "Graph tensors need a vocabulary to expand, use getNode(recordId, vocabulary)");
+    }
+    final ByteBuffer record = getRecord(recordId);
+    if (index.getFormat() == OutputFormat.COMPACT) {
+      return CompactNodeCodec.decode(CompactNode.parseFrom(record));
+    }
+    if (index.getFormat() == OutputFormat.DAG) {
+      return DagNodeCodec.decode(DagNode.parseFrom(record));
+    }
+    return Node.parseFrom(record);
+  }
+
+  /**
+   * Parse a record of any format, expanding graph tensors with their vocabulary.
+   *
+   * @param recordId the number of a record in the shard
+   * @param vocabulary the vocabulary the graph tensors were labelled with
+   * @return the parsed problem
+   * @throws InvalidProtocolBufferException if the record is broken
+   */
+  public final Node getNode(final int recordId, final GraphVocabulary vocabulary)
+      throws InvalidProtocolBufferException {
+    if (index.getFormat() == OutputFormat.GRAPH) {
+      return GraphTensorCodec.decode(GraphTensors.parseFrom(getRecord(recordId)), vocabulary);
+    }
+    return getNode(recordId);
+  }
+}
@@ -0,0 +1,148 @@
+/*
+ *  Copyright 2023 Boris Shminke
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+
+package io.github.inpefess.tptpgrpc.tptp2proto;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.MessageLite;
+import io.github.inpefess.tptpgrpc.tptpproto.OutputFormat;
+import io.github.inpefess.tptpgrpc.tptpproto.ShardIndex;
+
+/**
+ * Writer of a corpus of converted problems split into shards.
+ *
+ * <p>A shard (like {@literal shard-00000.pb}) is a file of length-delimited records. Its index
+ * ({@literal shard-00000.index}) is a {@link ShardIndex} with the original path, the offset, and
+ * the size of each record. A shard is closed when the next record would make it larger than the
+ * shard size, so shards can be memory-mapped by {@link CorpusShard}.
+ *
+ * <p>Records can come from several threads in any order. Each one has a sequence number, and they
+ * are written in the order of these numbers. A thread with a record far ahead of the next one
+ * waits, so the records waiting for their turn don't fill up the memory.
+ */
+public final class CorpusWriter implements Closeable {
+  private static final int MAX_WAITING_RECORDS = 256;
+
+  private final Path folder;
+  private final long shardBytes;
+  private final OutputFormat format;
+  // records (or nulls for skipped ones) waiting for the ones with smaller numbers
+  private final Map<Integer, MessageLite> waitingRecords = new HashMap<>();
+  private final Map<Integer, String> waitingNames = new HashMap<>();
+  private int nextSequenceNumber;
+  private int shardCount;
+  private OutputStream shard;
+  private ShardIndex.Builder shardIndex;
+  private long shardPosition;
+
+  /**
+   * Constructor.
+   *
+   * @param folder an existing folder to write shards to
+   * @param shardBytes the maximal size of a shard (unless it has only one record)
+   * @param format the format of records
+   */
+  public CorpusWriter(final Path folder, final long shardBytes, final OutputFormat format) {
+    if (shardBytes <= 0 || shardBytes > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("a shard should have from 1 to 2^31 - 1 bytes");
+    }
+    this.folder = folder;
+    this.shardBytes = shardBytes;
+    this.format = format;
+  }
+
+  /**
+   * Add a record.
+   *
+   * @param sequenceNumber the number of the record in the output order (starting from zero)
+   * @param name the original path of a problem
+   * @param record a converted problem or {@code null} to skip the sequence number
+   * @throws IOException if unable to write
+   * @throws InterruptedException if interrupted while waiting for the records before
+   */
+  public final synchronized void add(final int sequenceNumber, final String name,
+      final MessageLite record) throws IOException, InterruptedException {
+    while (sequenceNumber - nextSequenceNumber > MAX_WAITING_RECORDS) {
+      wait();
+    }
+    waitingRecords.put(sequenceNumber, record);
+    waitingNames.put(sequenceNumber, name);
+    while (waitingNames.containsKey(nextSequenceNumber)) {
+      final MessageLite nextRecord = waitingRecords.remove(nextSequenceNumber);
+      final String nextName = waitingNames.remove(nextSequenceNumber++);
+      if (nextRecord != null) {
+        write(nextName, nextRecord);
+      }
+    }
+    notifyAll();
+  }
+
+  private final void write(final String name, final MessageLite record) throws IOException {
+    final int size = record.getSerializedSize();
+    final int lengthSize = CodedOutputStream.computeUInt32SizeNoTag(size);
+    if (shard != null && shardPosition + lengthSize + size > shardBytes) {
+      closeShard();
+    }
+    if (shard == null) {
+      shard = new BufferedOutputStream(Files.newOutputStream(shardFile(folder, shardCount)));
+      shardIndex = ShardIndex.newBuilder().setFormat(format);
+      shardPosition = 0;
+    }
+    record.writeDelimitedTo(shard);
+    shardIndex.addName(name).addOffset(shardPosition + lengthSize).addSize(size);
+    shardPosition += lengthSize + size;
+  }
+
+  private final void closeShard() throws IOException {
+    shard.close();
+    Files.write(indexFile(shardFile(folder, shardCount++)), shardIndex.build().toByteArray());
+    shard = null;
+  }
+
+  /**
+   * Write the last shard.
+   *
+   * @throws IOException if unable to write or some records are missing
+   */
+  @Override
+  public final synchronized void close() throws IOException {
+    if (shard != null) {
+      closeShard();
+    }
+    if (!waitingNames.isEmpty()) {
+      throw new IOException("Missing record " + nextSequenceNumber + ", "
+          + waitingNames.size() + " records after it are not written");
+    }
+  }
+
+  static final Path shardFile(final Path folder, final int shardNumber) {
+    return folder.resolve(String.format("shard-%05d.pb", shardNumber));
+  }
+
+  static final Path indexFile(final Path shardFile) {
+    final String shardFileName = shardFile.getFileName().toString();
+    return shardFile.resolveSibling(
+        shardFileName.substring(0, shardFileName.length() - ".pb".length()) + ".index");
+  }
+}
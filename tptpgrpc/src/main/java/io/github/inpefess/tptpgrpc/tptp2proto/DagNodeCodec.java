@@ -0,0 +1,185 @@
+/*
+ *  Copyright 2023 Boris Shminke
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+
+package io.github.inpefess.tptpgrpc.tptp2proto;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import io.github.inpefess.tptpgrpc.tptpproto.DagNode;
+import io.github.inpefess.tptpgrpc.tptpproto.Node;
+
+/**
+ * Conversion between {@link Node} trees and directed acyclic graphs of their distinct subtrees.
+ *
+ * <p>A {@link DagNode} stores every distinct symbol and every distinct subtree once. Subtrees are
+ * listed in postorder as a symbol index and indices of children, so equal subterms of different
+ * clauses (like {@literal mult(X, inverse(X))}) become one node with several parents. Sharing is
+ * purely structural: variables are identified by their names as in the tree, and expanding the
+ * graph restores the original tree.
+ */
+public final class DagNodeCodec {
+  private final DagNode.Builder dagNode = DagNode.newBuilder();
+  private final Map<String, Integer> symbolIds = new HashMap<>();
+  private final Map<SubtreeKey, Integer> subtreeIds = new HashMap<>();
+  // the same instances are shared by problems with the same included files
+  private final Map<Node, Integer> visitedNodes = new IdentityHashMap<>();
+
+  private DagNodeCodec() {}
+
+  /**
+   * Intern all subtrees of a tree.
+   *
+   * @param root the root of a tree
+   * @return a graph of distinct subtrees of the tree
+   */
+  public static final DagNode encode(final Node root) {
+    final DagNodeCodec codec = new DagNodeCodec();
+    codec.add(root);
+    return codec.dagNode.build();
+  }
+
+  private final int add(final Node root) {
+    final Deque<PartialSubtree> ancestors = new ArrayDeque<>();
+    ancestors.push(new PartialSubtree(root, symbolId(root.getValue())));
+    while (true) {
+      final PartialSubtree subtree = ancestors.peek();
+      if (subtree.nextChild < subtree.node.getChildCount()) {
+        visitNextChild(ancestors, subtree);
+      } else {
+        final int subtreeId = intern(ancestors.pop());
+        if (ancestors.isEmpty()) {
+          return subtreeId;
+        }
+        ancestors.peek().addChild(subtreeId);
+      }
+    }
+  }
+
+  private final void visitNextChild(final Deque<PartialSubtree> ancestors,
+      final PartialSubtree subtree) {
+    final Node child = subtree.node.getChild(subtree.nextChild);
+    final Integer childId = visitedNodes.get(child);
+    if (childId == null) {
+      ancestors.push(new PartialSubtree(child, symbolId(child.getValue())));
+    } else {
+      subtree.addChild(childId);
+    }
+  }
+
+  private final int symbolId(final String symbol) {
+    final Integer knownId = symbolIds.get(symbol);
+    if (knownId != null) {
+      return knownId;
+    }
+    symbolIds.put(symbol, dagNode.getSymbolCount());
+    dagNode.addSymbol(symbol);
+    return dagNode.getSymbolCount() - 1;
+  }
+
+  private final int intern(final PartialSubtree subtree) {
+    final SubtreeKey key = new SubtreeKey(subtree.symbolAndChildIds);
+    Integer subtreeId = subtreeIds.get(key);
+    if (subtreeId == null) {
+      subtreeId = dagNode.getSymbolIdCount();
+      subtreeIds.put(key, subtreeId);
+      dagNode.addSymbolId(subtree.symbolAndChildIds[0])
+          .addChildCount(subtree.symbolAndChildIds.length - 1);
+      for (int i = 1; i < subtree.symbolAndChildIds.length; i++) {
+        dagNode.addChildId(subtree.symbolAndChildIds[i]);
+      }
+    }
+    visitedNodes.put(subtree.node, subtreeId);
+    return subtreeId;
+  }
+
+  /**
+   * Expand a graph back to a tree.
+   *
+   * <p>Equal subtrees of the result are the same (immutable) instances.
+   *
+   * @param dagNode a graph of distinct subtrees of a tree
+   * @return the root of the tree
+   */
+  public static final Node decode(final DagNode dagNode) {
+    if (dagNode.getSymbolIdCount() == 0) {
+      throw new IllegalArgumentException("Empty DAG node");
+    }
+    final Node[] subtrees = new Node[dagNode.getSymbolIdCount()];
+    int firstChildIndex = 0;
+    for (int i = 0; i < subtrees.length; i++) {
+      subtrees[i] = expand(dagNode, subtrees, i, firstChildIndex);
+      firstChildIndex += dagNode.getChildCount(i);
+    }
+    return subtrees[subtrees.length - 1];
+  }
+
+  private static final Node expand(final DagNode dagNode, final Node[] subtrees,
+      final int subtreeId, final int firstChildIndex) {
+    final Node.Builder subtree =
+        Node.newBuilder().setValue(dagNode.getSymbol(dagNode.getSymbolId(subtreeId)));
+    for (int i = 0; i < dagNode.getChildCount(subtreeId); i++) {
+      final int childId = dagNode.getChildId(firstChildIndex + i);
+      if (childId >= subtreeId) {
+        throw new IllegalArgumentException(
+            "Subtree " + subtreeId + " precedes its child " + childId);
+      }
+      subtree.addChild(subtrees[childId]);
+    }
+    return subtree.build();
+  }
+
+  private static final class PartialSubtree {
+    private final Node node;
+    // the symbol index followed by indices of children
+    private final int[] symbolAndChildIds;
+    private int nextChild;
+
+    PartialSubtree(final Node node, final int symbolId) {
+      this.node = node;
+      symbolAndChildIds = new int[node.getChildCount() + 1];
+      symbolAndChildIds[0] = symbolId;
+    }
+
+    void addChild(final int childId) {
+      symbolAndChildIds[++nextChild] = childId;
+    }
+  }
+
+  private static final class SubtreeKey {
+    private final int[] symbolAndChildIds;
+    private final int hashCode;
+
+    SubtreeKey(final int[] symbolAndChildIds) {
+      this.symbolAndChildIds = symbolAndChildIds;
+      hashCode = Arrays.hashCode(symbolAndChildIds);
+    }
+
+    @Override
+    public boolean equals(final Object other) {
+      return other instanceof SubtreeKey
+          && Arrays.equals(symbolAndChildIds, ((SubtreeKey) other).symbolAndChildIds);
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+  }
+}
@@ -0,0 +1,65 @@
+/*
+ *  Copyright 2023 Boris Shminke
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+
+package io.github.inpefess.tptpgrpc.tptp2proto;
+
+import java.util.concurrent.TimeUnit;
+import io.github.inpefess.tptpgrpc.tptpproto.Node;
+import io.grpc.Context;
+import io.grpc.Contexts;
+import io.grpc.Status;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+
+/**
+ * A sink sending streamed clauses only when the response stream is ready.
+ *
+ * <p>The conversion pauses while the client doesn't take messages, so the clauses of a huge problem
+ * don't pile up in the outbound buffers of the call. Readiness is polled: the call is handled in
+ * the thread running its callbacks, so an {@code onReady} handler wouldn't run until the handling
+ * ends. A cancelled call (or one past its deadline) stops the waiting.
+ */
+final class FlowControlledSink implements StreamingConverter.NodeSink {
+  private static final long READY_POLL_MILLIS = 1;
+
+  private final ServerCallStreamObserver<Node> responseObserver;
+  private final Context context = Context.current();
+
+  /**
+   * Constructor.
+   *
+   * @param responseObserver an observer of the response stream of a server call
+   */
+  FlowControlledSink(final StreamObserver<Node> responseObserver) {
+    this.responseObserver = (ServerCallStreamObserver<Node>) responseObserver;
+  }
+
+  @Override
+  public final void accept(final Node node) {
+    while (!responseObserver.isReady()) {
+      if (context.isCancelled()) {
+        throw Contexts.statusFromCancelled(context).asRuntimeException();
+      }
+      try {
+        TimeUnit.MILLISECONDS.sleep(READY_POLL_MILLIS);
+      } catch (final InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw Status.CANCELLED.withCause(e).asRuntimeException();
+      }
+    }
+    responseObserver.onNext(node);
+  }
+}
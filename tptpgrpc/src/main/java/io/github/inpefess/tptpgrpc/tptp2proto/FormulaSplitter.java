@@ -0,0 +1,111 @@
+/*
+ *  Copyright 2023 Boris Shminke
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+
+package io.github.inpefess.tptpgrpc.tptp2proto;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Finder of top-level annotated formula boundaries in a TPTP text.
+ *
+ * <p>A formula (like {@literal cnf(...).} or {@literal include(...).}) ends with the first full
+ * stop outside of parentheses, brackets, quotes, and comments. The text is scanned as bytes, since
+ * all TPTP delimiters are ASCII characters.
+ */
+final class FormulaSplitter {
+  private int depth;
+  private byte quote;
+  private boolean lineComment;
+  private boolean blockComment;
+  private int blockCommentStart;
+
+  /**
+   * Find the end of the next formula.
+   *
+   * @param text a TPTP text
+   * @param start a position in the text at a formula boundary
+   * @return the position after the full stop ending the next formula or {@literal -1} if the
+   *     formula doesn't end in the text
+   */
+  final int formulaEnd(final ByteBuffer text, final int start) {
+    depth = 0;
+    quote = 0;
+    lineComment = false;
+    blockComment = false;
+    for (int position = start; position < text.limit(); position++) {
+      if (isFormulaEnd(text, position)) {
+        return position + 1;
+      }
+    }
+    return -1;
+  }
+
+  private final boolean isFormulaEnd(final ByteBuffer text, final int position) {
+    final byte current = text.get(position);
+    if (lineComment) {
+      lineComment = current != '\n';
+    } else if (blockComment) {
+      blockComment = !(current == '/' && text.get(position - 1) == '*'
+          && position - blockCommentStart > 2);
+    } else if (quote != 0) {
+      scanQuoted(text, position, current);
+    } else {
+      return scanCode(text, position, current);
+    }
+    return false;
+  }
+
+  private final void scanQuoted(final ByteBuffer text, final int position, final byte current) {
+    if (current == quote && !isEscaped(text, position)) {
+      quote = 0;
+    }
+  }
+
+  private final boolean isEscaped(final ByteBuffer text, final int position) {
+    int backslashCount = 0;
+    while (position - backslashCount - 1 >= 0 && text.get(position - backslashCount - 1) == '\\') {
+      backslashCount++;
+    }
+    return backslashCount % 2 == 1;
+  }
+
+  private final boolean scanCode(final ByteBuffer text, final int position, final byte current) {
+    switch (current) {
+      case '%':
+        lineComment = true;
+        break;
+      case '/':
+        blockComment = position + 1 < text.limit() && text.get(position + 1) == '*';
+        blockCommentStart = position;
+        break;
+      case '\'':
+      case '"':
+        quote = current;
+        break;
+      case '(':
+      case '[':
+        depth++;
+        break;
+      case ')':
+      case ']':
+        depth--;
+        break;
+      default:
+        return current == '.' && depth == 0;
+    }
+    return false;
+  }
+}
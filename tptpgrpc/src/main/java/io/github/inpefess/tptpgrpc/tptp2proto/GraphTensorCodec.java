@@ -0,0 +1,213 @@
+/*
+ *  Copyright 2023 Boris Shminke
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+
+package io.github.inpefess.tptpgrpc.tptp2proto;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import com.google.protobuf.UnsafeByteOperations;
+import io.github.inpefess.tptpgrpc.tptpproto.GraphTensors;
+import io.github.inpefess.tptpgrpc.tptpproto.Node;
+import io.github.inpefess.tptpgrpc.tptpproto.NodeType;
+
+/**
+ * Conversion between {@link Node} trees and {@link GraphTensors} for graph neural networks.
+ *
+ * <p>Nodes are numbered in preorder, so the edge to a node (from its parent) is the edge number
+ * {@code node - 1}, and children of a node are listed in their order. The tensors are packed into
+ * byte arrays of the message as they are filled, so a Python client can wrap each field with
+ * {@code numpy.frombuffer} without walking the tree or copying the data.
+ */
+public final class GraphTensorCodec {
+  private static final int INT_BYTES = Integer.BYTES;
+
+  private final GraphVocabulary vocabulary;
+  private final int edgeCount;
+  private final ByteBuffer labelIds;
+  private final ByteBuffer edgeIndex;
+  private final ByteBuffer nodeTypes;
+
+  private GraphTensorCodec(final GraphVocabulary vocabulary, final int nodeCount) {
+    this.vocabulary = vocabulary;
+    edgeCount = nodeCount - 1;
+    labelIds = ByteBuffer.allocate(nodeCount * INT_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+    edgeIndex = ByteBuffer.allocate(2 * edgeCount * INT_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+    nodeTypes = ByteBuffer.allocate(nodeCount * INT_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+  }
+
+  /**
+   * Flatten a tree into graph tensors.
+   *
+   * @param root the root of a tree
+   * @param vocabulary the vocabulary to take (and add) label ids from
+   * @return labels, edges, and types of nodes of the tree
+   */
+  public static final GraphTensors encode(final Node root, final GraphVocabulary vocabulary) {
+    final int nodeCount = countNodes(root);
+    final GraphTensorCodec codec = new GraphTensorCodec(vocabulary, nodeCount);
+    codec.addAll(root);
+    // the arrays are not changed after wrapping
+    return GraphTensors.newBuilder().setNodeCount(nodeCount)
+        .setLabelId(UnsafeByteOperations.unsafeWrap(codec.labelIds.array()))
+        .setEdgeIndex(UnsafeByteOperations.unsafeWrap(codec.edgeIndex.array()))
+        .setNodeType(UnsafeByteOperations.unsafeWrap(codec.nodeTypes.array())).build();
+  }
+
+  private static final int countNodes(final Node root) {
+    final Deque<Node> unvisited = new ArrayDeque<>();
+    unvisited.push(root);
+    int nodeCount = 0;
+    while (!unvisited.isEmpty()) {
+      final Node node = unvisited.pop();
+      nodeCount++;
+      node.getChildList().forEach(unvisited::push);
+    }
+    return nodeCount;
+  }
+
+  private final void addAll(final Node root) {
+    final Deque<PendingNode> unvisited = new ArrayDeque<>();
+    unvisited.push(new PendingNode(root, -1, nodeType(root)));
+    int nodeId = 0;
+    while (!unvisited.isEmpty()) {
+      final PendingNode pendingNode = unvisited.pop();
+      add(pendingNode, nodeId);
+      pushChildren(unvisited, pendingNode, nodeId);
+      nodeId++;
+    }
+  }
+
+  private static final void pushChildren(final Deque<PendingNode> unvisited,
+      final PendingNode parent, final int parentId) {
+    final Node node = parent.node;
+    // all children of a quantifier but the last one are the symbols it binds
+    final int boundSymbolType = parent.nodeType != NodeType.QUANTIFIER_VALUE ? -1
+        : "!".equals(node.getValue()) ? NodeType.VARIABLE_VALUE
+            : NodeType.FUNCTION_OR_PREDICATE_VALUE;
+    // pushed in reverse to be visited in order
+    for (int i = node.getChildCount() - 1; i >= 0; i--) {
+      final Node child = node.getChild(i);
+      unvisited.push(new PendingNode(child, parentId,
+          boundSymbolType >= 0 && i < node.getChildCount() - 1 ? boundSymbolType
+              : nodeType(child)));
+    }
+  }
+
+  private final void add(final PendingNode pendingNode, final int nodeId) {
+    labelIds.putInt(nodeId * INT_BYTES, vocabulary.getLabelId(pendingNode.node.getValue()));
+    nodeTypes.putInt(nodeId * INT_BYTES, pendingNode.nodeType);
+    if (nodeId > 0) {
+      edgeIndex.putInt((nodeId - 1) * INT_BYTES, pendingNode.parentId);
+      edgeIndex.putInt((edgeCount + nodeId - 1) * INT_BYTES, nodeId);
+    }
+  }
+
+  /**
+   * Get the type of a node by its symbol.
+   *
+   * @param node a node which is not bound by a quantifier
+   * @return a {@link NodeType} number
+   */
+  private static final int nodeType(final Node node) {
+    final String value = node.getValue();
+    if (node.getChildCount() > 0 && ("!".equals(value) || "?".equals(value))) {
+      return NodeType.QUANTIFIER_VALUE;
+    }
+    if ("&".equals(value) || "|".equals(value) || "~".equals(value)) {
+      return NodeType.CONNECTIVE_VALUE;
+    }
+    // TPTP variables start with a capital letter
+    return !value.isEmpty() && Character.isUpperCase(value.charAt(0)) ? NodeType.VARIABLE_VALUE
+        : NodeType.FUNCTION_OR_PREDICATE_VALUE;
+  }
+
+  /**
+   * Rebuild a tree from graph tensors.
+   *
+   * @param graphTensors graph tensors of a tree
+   * @param vocabulary the vocabulary the tensors were labelled with
+   * @return the root of the tree
+   */
+  public static final Node decode(final GraphTensors graphTensors,
+      final GraphVocabulary vocabulary) {
+    final int nodeCount = graphTensors.getNodeCount();
+    if (nodeCount == 0) {
+      throw new IllegalArgumentException("Empty graph tensors");
+    }
+    final ByteBuffer labelIds =
+        graphTensors.getLabelId().asReadOnlyByteBuffer().order(ByteOrder.LITTLE_ENDIAN);
+    final int[][] children = children(graphTensors.getEdgeIndex().asReadOnlyByteBuffer()
+        .order(ByteOrder.LITTLE_ENDIAN), nodeCount);
+    final Node[] nodes = new Node[nodeCount];
+    // children have greater numbers than their parents, so they are built first
+    for (int nodeId = nodeCount - 1; nodeId >= 0; nodeId--) {
+      nodes[nodeId] = expand(vocabulary.getLabel(labelIds.getInt(nodeId * INT_BYTES)),
+          children[nodeId], nodes);
+    }
+    return nodes[0];
+  }
+
+  private static final Node expand(final String label, final int[] childIds,
+      final Node[] nodes) {
+    final Node.Builder node = Node.newBuilder().setValue(label);
+    for (final int childId : childIds) {
+      node.addChild(nodes[childId]);
+    }
+    return node.build();
+  }
+
+  private static final int[][] children(final ByteBuffer edgeIndex, final int nodeCount) {
+    final int edgeCount = nodeCount - 1;
+    final int[][] children = allocateChildren(edgeIndex, nodeCount);
+    final int[] childCounts = new int[nodeCount];
+    for (int edge = 0; edge < edgeCount; edge++) {
+      final int parentId = edgeIndex.getInt(edge * INT_BYTES);
+      final int childId = edgeIndex.getInt((edgeCount + edge) * INT_BYTES);
+      if (childId <= parentId) {
+        throw new IllegalArgumentException("Node " + childId + " precedes its parent " + parentId);
+      }
+      children[parentId][childCounts[parentId]++] = childId;
+    }
+    return children;
+  }
+
+  private static final int[][] allocateChildren(final ByteBuffer edgeIndex,
+      final int nodeCount) {
+    final int[] childCounts = new int[nodeCount];
+    for (int edge = 0; edge < nodeCount - 1; edge++) {
+      childCounts[edgeIndex.getInt(edge * INT_BYTES)]++;
+    }
+    final int[][] children = new int[nodeCount][];
+    for (int nodeId = 0; nodeId < nodeCount; nodeId++) {
+      children[nodeId] = new int[childCounts[nodeId]];
+    }
+    return children;
+  }
+
+  private static final class PendingNode {
+    private final Node node;
+    private final int parentId;
+    private final int nodeType;
+
+    PendingNode(final Node node, final int parentId, final int nodeType) {
+      this.node = node;
+      this.parentId = parentId;
+      this.nodeType = nodeType;
+    }
+  }
+}
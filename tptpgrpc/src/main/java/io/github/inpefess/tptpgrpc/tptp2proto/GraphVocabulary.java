@@ -0,0 +1,147 @@
+/*
+ *  Copyright 2023 Boris Shminke
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+
+package io.github.inpefess.tptpgrpc.tptp2proto;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import io.grpc.Status;
+
+/**
+ * Ids of node labels shared by the graph tensors of a corpus.
+ *
+ * <p>A new label gets the next free id, and ids are never reassigned, so tensors converted earlier
+ * (or by another process starting from the same file) stay valid while the vocabulary grows. The
+ * file has one label per line in the order of ids.
+ *
+ * <p>A vocabulary filled from client requests (as the one of a server) can be limited in size. A
+ * problem with a new label for a full vocabulary fails with the
+ * {@link Status.Code#RESOURCE_EXHAUSTED} status, as problems over {@link ConversionLimits} do.
+ */
+public final class GraphVocabulary {
+  /** The name of the vocabulary file in the output folder of a batch conversion. */
+  public static final String FILE_NAME = "vocabulary.txt";
+
+  private final Map<String, Integer> labelIds = new ConcurrentHashMap<>();
+  // guarded by this
+  private final List<String> labels = new ArrayList<>();
+  private final int maxSize;
+
+  /**
+   * Create an empty vocabulary without a size limit.
+   */
+  public GraphVocabulary() {
+    this(0);
+  }
+
+  /**
+   * Create an empty vocabulary.
+   *
+   * @param maxSize the maximal number of labels (zero means no limit)
+   */
+  public GraphVocabulary(final int maxSize) {
+    this.maxSize = maxSize;
+  }
+
+  /**
+   * Read a vocabulary without a size limit.
+   *
+   * @param file a vocabulary file
+   * @return the labels of the file (or an empty vocabulary if there is no file)
+   * @throws IOException if unable to read the file
+   */
+  public static final GraphVocabulary load(final Path file) throws IOException {
+    return load(file, 0);
+  }
+
+  /**
+   * Read a vocabulary.
+   *
+   * @param file a vocabulary file
+   * @param maxSize the maximal number of labels (zero means no limit); labels of the file are kept
+   *     even if there are more of them
+   * @return the labels of the file (or an empty vocabulary if there is no file)
+   * @throws IOException if unable to read the file
+   */
+  public static final GraphVocabulary load(final Path file, final int maxSize)
+      throws IOException {
+    final GraphVocabulary vocabulary = new GraphVocabulary(maxSize);
+    if (Files.exists(file)) {
+      Files.readAllLines(file, StandardCharsets.UTF_8).forEach(vocabulary::addLabel);
+    }
+    return vocabulary;
+  }
+
+  /**
+   * Get the id of a label adding it if it's new.
+   *
+   * @param label a symbol
+   * @return the id of the symbol
+   * @throws io.grpc.StatusRuntimeException with {@link Status.Code#RESOURCE_EXHAUSTED} for a new
+   *     label if the vocabulary is full
+   */
+  public final int getLabelId(final String label) {
+    final Integer knownId = labelIds.get(label);
+    if (knownId != null) {
+      return knownId;
+    }
+    synchronized (this) {
+      if (maxSize > 0 && labels.size() >= maxSize && !labelIds.containsKey(label)) {
+        throw Status.RESOURCE_EXHAUSTED
+            .withDescription("More than " + maxSize + " labels in the vocabulary")
+            .asRuntimeException();
+      }
+      return addLabel(label);
+    }
+  }
+
+  private final synchronized int addLabel(final String label) {
+    return labelIds.computeIfAbsent(label, newLabel -> {
+      labels.add(newLabel);
+      return labels.size() - 1;
+    });
+  }
+
+  /**
+   * Get a label by its id.
+   *
+   * @param labelId the id of a label
+   * @return the label
+   */
+  public final synchronized String getLabel(final int labelId) {
+    return labels.get(labelId);
+  }
+
+  public final synchronized int size() {
+    return labels.size();
+  }
+
+  /**
+   * Write all labels to a file.
+   *
+   * @param file a vocabulary file
+   * @throws IOException if unable to write
+   */
+  public final synchronized void save(final Path file) throws IOException {
+    Files.write(file, labels, StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,95 @@
+/*
+ *  Copyright 2023 Boris Shminke
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+
+package io.github.inpefess.tptpgrpc.tptp2proto;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram with fixed buckets written in the Prometheus text format.
+ *
+ * <p>Observations are lock-free. A snapshot written while observations go on may be slightly
+ * inconsistent, which is fine for monitoring.
+ */
+final class Histogram {
+  private final long[] upperBounds;
+  // not cumulative, the last one is above all the bounds
+  private final LongAdder[] bucketCounts;
+  private final LongAdder sum = new LongAdder();
+
+  /**
+   * Constructor.
+   *
+   * @param upperBounds sorted inclusive upper bounds of buckets
+   */
+  Histogram(final long[] upperBounds) {
+    this.upperBounds = upperBounds;
+    bucketCounts = new LongAdder[upperBounds.length + 1];
+    for (int i = 0; i < bucketCounts.length; i++) {
+      bucketCounts[i] = new LongAdder();
+    }
+  }
+
+  /**
+   * Add an observation.
+   *
+   * @param value an observed value
+   */
+  final void observe(final long value) {
+    final int index = Arrays.binarySearch(upperBounds, value);
+    bucketCounts[index < 0 ? -index - 1 : index].increment();
+    sum.add(value);
+  }
+
+  /**
+   * Write the type, cumulative buckets, the sum, and the count of observations of a histogram
+   * without labels.
+   *
+   * @param output a builder to append the samples to
+   * @param name the name of the metric
+   */
+  final void write(final StringBuilder output, final String name) {
+    output.append("# TYPE ").append(name).append(" histogram\n");
+    write(output, name, "", 1);
+  }
+
+  /**
+   * Write cumulative buckets, the sum, and the count of observations.
+   *
+   * @param output a builder to append the samples to
+   * @param name the name of the metric
+   * @param labels labels like {@literal phase="parse"} or an empty string
+   * @param scale the number of observed units in the unit of the metric (like nanoseconds in a
+   *     second)
+   */
+  final void write(final StringBuilder output, final String name, final String labels,
+      final double scale) {
+    final String bucketLabels = labels.isEmpty() ? "{le=\"" : "{" + labels + ",le=\"";
+    long count = 0;
+    for (int i = 0; i < bucketCounts.length; i++) {
+      count += bucketCounts[i].sum();
+      output.append(name).append("_bucket").append(bucketLabels)
+          .append(i < upperBounds.length ? String.valueOf(upperBounds[i] / scale) : "+Inf")
+          .append("\"} ").append(count).append('\n');
+    }
+    final String sampleLabels = labels.isEmpty() ? "" : "{" + labels + "}";
+    output.append(name).append("_sum").append(sampleLabels).append(' ')
+        .append(sum.sum() / scale).append('\n');
+    output.append(name).append("_count").append(sampleLabels).append(' ').append(count)
+        .append('\n');
+  }
+}
@@ -0,0 +1,208 @@
+/*
+ *  Copyright 2023 Boris Shminke
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+
+package io.github.inpefess.tptpgrpc.tptp2proto;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+/**
+ * A bounded thread-safe cache of parsed TPTP include files (e.g. {@literal Axioms/*.ax}).
+ *
+ * <p>Entries are keyed by the resolved path of an included file together with its modification
+ * time and size, so that changing a file on disk makes its cached version unreachable. An entry
+ * also keeps the modification times and sizes of the files included by that file (directly or
+ * not), and it's parsed again when any of them changes. One cache can be shared by several
+ * {@link Tptp2Proto} instances.
+ */
+public final class IncludeCache {
+  /** Number of included files kept by default. */
+  public static final long DEFAULT_MAXIMUM_SIZE = 256;
+
+  private final Cache<IncludeKey, CachedInclude> cache;
+
+  /**
+   * Constructor.
+   *
+   * @param maximumSize the maximal number of included files to keep
+   */
+  public IncludeCache(final long maximumSize) {
+    cache = CacheBuilder.newBuilder().maximumSize(maximumSize).recordStats().build();
+  }
+
+  /**
+   * Get a parsed included file from the cache or parse it.
+   *
+   * @param includedFile a path to the included file
+   * @param loader a parser of the included file called on cache misses
+   * @return clauses and symbols of the included file
+   * @throws IOException if encounters errors when reading the file
+   * @throws TptpSyntaxErrorException on syntax error
+   */
+  ParsedInclude get(final Path includedFile, final IncludeLoader loader)
+      throws IOException, TptpSyntaxErrorException {
+    final IncludeKey key = key(includedFile);
+    try {
+      final CachedInclude cachedInclude = cache.get(key, () -> load(key, loader));
+      if (cachedInclude.isFresh()) {
+        return cachedInclude.include;
+      }
+      // a nested included file changed
+      cache.asMap().remove(key, cachedInclude);
+      return cache.get(key, () -> load(key, loader)).include;
+    } catch (final ExecutionException | UncheckedExecutionException e) {
+      Throwables.throwIfInstanceOf(e.getCause(), IOException.class);
+      Throwables.throwIfInstanceOf(e.getCause(), TptpSyntaxErrorException.class);
+      Throwables.throwIfUnchecked(e.getCause());
+      throw new IllegalStateException(e.getCause());
+    }
+  }
+
+  /**
+   * Get a parsed included file from the cache or parse it without locking the entry.
+   *
+   * <p>Concurrent callers may parse the same file twice, but the loader may wait for tasks which
+   * use the cache themselves (with {@link #get(Path, IncludeLoader)}, a fork-join worker waiting
+   * inside the loader could pick up a task loading the same file and fail on a recursive load).
+   *
+   * @param includedFile a path to the included file
+   * @param loader a parser of the included file called on cache misses
+   * @return clauses and symbols of the included file
+   * @throws IOException if encounters errors when reading the file
+   * @throws TptpSyntaxErrorException on syntax error
+   */
+  ParsedInclude getOrParse(final Path includedFile, final IncludeLoader loader)
+      throws IOException, TptpSyntaxErrorException {
+    final IncludeKey key = key(includedFile);
+    final CachedInclude cachedInclude = cache.getIfPresent(key);
+    if (cachedInclude != null && cachedInclude.isFresh()) {
+      return cachedInclude.include;
+    }
+    final CachedInclude parsedInclude = load(key, loader);
+    cache.put(key, parsedInclude);
+    return parsedInclude.include;
+  }
+
+  private static final CachedInclude load(final IncludeKey key, final IncludeLoader loader)
+      throws IOException, TptpSyntaxErrorException {
+    final ParsedInclude parsedInclude = loader.load(key.path);
+    final List<IncludeKey> nestedKeys = new ArrayList<>(parsedInclude.includedFiles.size());
+    for (final Path nestedFile : parsedInclude.includedFiles) {
+      nestedKeys.add(key(nestedFile));
+    }
+    return new CachedInclude(parsedInclude, nestedKeys);
+  }
+
+  private static final IncludeKey key(final Path includedFile) throws IOException {
+    final Path resolvedPath = includedFile.toAbsolutePath().normalize();
+    final BasicFileAttributes attributes =
+        Files.readAttributes(resolvedPath, BasicFileAttributes.class);
+    return new IncludeKey(resolvedPath, attributes.lastModifiedTime().toMillis(),
+        attributes.size());
+  }
+
+  /**
+   * Number of requests served from the cache.
+   *
+   * @return the hit counter
+   */
+  public final long hitCount() {
+    return cache.stats().hitCount();
+  }
+
+  /**
+   * Number of requests which required parsing an included file.
+   *
+   * @return the miss counter
+   */
+  public final long missCount() {
+    return cache.stats().missCount();
+  }
+
+  /**
+   * Number of included files currently kept in the cache.
+   *
+   * @return the approximate number of cache entries
+   */
+  public final long size() {
+    return cache.size();
+  }
+
+  /**
+   * Parser of an included file called on cache misses.
+   */
+  @FunctionalInterface
+  interface IncludeLoader {
+    ParsedInclude load(Path includedFile) throws IOException, TptpSyntaxErrorException;
+  }
+
+  private static final class CachedInclude {
+    private final ParsedInclude include;
+    // the stamps of the included file and the files it includes when it was parsed
+    private final List<IncludeKey> nestedKeys;
+
+    CachedInclude(final ParsedInclude include, final List<IncludeKey> nestedKeys) {
+      this.include = include;
+      this.nestedKeys = nestedKeys;
+    }
+
+    boolean isFresh() throws IOException {
+      for (final IncludeKey nestedKey : nestedKeys) {
+        if (!Files.exists(nestedKey.path) || !nestedKey.equals(key(nestedKey.path))) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+
+  private static final class IncludeKey {
+    private final Path path;
+    private final long lastModified;
+    private final long size;
+
+    IncludeKey(final Path path, final long lastModified, final long size) {
+      this.path = path;
+      this.lastModified = lastModified;
+      this.size = size;
+    }
+
+    @Override
+    public final boolean equals(final Object other) {
+      if (!(other instanceof IncludeKey)) {
+        return false;
+      }
+      final IncludeKey otherKey = (IncludeKey) other;
+      return path.equals(otherKey.path) && lastModified == otherKey.lastModified
+          && size == otherKey.size;
+    }
+
+    @Override
+    public final int hashCode() {
+      return Objects.hash(path, lastModified, size);
+    }
+  }
+}
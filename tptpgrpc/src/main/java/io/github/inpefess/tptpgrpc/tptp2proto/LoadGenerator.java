@@ -0,0 +1,201 @@
+/*
+ *  Copyright 2023 Boris Shminke
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+
+package io.github.inpefess.tptpgrpc.tptp2proto;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.MoreExecutors;
+import io.github.inpefess.tptpgrpc.tptpproto.Node;
+import io.github.inpefess.tptpgrpc.tptpproto.StringMessage;
+import io.github.inpefess.tptpgrpc.tptpproto.TptpParserGrpc;
+import io.grpc.Channel;
+import io.grpc.ManagedChannel;
+
+/**
+ * A load generator sending {@code parseTptp} requests to a server.
+ *
+ * <p>With a fixed concurrency, a new request is sent as soon as one of the requests in flight
+ * finishes. With a fixed rate, requests are sent on schedule (with at most the given number in
+ * flight), and latencies are measured from the scheduled time, so a stalled server isn't hidden by
+ * requests which weren't sent in time.
+ */
+public final class LoadGenerator {
+  private static final String[][] DEFAULTS = {{"target", "localhost:50051"}, {"problems", ""},
+      {"clauses", "100"}, {"depth", "3"}, {"requests", "10000"}, {"warm-up", "1000"},
+      {"concurrency", "16"}, {"rate", "0"}, {"report", ""}, {"baseline", ""},
+      {"tolerance", "0.1"}, {"policy", "ROUND_ROBIN"}};
+
+  private final TptpParserGrpc.TptpParserFutureStub futureStub;
+  private final int concurrency;
+  private final double ratePerSecond;
+
+  /**
+   * Constructor.
+   *
+   * @param channel a channel to the server
+   * @param concurrency the maximal number of requests in flight
+   * @param ratePerSecond the number of requests to send per second (zero to send them as fast as
+   *     the concurrency allows)
+   */
+  public LoadGenerator(final Channel channel, final int concurrency, final double ratePerSecond) {
+    futureStub = TptpParserGrpc.newFutureStub(channel);
+    this.concurrency = concurrency;
+    this.ratePerSecond = ratePerSecond;
+  }
+
+  /**
+   * Send requests and wait for their results.
+   *
+   * @param problems problems in TPTP syntax to send in turn
+   * @param requestCount the number of requests
+   * @return latencies and throughput
+   * @throws InterruptedException if interrupted while waiting for results
+   */
+  final LoadReport run(final List<String> problems, final int requestCount)
+      throws InterruptedException {
+    final LoadReport report = new LoadReport(requestCount);
+    final Semaphore inFlight = new Semaphore(concurrency);
+    final long startTime = System.nanoTime();
+    for (int i = 0; i < requestCount; i++) {
+      final long sendTime = waitToSend(startTime, i, inFlight);
+      send(problems.get(i % problems.size()), sendTime, report, inFlight);
+    }
+    inFlight.acquire(concurrency);
+    report.finish(System.nanoTime() - startTime);
+    return report;
+  }
+
+  private final long waitToSend(final long startTime, final int requestNumber,
+      final Semaphore inFlight) throws InterruptedException {
+    if (ratePerSecond <= 0) {
+      inFlight.acquire();
+      return System.nanoTime();
+    }
+    final long scheduledTime = startTime + (long) (requestNumber * 1e9 / ratePerSecond);
+    for (long delay = scheduledTime - System.nanoTime(); delay > 0;
+        delay = scheduledTime - System.nanoTime()) {
+      LockSupport.parkNanos(delay);
+    }
+    inFlight.acquire();
+    return scheduledTime;
+  }
+
+  private final void send(final String problem, final long sendTime, final LoadReport report,
+      final Semaphore inFlight) {
+    Futures.addCallback(
+        futureStub.parseTptp(StringMessage.newBuilder().setStringMessage(problem).build()),
+        new FutureCallback<Node>() {
+          @Override
+          public void onSuccess(final Node result) {
+            report.record(System.nanoTime() - sendTime, true);
+            inFlight.release();
+          }
+
+          @Override
+          public void onFailure(final Throwable t) {
+            report.record(System.nanoTime() - sendTime, false);
+            inFlight.release();
+          }
+        }, MoreExecutors.directExecutor());
+  }
+
+  /**
+   * Parse {@literal --name=value} flags (environment variables are not used).
+   *
+   * @param args command-line arguments
+   * @return values of all options (defaults for the ones not set)
+   * @throws IllegalArgumentException on an unknown option
+   */
+  static final ServerOptions parseOptions(final String[] args) {
+    return ServerOptions.parse(args, Collections.emptyMap(), DEFAULTS, Collections.emptyList());
+  }
+
+  /**
+   * Read problems from a list or generate them.
+   *
+   * @param options load generator options
+   * @return problems in TPTP syntax
+   * @throws IOException if unable to read problems
+   */
+  static final List<String> problems(final ServerOptions options) throws IOException {
+    final List<String> problems = new ArrayList<>();
+    if (options.getString("problems").isEmpty()) {
+      final SyntheticProblems syntheticProblems = new SyntheticProblems(0, options.getInt("depth"));
+      for (int i = 0; i < 100; i++) {
+        problems.add(syntheticProblems.clauses(options.getInt("clauses")));
+      }
+    } else {
+      for (final String problemFile : Files.readAllLines(Path.of(options.getString("problems")))) {
+        problems.add(Files.readString(Path.of(problemFile)));
+      }
+    }
+    return problems;
+  }
+
+  /**
+   * Run load against a server, print the results, and compare them with a previous run.
+   *
+   * <p>Options are {@literal --name=value} flags: {@literal target} (or several comma-separated
+   * ones balanced by {@literal policy}, {@literal ROUND_ROBIN} or {@literal LEAST_REQUEST}),
+   * {@literal problems} (a file with a list of problem files, by default synthetic CNF problems of
+   * {@literal clauses} clauses with terms up to {@literal depth} deep are sent),
+   * {@literal requests}, {@literal warm-up} (the number of requests before measuring),
+   * {@literal concurrency}, {@literal rate} (requests per second, zero for a fixed concurrency),
+   * {@literal report} (a file to save the summary to), {@literal baseline} (a summary of a
+   * previous run), and {@literal tolerance} (the allowed relative regression).
+   *
+   * @param args command-line flags
+   * @throws IOException if unable to read problems or reports
+   * @throws InterruptedException if interrupted while waiting for results
+   */
+  public static final void main(final String[] args) throws IOException, InterruptedException {
+    final ServerOptions options = parseOptions(args);
+    final List<String> problems = problems(options);
+    final ManagedChannel channel = BalancedChannel.forTargets(options.getString("target"),
+        options.getEnum("policy", BalancingPolicy.class));
+    try {
+      final LoadGenerator loadGenerator = new LoadGenerator(channel,
+          options.getInt("concurrency"), Double.parseDouble(options.getString("rate")));
+      loadGenerator.run(problems, options.getInt("warm-up"));
+      report(loadGenerator.run(problems, options.getInt("requests")), options);
+    } finally {
+      channel.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+    }
+  }
+
+  private static final void report(final LoadReport report, final ServerOptions options)
+      throws IOException {
+    System.out.println(report);
+    if (!options.getString("report").isEmpty()) {
+      report.save(Path.of(options.getString("report")));
+    }
+    if (!options.getString("baseline").isEmpty() && report.compare(
+        LoadReport.load(Path.of(options.getString("baseline"))),
+        Double.parseDouble(options.getString("tolerance"))) > 0) {
+      throw new IllegalStateException("Regression against " + options.getString("baseline"));
+    }
+  }
+}
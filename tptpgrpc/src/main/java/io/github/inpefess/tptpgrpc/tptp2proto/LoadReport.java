@@ -0,0 +1,171 @@
+/*
+ *  Copyright 2023 Boris Shminke
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+
+package io.github.inpefess.tptpgrpc.tptp2proto;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Latencies and throughput of a load generator run.
+ *
+ * <p>Every latency is kept, so percentiles are exact. A summary of a run can be saved and compared
+ * with the summary of another run.
+ */
+final class LoadReport {
+  static final String THROUGHPUT = "throughput";
+  static final String P50 = "p50_ms";
+  static final String P99 = "p99_ms";
+  static final String P999 = "p999_ms";
+  static final String ERRORS = "errors";
+
+  private final long[] latencies;
+  private final AtomicInteger recordedCount = new AtomicInteger();
+  private final AtomicInteger errorCount = new AtomicInteger();
+  private long elapsedNanos;
+
+  /**
+   * Constructor.
+   *
+   * @param requestCount the number of requests in the run
+   */
+  LoadReport(final int requestCount) {
+    latencies = new long[requestCount];
+  }
+
+  /**
+   * Record a finished request (can be called from many threads).
+   *
+   * @param latencyNanos the time from sending the request to getting its result
+   * @param succeeded whether the request succeeded
+   */
+  final void record(final long latencyNanos, final boolean succeeded) {
+    latencies[recordedCount.getAndIncrement()] = latencyNanos;
+    if (!succeeded) {
+      errorCount.incrementAndGet();
+    }
+  }
+
+  /**
+   * Finish the run (after all requests are recorded).
+   *
+   * @param runNanos the duration of the run
+   */
+  final void finish(final long runNanos) {
+    elapsedNanos = runNanos;
+    Arrays.sort(latencies, 0, recordedCount.get());
+  }
+
+  /**
+   * A latency percentile.
+   *
+   * @param quantile a quantile, e.g. 0.99
+   * @return the latency (in milliseconds) which that fraction of requests didn't exceed
+   */
+  final double percentileMillis(final double quantile) {
+    final int count = recordedCount.get();
+    if (count == 0) {
+      return 0;
+    }
+    final int rank = (int) Math.ceil(quantile * count);
+    return latencies[Math.max(rank, 1) - 1] / 1e6;
+  }
+
+  /**
+   * Summarise the run.
+   *
+   * @return requests per second, latency percentiles, and the number of failed requests
+   */
+  final Map<String, Double> summary() {
+    final Map<String, Double> summary = new LinkedHashMap<>();
+    summary.put(THROUGHPUT, elapsedNanos == 0 ? 0 : recordedCount.get() * 1e9 / elapsedNanos);
+    summary.put(P50, percentileMillis(0.5));
+    summary.put(P99, percentileMillis(0.99));
+    summary.put(P999, percentileMillis(0.999));
+    summary.put(ERRORS, (double) errorCount.get());
+    return summary;
+  }
+
+  /**
+   * Save the summary of the run.
+   *
+   * @param reportFile a file to write the summary to (as properties)
+   * @throws IOException if unable to write the file
+   */
+  final void save(final Path reportFile) throws IOException {
+    final Properties properties = new Properties();
+    summary().forEach((name, value) -> properties.setProperty(name, String.valueOf(value)));
+    try (Writer writer = Files.newBufferedWriter(reportFile)) {
+      properties.store(writer, "tptp-grpc load generator run");
+    }
+  }
+
+  /**
+   * Load the summary of a previous run.
+   *
+   * @param reportFile a file written by {@link #save(Path)}
+   * @return the summary of the run
+   * @throws IOException if unable to read the file
+   */
+  static final Map<String, Double> load(final Path reportFile) throws IOException {
+    final Properties properties = new Properties();
+    try (Reader reader = Files.newBufferedReader(reportFile)) {
+      properties.load(reader);
+    }
+    final Map<String, Double> summary = new LinkedHashMap<>();
+    properties.forEach((name, value) ->
+        summary.put(name.toString(), Double.parseDouble(value.toString())));
+    return summary;
+  }
+
+  /**
+   * Compare the run with a previous one.
+   *
+   * @param baseline the summary of a previous run
+   * @param tolerance the allowed relative change, e.g. 0.1 for 10%
+   * @return the number of metrics which got worse beyond the tolerance (lower throughput, higher
+   *     latencies, or more errors)
+   */
+  final int compare(final Map<String, Double> baseline, final double tolerance) {
+    int regressionCount = 0;
+    for (final Map.Entry<String, Double> metric : summary().entrySet()) {
+      final Double previous = baseline.get(metric.getKey());
+      if (previous == null) {
+        continue;
+      }
+      final double change = previous == 0 ? 0 : metric.getValue() / previous - 1;
+      final boolean regressed = THROUGHPUT.equals(metric.getKey()) ? change < -tolerance
+          : change > tolerance || previous == 0 && metric.getValue() > 0;
+      System.out.printf("%-10s %12.3f vs %12.3f (%+.1f%%)%s%n", metric.getKey(), metric.getValue(),
+          previous, 100 * change, regressed ? " REGRESSION" : "");
+      regressionCount += regressed ? 1 : 0;
+    }
+    return regressionCount;
+  }
+
+  @Override
+  public final String toString() {
+    return summary().toString();
+  }
+}
@@ -0,0 +1,127 @@
+/*
+ *  Copyright 2023 Boris Shminke
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+
+package io.github.inpefess.tptpgrpc.tptp2proto;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import com.google.common.util.concurrent.MoreExecutors;
+import io.github.inpefess.tptpgrpc.tptpproto.TptpParserGrpc;
+import io.grpc.Context;
+import io.grpc.ForwardingServerCall;
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallExecutorSupplier;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.Status;
+
+/**
+ * Load shedding for a bounded executor.
+ *
+ * <p>Calls are admitted on the transport thread before anything is queued for them. A call above
+ * the limit is closed with {@code RESOURCE_EXHAUSTED} without reaching the executor, and its
+ * trailers carry a retry hint in {@literal grpc-retry-pushback-ms} (which gRPC clients with a
+ * retry policy respect). An admitted call holds its permit until it's closed or cancelled. Only
+ * calls of the parsing service are limited, other calls (e.g. health checks) run on the transport
+ * thread.
+ *
+ * <p>It must be set as the call executor supplier of a server with a direct executor and as an
+ * interceptor of its services.
+ */
+final class LoadShedder implements ServerCallExecutorSupplier, ServerInterceptor {
+  static final Metadata.Key<String> RETRY_PUSHBACK_KEY =
+      Metadata.Key.of("grpc-retry-pushback-ms", Metadata.ASCII_STRING_MARSHALLER);
+  // set by the server only, a value from a client is discarded
+  private static final Metadata.Key<String> SHED_KEY =
+      Metadata.Key.of("tptp-grpc-shed", Metadata.ASCII_STRING_MARSHALLER);
+
+  private final Executor executor;
+  private final Semaphore permits;
+  private final long retryAfterMillis;
+
+  /**
+   * Constructor.
+   *
+   * @param executor an executor of admitted calls
+   * @param maxCalls the maximal number of running and waiting calls
+   * @param retryAfterMillis a hint to clients when to retry a rejected call
+   */
+  LoadShedder(final Executor executor, final int maxCalls, final long retryAfterMillis) {
+    this.executor = executor;
+    permits = new Semaphore(maxCalls);
+    this.retryAfterMillis = retryAfterMillis;
+  }
+
+  @Override
+  public final <ReqT, RespT> Executor getExecutor(final ServerCall<ReqT, RespT> call,
+      final Metadata headers) {
+    headers.discardAll(SHED_KEY);
+    if (!TptpParserGrpc.SERVICE_NAME.equals(call.getMethodDescriptor().getServiceName())) {
+      // health checks and unknown methods are cheap and not intercepted here, so they take no
+      // permit (it would never be released) and are not held up by the parsing calls
+      return MoreExecutors.directExecutor();
+    }
+    if (permits.tryAcquire()) {
+      return executor;
+    }
+    headers.put(SHED_KEY, "1");
+    // the call is only closed, so it doesn't need another thread
+    return MoreExecutors.directExecutor();
+  }
+
+  @Override
+  public final <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(
+      final ServerCall<ReqT, RespT> call, final Metadata headers,
+      final ServerCallHandler<ReqT, RespT> next) {
+    if (headers.containsKey(SHED_KEY)) {
+      final Metadata trailers = new Metadata();
+      trailers.put(RETRY_PUSHBACK_KEY, Long.toString(retryAfterMillis));
+      call.close(Status.RESOURCE_EXHAUSTED
+          .withDescription("too many calls, retry in " + retryAfterMillis + " ms"), trailers);
+      return new ServerCall.Listener<ReqT>() {};
+    }
+    final AdmittedCall<ReqT, RespT> admittedCall = new AdmittedCall<>(call, permits);
+    // covers calls cancelled before they are closed
+    Context.current().addListener(context -> admittedCall.release(),
+        MoreExecutors.directExecutor());
+    return next.startCall(admittedCall, headers);
+  }
+
+  private static final class AdmittedCall<ReqT, RespT>
+      extends ForwardingServerCall.SimpleForwardingServerCall<ReqT, RespT> {
+    private final Semaphore permits;
+    private final AtomicBoolean released = new AtomicBoolean();
+
+    AdmittedCall(final ServerCall<ReqT, RespT> call, final Semaphore permits) {
+      super(call);
+      this.permits = permits;
+    }
+
+    @Override
+    public final void close(final Status status, final Metadata trailers) {
+      release();
+      super.close(status, trailers);
+    }
+
+    final void release() {
+      if (released.compareAndSet(false, true)) {
+        permits.release();
+      }
+    }
+  }
+}
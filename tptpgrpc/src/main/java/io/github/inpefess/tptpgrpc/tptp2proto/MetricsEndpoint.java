@@ -0,0 +1,62 @@
+/*
+ *  Copyright 2023 Boris Shminke
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+
+package io.github.inpefess.tptpgrpc.tptp2proto;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * HTTP endpoint serving {@link ParserMetrics} in the Prometheus text format at
+ * {@literal /metrics}.
+ */
+final class MetricsEndpoint implements HttpHandler {
+  private final ParserMetrics metrics;
+  private final HttpServer httpServer;
+
+  /**
+   * Start serving metrics.
+   *
+   * @param port a port to listen on
+   * @param metrics metrics to serve
+   * @throws IOException if unable to bind
+   */
+  MetricsEndpoint(final int port, final ParserMetrics metrics) throws IOException {
+    this.metrics = metrics;
+    httpServer = HttpServer.create(new InetSocketAddress(port), 0);
+    httpServer.createContext("/metrics", this);
+    httpServer.start();
+  }
+
+  @Override
+  public final void handle(final HttpExchange exchange) throws IOException {
+    final byte[] body = metrics.scrape().getBytes(StandardCharsets.UTF_8);
+    exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+    exchange.sendResponseHeaders(200, body.length);
+    try (OutputStream responseBody = exchange.getResponseBody()) {
+      responseBody.write(body);
+    }
+  }
+
+  final void stop() {
+    httpServer.stop(0);
+  }
+}
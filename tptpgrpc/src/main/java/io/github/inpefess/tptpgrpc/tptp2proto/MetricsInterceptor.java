@@ -0,0 +1,146 @@
+/*
+ *  Copyright 2023 Boris Shminke
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+
+package io.github.inpefess.tptpgrpc.tptp2proto;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.atomic.AtomicBoolean;
+import com.google.protobuf.MessageLite;
+import io.grpc.ForwardingServerCall;
+import io.grpc.ForwardingServerCallListener;
+import io.grpc.KnownLength;
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.Status;
+
+/**
+ * Server interceptor recording calls, their status codes, message sizes, and the time of sending
+ * responses to {@link ParserMetrics}.
+ */
+final class MetricsInterceptor implements ServerInterceptor {
+  private final ParserMetrics metrics;
+
+  /**
+   * Constructor.
+   *
+   * @param metrics metrics to record to
+   */
+  MetricsInterceptor(final ParserMetrics metrics) {
+    this.metrics = metrics;
+  }
+
+  @Override
+  public final <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(
+      final ServerCall<ReqT, RespT> call, final Metadata headers,
+      final ServerCallHandler<ReqT, RespT> next) {
+    final MonitoredCall<ReqT, RespT> monitoredCall = new MonitoredCall<>(call, metrics);
+    metrics.callStarted();
+    return new MonitoredListener<>(next.startCall(monitoredCall, headers), monitoredCall);
+  }
+
+  /**
+   * Size of a message.
+   *
+   * @param message a protobuf message or a pre-serialised one
+   * @return the serialised size of the message (memoised by protobuf) or -1 if unknown
+   */
+  static final int sizeOf(final Object message) {
+    if (message instanceof MessageLite) {
+      return ((MessageLite) message).getSerializedSize();
+    }
+    if (message instanceof ByteArrayInputStream) {
+      return ((ByteArrayInputStream) message).available();
+    }
+    if (message instanceof KnownLength) {
+      try {
+        return ((InputStream) message).available();
+      } catch (final IOException e) {
+        return -1;
+      }
+    }
+    return -1;
+  }
+
+  private static final class MonitoredCall<ReqT, RespT>
+      extends ForwardingServerCall.SimpleForwardingServerCall<ReqT, RespT> {
+    private final ParserMetrics metrics;
+    private final AtomicBoolean finished = new AtomicBoolean();
+
+    MonitoredCall(final ServerCall<ReqT, RespT> call, final ParserMetrics metrics) {
+      super(call);
+      this.metrics = metrics;
+    }
+
+    @Override
+    public final void sendMessage(final RespT message) {
+      // measured before sending since a pre-serialised stream is drained by the transport
+      final int size = sizeOf(message);
+      final long start = System.nanoTime();
+      super.sendMessage(message);
+      metrics.record(ParserMetrics.Phase.SEND, System.nanoTime() - start);
+      if (size >= 0) {
+        metrics.observeResponseSize(size);
+      }
+    }
+
+    @Override
+    public final void close(final Status status, final Metadata trailers) {
+      finish(status.getCode());
+      super.close(status, trailers);
+    }
+
+    /**
+     * Record the end of the call (only the first time).
+     *
+     * @param code the status code of the call
+     */
+    final void finish(final Status.Code code) {
+      if (finished.compareAndSet(false, true)) {
+        metrics.callFinished(getMethodDescriptor().getBareMethodName(), code);
+      }
+    }
+  }
+
+  private static final class MonitoredListener<ReqT>
+      extends ForwardingServerCallListener.SimpleForwardingServerCallListener<ReqT> {
+    private final MonitoredCall<ReqT, ?> call;
+
+    MonitoredListener(final ServerCall.Listener<ReqT> listener,
+        final MonitoredCall<ReqT, ?> call) {
+      super(listener);
+      this.call = call;
+    }
+
+    @Override
+    public final void onMessage(final ReqT message) {
+      final int size = sizeOf(message);
+      if (size >= 0) {
+        call.metrics.observeRequestSize(size);
+      }
+      super.onMessage(message);
+    }
+
+    @Override
+    public final void onCancel() {
+      call.finish(Status.Code.CANCELLED);
+      super.onCancel();
+    }
+  }
+}
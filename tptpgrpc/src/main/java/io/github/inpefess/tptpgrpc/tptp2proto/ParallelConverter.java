@@ -0,0 +1,163 @@
+/*
+ *  Copyright 2023 Boris Shminke
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+
+package io.github.inpefess.tptpgrpc.tptp2proto;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
+import com.google.common.base.Throwables;
+import com.theoremsandstuff.tptp.parser.cnf_or;
+import com.theoremsandstuff.tptp.parser.cnf_root;
+import com.theoremsandstuff.tptp.parser.include;
+import io.github.inpefess.tptpgrpc.tptpproto.Node;
+import io.grpc.StatusRuntimeException;
+import org.eclipse.emf.ecore.EObject;
+
+/**
+ * Converter of the Xtext AST of a problem with included files and chunks of clauses handled
+ * concurrently in a fork-join pool.
+ *
+ * <p>A chunk of clauses is converted into the same shape as a parsed included file, and the parts
+ * are merged in the order of the problem. Symbols of a part are collected in the order they are
+ * met, so the merged set gets them in the same order as with the sequential conversion, and the
+ * output is byte-identical.
+ */
+final class ParallelConverter {
+  /** The maximal number of clauses converted by one task. */
+  static final int CHUNK_SIZE = 256;
+
+  private final ForkJoinPool pool;
+  private final IncludeParser includes;
+  private final ConversionGuard guard;
+  // tasks converting parts of the problem in order
+  private final List<ForkJoinTask<ParsedInclude>> parts = new ArrayList<>();
+  private List<cnf_or> chunk = new ArrayList<>();
+
+  /**
+   * Constructor (an instance converts one problem).
+   *
+   * @param pool a pool to run tasks in
+   * @param includes a parser of included files (called from the pool)
+   * @param guard a guard of the conversion of the problem
+   */
+  ParallelConverter(final ForkJoinPool pool, final IncludeParser includes,
+      final ConversionGuard guard) {
+    this.pool = pool;
+    this.includes = includes;
+    this.guard = guard;
+  }
+
+  /**
+   * Convert the AST passing its clauses (including the ones from included files) in order.
+   *
+   * @param ast the root of the AST
+   * @param functionAndPredicateNames a set collecting functions and predicates of the problem
+   * @param clauses a consumer of quantified clauses
+   * @param includedFiles a set collecting files included by the problem
+   * @throws IOException if unable to read an included file
+   * @throws TptpSyntaxErrorException on syntax error in an included file
+   */
+  final void convert(final EObject ast, final Set<String> functionAndPredicateNames,
+      final Consumer<Node> clauses, final Set<Path> includedFiles)
+      throws IOException, TptpSyntaxErrorException {
+    split(ast.eContents());
+    try {
+      for (final ForkJoinTask<ParsedInclude> part : parts) {
+        final ParsedInclude convertedPart = part.join();
+        functionAndPredicateNames.addAll(convertedPart.functionAndPredicateNames);
+        convertedPart.clauses.forEach(clauses);
+        includedFiles.addAll(convertedPart.includedFiles);
+        guard.checkIncludeCount(includedFiles.size());
+      }
+    } catch (final RuntimeException e) {
+      parts.forEach(part -> part.cancel(false));
+      throw unwrap(e);
+    }
+  }
+
+  private static final RuntimeException unwrap(final RuntimeException e)
+      throws IOException, TptpSyntaxErrorException {
+    // a checked exception of a task comes wrapped (maybe twice when rethrown in another thread)
+    for (final Throwable cause : Throwables.getCausalChain(e)) {
+      Throwables.throwIfInstanceOf(cause, IOException.class);
+      Throwables.throwIfInstanceOf(cause, TptpSyntaxErrorException.class);
+      // a limit or the cancellation of the call
+      Throwables.throwIfInstanceOf(cause, StatusRuntimeException.class);
+    }
+    return e;
+  }
+
+  private final void split(final List<EObject> entries) {
+    for (final EObject entry : entries) {
+      if (entry instanceof cnf_root) {
+        chunk.add(((cnf_root) entry).getExp().getDisjunction());
+      }
+      if (entry instanceof include || chunk.size() == CHUNK_SIZE) {
+        convertChunk();
+      }
+      if (entry instanceof include) {
+        final String path = ((include) entry).getPath();
+        parts.add(fork(() -> includes.parse(path)));
+      }
+    }
+    convertChunk();
+  }
+
+  private final void convertChunk() {
+    if (chunk.isEmpty()) {
+      return;
+    }
+    final List<cnf_or> chunkClauses = chunk;
+    chunk = new ArrayList<>();
+    parts.add(fork(() -> {
+      final Set<String> functionAndPredicateNames = new LinkedHashSet<>();
+      final ClauseConverter clauseConverter =
+          new ClauseConverter(functionAndPredicateNames, guard);
+      final List<Node> convertedClauses = new ArrayList<>(chunkClauses.size());
+      for (final cnf_or clause : chunkClauses) {
+        guard.checkCancelled();
+        convertedClauses.add(clauseConverter.convertClause(clause));
+      }
+      return new ParsedInclude(convertedClauses, functionAndPredicateNames,
+          Collections.emptySet());
+    }));
+  }
+
+  private final ForkJoinTask<ParsedInclude> fork(final Callable<ParsedInclude> part) {
+    final ForkJoinTask<ParsedInclude> task = ForkJoinTask.adapt(part);
+    if (ForkJoinTask.getPool() == pool) {
+      return task.fork();
+    }
+    return pool.submit(task);
+  }
+
+  /**
+   * Parser of an included file by its path relative to the TPTP root folder.
+   */
+  @FunctionalInterface
+  interface IncludeParser {
+    ParsedInclude parse(String path) throws IOException, TptpSyntaxErrorException;
+  }
+}
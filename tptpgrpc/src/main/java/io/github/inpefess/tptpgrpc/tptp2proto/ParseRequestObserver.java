@@ -0,0 +1,178 @@
+/*
+ *  Copyright 2023 Boris Shminke
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+
+package io.github.inpefess.tptpgrpc.tptp2proto;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import io.github.inpefess.tptpgrpc.tptpproto.Node;
+import io.github.inpefess.tptpgrpc.tptpproto.OutputFormat;
+import io.github.inpefess.tptpgrpc.tptpproto.ParseRequest;
+import io.github.inpefess.tptpgrpc.tptpproto.ParseResponse;
+import io.grpc.Context;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+
+/**
+ * Handler of a bidirectional parsing stream.
+ *
+ * <p>Requests are parsed concurrently, and each response is sent as soon as it is ready. The
+ * number of requests in flight is limited by manual flow control: a new request is asked from the
+ * client only when a previous one is answered.
+ *
+ * <p>A problem over the limits of the parser pool gets an error response. When the call is
+ * cancelled or its deadline passes, the parsing stops at the next clause or include boundary.
+ */
+final class ParseRequestObserver implements StreamObserver<ParseRequest> {
+  private final Tptp2ProtoPool parserPool;
+  private final GraphVocabulary vocabulary;
+  private final Executor executor;
+  // the context of the call for the parsing threads
+  private final Context context = Context.current();
+  private final ServerCallStreamObserver<ParseResponse> responseObserver;
+  // requests in flight plus one for the open request stream
+  private final AtomicInteger pendingCount = new AtomicInteger(1);
+  private volatile boolean cancelled;
+
+  /**
+   * Constructor.
+   *
+   * @param parserPool parsers to use
+   * @param vocabulary the vocabulary of graph tensors
+   * @param executor an executor running the parsing
+   * @param responseObserver an observer of the response stream
+   * @param maxInFlight the maximal number of requests parsed at once
+   */
+  ParseRequestObserver(final Tptp2ProtoPool parserPool, final GraphVocabulary vocabulary,
+      final Executor executor, final StreamObserver<ParseResponse> responseObserver,
+      final int maxInFlight) {
+    this.parserPool = parserPool;
+    this.vocabulary = vocabulary;
+    this.executor = executor;
+    this.responseObserver = (ServerCallStreamObserver<ParseResponse>) responseObserver;
+    this.responseObserver.setOnCancelHandler(() -> cancelled = true);
+    this.responseObserver.disableAutoRequest();
+    this.responseObserver.request(maxInFlight);
+  }
+
+  @Override
+  public final void onNext(final ParseRequest request) {
+    pendingCount.incrementAndGet();
+    executor.execute(context.wrap(() -> respond(request)));
+  }
+
+  @Override
+  public final void onError(final Throwable t) {
+    cancelled = true;
+  }
+
+  @Override
+  public final void onCompleted() {
+    finishOne();
+  }
+
+  private final void respond(final ParseRequest request) {
+    try {
+      if (!cancelled) {
+        send(parse(parserPool, vocabulary, request));
+      }
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+      fail(Status.CANCELLED.withCause(e).asException());
+    } catch (final StatusRuntimeException e) {
+      fail(e);
+    } catch (final RuntimeException e) {
+      // the stream would hang waiting for this response otherwise
+      fail(Status.INTERNAL.withCause(e).withDescription(e.toString()).asException());
+    } finally {
+      finishOne();
+    }
+  }
+
+  private final void fail(final Throwable t) {
+    synchronized (responseObserver) {
+      if (!cancelled) {
+        cancelled = true;
+        responseObserver.onError(t);
+      }
+    }
+  }
+
+  private final void send(final ParseResponse response) {
+    synchronized (responseObserver) {
+      if (!cancelled) {
+        responseObserver.onNext(response);
+        responseObserver.request(1);
+      }
+    }
+  }
+
+  private final void finishOne() {
+    if (pendingCount.decrementAndGet() == 0) {
+      synchronized (responseObserver) {
+        if (!cancelled) {
+          responseObserver.onCompleted();
+        }
+      }
+    }
+  }
+
+  /**
+   * Parse a TPTP problem reporting errors in the response.
+   *
+   * @param parserPool parsers to use
+   * @param vocabulary the vocabulary of graph tensors
+   * @param request a TPTP problem with its correlation id and the output format
+   * @return a parsed TPTP problem or an error message with the correlation id of the request
+   * @throws InterruptedException if interrupted while waiting for an idle parser
+   * @throws StatusRuntimeException if the call is cancelled or its deadline passes
+   */
+  static final ParseResponse parse(final Tptp2ProtoPool parserPool,
+      final GraphVocabulary vocabulary, final ParseRequest request) throws InterruptedException {
+    final ParseResponse.Builder response = ParseResponse.newBuilder().setId(request.getId());
+    try {
+      parserPool.getLimits().checkInputBytes(request.getStringMessageBytes().size());
+      encode(parserPool.tptp2Proto(new StringReader(request.getStringMessage())),
+          request.getFormat(), vocabulary, response);
+    } catch (final IOException | TptpSyntaxErrorException e) {
+      response.setError(String.valueOf(e.getMessage()));
+    } catch (final StatusRuntimeException e) {
+      if (e.getStatus().getCode() != Status.Code.RESOURCE_EXHAUSTED) {
+        throw e;
+      }
+      // like a syntax error, a problem over a limit doesn't fail other problems
+      response.setError(e.getMessage());
+    }
+    return response.build();
+  }
+
+  private static final void encode(final Node node, final OutputFormat format,
+      final GraphVocabulary vocabulary, final ParseResponse.Builder response) {
+    if (format == OutputFormat.COMPACT) {
+      response.setCompactNode(CompactNodeCodec.encode(node));
+    } else if (format == OutputFormat.DAG) {
+      response.setDagNode(DagNodeCodec.encode(node));
+    } else if (format == OutputFormat.GRAPH) {
+      response.setGraphTensors(GraphTensorCodec.encode(node, vocabulary));
+    } else {
+      response.setNode(node);
+    }
+  }
+}
@@ -0,0 +1,45 @@
+/*
+ *  Copyright 2023 Boris Shminke
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+
+package io.github.inpefess.tptpgrpc.tptp2proto;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import io.github.inpefess.tptpgrpc.tptpproto.Node;
+
+/**
+ * Clauses and symbols of a parsed TPTP include file.
+ */
+final class ParsedInclude {
+  final List<Node> clauses;
+  final Set<String> functionAndPredicateNames;
+  final Set<Path> includedFiles;
+
+  /**
+   * Constructor.
+   *
+   * @param clauses quantified clauses from the included file
+   * @param functionAndPredicateNames functions and predicates from the included file
+   * @param includedFiles the included file and the ones it includes (directly or not)
+   */
+  ParsedInclude(final List<Node> clauses, final Set<String> functionAndPredicateNames,
+      final Set<Path> includedFiles) {
+    this.clauses = clauses;
+    this.functionAndPredicateNames = functionAndPredicateNames;
+    this.includedFiles = includedFiles;
+  }
+}
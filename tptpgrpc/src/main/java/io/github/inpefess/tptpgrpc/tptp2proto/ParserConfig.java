@@ -0,0 +1,117 @@
+/*
+ *  Copyright 2023 Boris Shminke
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+
+package io.github.inpefess.tptpgrpc.tptp2proto;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Settings of {@link Tptp2Proto} parsers (and of pools of them).
+ *
+ * <p>A configuration is immutable: each {@code with} method returns a copy with one setting
+ * changed. Parsers created from one configuration share its include cache, metrics, and conversion
+ * pool.
+ */
+public final class ParserConfig {
+  final String tptpPath;
+  final IncludeCache includeCache;
+  final ParserEngine parserEngine;
+  final ParserMetrics metrics;
+  final ForkJoinPool conversionPool;
+  final ConversionLimits limits;
+
+  /**
+   * Create the default configuration: the Xtext engine, a new include cache of the default size,
+   * new metrics, no conversion pool, and no limits.
+   *
+   * @param tptpPath the absolute path to the TPTP root folder
+   */
+  public ParserConfig(final String tptpPath) {
+    this(tptpPath, new IncludeCache(IncludeCache.DEFAULT_MAXIMUM_SIZE), ParserEngine.XTEXT,
+        new ParserMetrics(), null, ConversionLimits.NONE);
+  }
+
+  private ParserConfig(final String tptpPath, final IncludeCache includeCache,
+      final ParserEngine parserEngine, final ParserMetrics metrics,
+      final ForkJoinPool conversionPool, final ConversionLimits limits) {
+    this.tptpPath = tptpPath;
+    this.includeCache = includeCache;
+    this.parserEngine = parserEngine;
+    this.metrics = metrics;
+    this.conversionPool = conversionPool;
+    this.limits = limits;
+  }
+
+  /**
+   * Set a cache of parsed included files.
+   *
+   * @param newIncludeCache a cache (can be shared between configurations)
+   * @return a changed copy of this configuration
+   */
+  public final ParserConfig withIncludeCache(final IncludeCache newIncludeCache) {
+    return new ParserConfig(tptpPath, newIncludeCache, parserEngine, metrics, conversionPool,
+        limits);
+  }
+
+  /**
+   * Set a parser engine.
+   *
+   * @param newParserEngine a parser engine (Xtext is set up only when it's chosen)
+   * @return a changed copy of this configuration
+   */
+  public final ParserConfig withParserEngine(final ParserEngine newParserEngine) {
+    return new ParserConfig(tptpPath, includeCache, newParserEngine, metrics, conversionPool,
+        limits);
+  }
+
+  /**
+   * Set metrics to record the time of parsing phases to.
+   *
+   * @param newMetrics metrics (can be shared between configurations)
+   * @return a changed copy of this configuration
+   */
+  public final ParserConfig withMetrics(final ParserMetrics newMetrics) {
+    return new ParserConfig(tptpPath, includeCache, parserEngine, newMetrics, conversionPool,
+        limits);
+  }
+
+  /**
+   * Set a pool for converting parts of a problem concurrently.
+   *
+   * <p>With a conversion pool, the Xtext engine parses included files and converts chunks of
+   * clauses of a problem concurrently (the output is the same). The hand-written parser converts
+   * clauses while parsing, so it doesn't use the pool.
+   *
+   * @param newConversionPool a pool (can be shared between configurations) or {@code null} to
+   *     convert parts one by one
+   * @return a changed copy of this configuration
+   */
+  public final ParserConfig withConversionPool(final ForkJoinPool newConversionPool) {
+    return new ParserConfig(tptpPath, includeCache, parserEngine, metrics, newConversionPool,
+        limits);
+  }
+
+  /**
+   * Set limits of each problem parsed by a {@link Tptp2ProtoPool}.
+   *
+   * @param newLimits limits of each problem
+   * @return a changed copy of this configuration
+   */
+  public final ParserConfig withLimits(final ConversionLimits newLimits) {
+    return new ParserConfig(tptpPath, includeCache, parserEngine, metrics, conversionPool,
+        newLimits);
+  }
+}
@@ -0,0 +1,27 @@
+/*
+ *  Copyright 2023 Boris Shminke
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+
+package io.github.inpefess.tptpgrpc.tptp2proto;
+
+/**
+ * Parser engines of {@link Tptp2Proto}.
+ */
+public enum ParserEngine {
+  /** Xtext parser of the full TPTP syntax (only CNF clauses are converted). */
+  XTEXT,
+  /** Hand-written parser of the CNF subset, which doesn't build an AST. */
+  HANDWRITTEN
+}
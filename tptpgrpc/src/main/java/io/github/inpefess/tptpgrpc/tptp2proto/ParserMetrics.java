@@ -0,0 +1,148 @@
+/*
+ *  Copyright 2023 Boris Shminke
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+
+package io.github.inpefess.tptpgrpc.tptp2proto;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import io.grpc.Status;
+
+/**
+ * Metrics of parsing TPTP problems and serving them over gRPC.
+ *
+ * <p>All metrics are lock-free and can be updated from any thread. {@link #scrape()} returns them
+ * in the Prometheus text format.
+ */
+public final class ParserMetrics {
+  private static final long[] LATENCY_BOUNDS_NANOS = {10_000, 25_000, 50_000, 100_000, 250_000,
+      500_000, 1_000_000, 2_500_000, 5_000_000, 10_000_000, 25_000_000, 50_000_000, 100_000_000,
+      250_000_000, 500_000_000, 1_000_000_000, 2_500_000_000L, 5_000_000_000L, 10_000_000_000L};
+  private static final long[] SIZE_BOUNDS_BYTES = {64, 256, 1 << 10, 4 << 10, 16 << 10, 64 << 10,
+      256 << 10, 1 << 20, 4 << 20, 16 << 20, 64 << 20};
+  private static final double NANOS_PER_SECOND = 1e9;
+
+  private final Map<Phase, Histogram> phaseLatencies = new EnumMap<>(Phase.class);
+  private final Histogram requestSizes = new Histogram(SIZE_BOUNDS_BYTES);
+  private final Histogram responseSizes = new Histogram(SIZE_BOUNDS_BYTES);
+  private final AtomicInteger inFlightCalls = new AtomicInteger();
+  // keyed by labels of finished calls
+  private final Map<String, LongAdder> finishedCalls = new ConcurrentHashMap<>();
+  private final LongAdder includeCount = new LongAdder();
+  private final LongAdder syntaxErrorCount = new LongAdder();
+  // writers of single samples, e.g. of a response cache
+  private final List<Consumer<StringBuilder>> collectors = new CopyOnWriteArrayList<>();
+
+  /**
+   * Constructor.
+   */
+  public ParserMetrics() {
+    for (final Phase phase : Phase.values()) {
+      phaseLatencies.put(phase, new Histogram(LATENCY_BOUNDS_NANOS));
+    }
+    addCollector(output -> {
+      writeSample(output, "tptp_calls_in_flight", "gauge", inFlightCalls.get());
+      writeSample(output, "tptp_includes_total", "counter", includeCount.sum());
+      writeSample(output, "tptp_syntax_errors_total", "counter", syntaxErrorCount.sum());
+    });
+  }
+
+  final void record(final Phase phase, final long nanos) {
+    if (phase == Phase.INCLUDE) {
+      includeCount.increment();
+    }
+    phaseLatencies.get(phase).observe(nanos);
+  }
+
+  /**
+   * Add metrics of another component to the output of {@link #scrape()}.
+   *
+   * @param collector a writer of samples in the Prometheus text format
+   */
+  final void addCollector(final Consumer<StringBuilder> collector) {
+    collectors.add(collector);
+  }
+
+  final void observeRequestSize(final int bytes) {
+    requestSizes.observe(bytes);
+  }
+
+  final void observeResponseSize(final int bytes) {
+    responseSizes.observe(bytes);
+  }
+
+  final void callStarted() {
+    inFlightCalls.incrementAndGet();
+  }
+
+  final void callFinished(final String method, final Status.Code code) {
+    inFlightCalls.decrementAndGet();
+    finishedCalls.computeIfAbsent("method=\"" + method + "\",code=\"" + code + "\"",
+        labels -> new LongAdder()).increment();
+  }
+
+  final void countSyntaxError() {
+    syntaxErrorCount.increment();
+  }
+
+  final int callsInFlight() {
+    return inFlightCalls.get();
+  }
+
+  /**
+   * Write all metrics in the Prometheus text format.
+   *
+   * @return current values of metrics
+   */
+  public final String scrape() {
+    final StringBuilder output = new StringBuilder("# TYPE tptp_phase_seconds histogram\n");
+    phaseLatencies.forEach((phase, histogram) -> histogram.write(output, "tptp_phase_seconds",
+        "phase=\"" + phase.name().toLowerCase(Locale.ROOT) + "\"", NANOS_PER_SECOND));
+    requestSizes.write(output, "tptp_request_bytes");
+    responseSizes.write(output, "tptp_response_bytes");
+    output.append("# TYPE tptp_calls_total counter\n");
+    finishedCalls.forEach((labels, count) -> output.append("tptp_calls_total{").append(labels)
+        .append("} ").append(count.sum()).append('\n'));
+    collectors.forEach(collector -> collector.accept(output));
+    return output.toString();
+  }
+
+  static final void writeSample(final StringBuilder output, final String name,
+      final String type, final long value) {
+    output.append("# TYPE ").append(name).append(' ').append(type).append('\n').append(name)
+        .append(' ').append(value).append('\n');
+  }
+
+  /**
+   * Phases of serving a problem.
+   */
+  public enum Phase {
+    /** Parsing a text (by the hand-written parser, together with conversion). */
+    PARSE,
+    /** Getting clauses of an included file from the cache or parsing the file. */
+    INCLUDE,
+    /** Converting the Xtext AST to protobuf. */
+    CONVERT,
+    /** Passing a response to the transport (serialisation, framing, compression). */
+    SEND
+  }
+}
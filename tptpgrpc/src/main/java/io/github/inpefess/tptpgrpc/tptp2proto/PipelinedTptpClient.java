@@ -0,0 +1,130 @@
+/*
+ *  Copyright 2023 Boris Shminke
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+
+package io.github.inpefess.tptpgrpc.tptp2proto;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.github.inpefess.tptpgrpc.tptpproto.Node;
+import io.github.inpefess.tptpgrpc.tptpproto.StringMessage;
+import io.github.inpefess.tptpgrpc.tptpproto.TptpParserGrpc;
+import io.grpc.Channel;
+import io.grpc.Status;
+
+/**
+ * A client sending many parsing requests over one long-lived channel without waiting for each
+ * response.
+ *
+ * <p>At most a given number of requests are in flight: sending one more waits until a response
+ * comes. Each attempt has its own deadline, and attempts failed with {@code UNAVAILABLE} (e.g.
+ * while the server restarts) are repeated with exponential backoff.
+ */
+public final class PipelinedTptpClient implements AutoCloseable {
+  private static final long FIRST_RETRY_DELAY_MILLIS = 100;
+
+  private final TptpParserGrpc.TptpParserFutureStub futureStub;
+  private final Semaphore inFlight;
+  private final long deadlineMillis;
+  private final int maxAttempts;
+  private final ScheduledExecutorService retryScheduler =
+      Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+          .setNameFormat("tptp-client-retry").setDaemon(true).build());
+
+  /**
+   * Constructor.
+   *
+   * @param channel a channel to the server (it's not shut down by the client)
+   * @param maxInFlight the maximal number of requests waiting for responses
+   * @param deadlineMillis the deadline of each attempt in milliseconds
+   * @param maxAttempts the maximal number of attempts of each request
+   */
+  public PipelinedTptpClient(final Channel channel, final int maxInFlight,
+      final long deadlineMillis, final int maxAttempts) {
+    futureStub = TptpParserGrpc.newFutureStub(channel);
+    inFlight = new Semaphore(maxInFlight);
+    this.deadlineMillis = deadlineMillis;
+    this.maxAttempts = maxAttempts;
+  }
+
+  /**
+   * Send a string to parse to server without waiting for the response.
+   *
+   * @param tptpString logic formula(s) in TPTP syntax
+   * @return the future root node of a parsed TPTP file
+   * @throws InterruptedException if interrupted while waiting for a request in flight to finish
+   */
+  public final ListenableFuture<Node> parseTptp(final String tptpString)
+      throws InterruptedException {
+    inFlight.acquire();
+    final SettableFuture<Node> result = SettableFuture.create();
+    result.addListener(inFlight::release, MoreExecutors.directExecutor());
+    attempt(StringMessage.newBuilder().setStringMessage(tptpString).build(), 1, result);
+    return result;
+  }
+
+  /**
+   * Parse many strings pipelining requests.
+   *
+   * @param tptpStrings logic formulae in TPTP syntax
+   * @return the root nodes of parsed TPTP files in the order of the strings
+   * @throws InterruptedException if interrupted while waiting for responses
+   * @throws ExecutionException with the status of the first failed request
+   */
+  public final List<Node> parseAll(final Iterable<String> tptpStrings)
+      throws InterruptedException, ExecutionException {
+    final List<ListenableFuture<Node>> results = new ArrayList<>();
+    try {
+      for (final String tptpString : tptpStrings) {
+        results.add(parseTptp(tptpString));
+      }
+      return Futures.allAsList(results).get();
+    } finally {
+      // don't leave the rest in flight after a failure
+      results.forEach(result -> result.cancel(false));
+    }
+  }
+
+  private final void attempt(final StringMessage request, final int attemptNumber,
+      final SettableFuture<Node> result) {
+    final ListenableFuture<Node> response =
+        futureStub.withDeadlineAfter(deadlineMillis, TimeUnit.MILLISECONDS).parseTptp(request);
+    result.setFuture(Futures.catchingAsync(response, Throwable.class, t -> {
+      if (attemptNumber < maxAttempts
+          && Status.fromThrowable(t).getCode() == Status.Code.UNAVAILABLE) {
+        final SettableFuture<Node> retried = SettableFuture.create();
+        retryScheduler.schedule(() -> attempt(request, attemptNumber + 1, retried),
+            FIRST_RETRY_DELAY_MILLIS << (attemptNumber - 1), TimeUnit.MILLISECONDS);
+        return retried;
+      }
+      return Futures.immediateFailedFuture(t);
+    }, MoreExecutors.directExecutor()));
+  }
+
+  @Override
+  public final void close() {
+    retryScheduler.shutdownNow();
+  }
+}
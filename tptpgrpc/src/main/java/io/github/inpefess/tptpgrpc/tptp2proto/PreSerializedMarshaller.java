@@ -0,0 +1,140 @@
+/*
+ *  Copyright 2023 Boris Shminke
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+
+package io.github.inpefess.tptpgrpc.tptp2proto;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import io.grpc.Drainable;
+import io.grpc.KnownLength;
+import io.grpc.MethodDescriptor;
+
+/**
+ * A marshaller passing already serialised messages to gRPC as they are.
+ *
+ * <p>A server method using it responds with an {@link InputStream} which is either a stream of a
+ * message from a regular protobuf marshaller or a stream over bytes serialised beforehand (e.g.
+ * cached or mapped from a corpus), so the latter are sent without building message objects.
+ */
+final class PreSerializedMarshaller implements MethodDescriptor.Marshaller<InputStream> {
+  @Override
+  public final InputStream stream(final InputStream value) {
+    return value;
+  }
+
+  @Override
+  public final InputStream parse(final InputStream stream) {
+    return stream;
+  }
+
+  /**
+   * Wrap serialised bytes.
+   *
+   * @param serializedMessage a serialised protobuf message
+   * @return a stream of known length which gRPC writes to its buffers directly
+   */
+  static final InputStream streamOf(final byte[] serializedMessage) {
+    return new SerializedMessageStream(serializedMessage);
+  }
+
+  /**
+   * Concatenate buffers holding parts of a serialised message (e.g. mapped from a file).
+   *
+   * @param serializedParts buffers with parts of a serialised message (their positions move when
+   *     the stream is read)
+   * @return a stream of known length copying the buffers to gRPC buffers without a temporary array
+   *     of the whole message
+   */
+  static final InputStream streamOf(final ByteBuffer... serializedParts) {
+    return new SerializedBuffersStream(serializedParts);
+  }
+
+  private static final class SerializedMessageStream extends ByteArrayInputStream
+      implements KnownLength, Drainable {
+    SerializedMessageStream(final byte[] serializedMessage) {
+      super(serializedMessage);
+    }
+
+    @Override
+    public final int drainTo(final OutputStream target) throws IOException {
+      final int drainedCount = available();
+      target.write(buf, pos, drainedCount);
+      pos = count;
+      return drainedCount;
+    }
+  }
+
+  private static final class SerializedBuffersStream extends InputStream
+      implements KnownLength, Drainable {
+    private final ByteBuffer[] buffers;
+    private int current;
+
+    SerializedBuffersStream(final ByteBuffer[] buffers) {
+      this.buffers = buffers;
+    }
+
+    @Override
+    public final int available() {
+      int availableCount = 0;
+      for (int i = current; i < buffers.length; i++) {
+        availableCount += buffers[i].remaining();
+      }
+      return availableCount;
+    }
+
+    @Override
+    public final int read() {
+      final ByteBuffer buffer = nextBuffer();
+      return buffer == null ? -1 : buffer.get() & 0xFF;
+    }
+
+    @Override
+    public final int read(final byte[] target, final int offset, final int length) {
+      final ByteBuffer buffer = nextBuffer();
+      if (length == 0) {
+        return 0;
+      }
+      if (buffer == null) {
+        return -1;
+      }
+      final int readCount = Math.min(length, buffer.remaining());
+      buffer.get(target, offset, readCount);
+      return readCount;
+    }
+
+    @Override
+    public final int drainTo(final OutputStream target) throws IOException {
+      final int drainedCount = available();
+      final WritableByteChannel targetChannel = Channels.newChannel(target);
+      for (; current < buffers.length; current++) {
+        targetChannel.write(buffers[current]);
+      }
+      return drainedCount;
+    }
+
+    private final ByteBuffer nextBuffer() {
+      while (current < buffers.length && !buffers[current].hasRemaining()) {
+        current++;
+      }
+      return current < buffers.length ? buffers[current] : null;
+    }
+  }
+}
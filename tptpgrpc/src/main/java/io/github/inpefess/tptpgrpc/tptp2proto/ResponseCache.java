@@ -0,0 +1,86 @@
+/*
+ *  Copyright 2023 Boris Shminke
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+
+package io.github.inpefess.tptpgrpc.tptp2proto;
+
+import java.nio.charset.StandardCharsets;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+
+/**
+ * A bounded LRU cache of serialised parsing results keyed by a SHA-256 hash of a TPTP text.
+ *
+ * <p>The cache is bounded by the total size of cached responses in bytes.
+ */
+final class ResponseCache {
+  // an estimate of the memory taken by a key and a cache entry apart from the cached bytes
+  private static final int ENTRY_OVERHEAD = 128;
+
+  private final Cache<HashCode, byte[]> cache;
+
+  /**
+   * Constructor.
+   *
+   * @param maximumBytes the maximal total size of cached responses
+   */
+  ResponseCache(final long maximumBytes) {
+    cache = CacheBuilder.newBuilder().maximumWeight(maximumBytes)
+        .weigher((final HashCode key, final byte[] value) -> ENTRY_OVERHEAD + value.length)
+        .recordStats().build();
+  }
+
+  /**
+   * Compute a cache key.
+   *
+   * @param tptpText a TPTP text to parse
+   * @return the hash of the text
+   */
+  static final HashCode key(final String tptpText) {
+    return Hashing.sha256().hashString(tptpText, StandardCharsets.UTF_8);
+  }
+
+  byte[] get(final HashCode key) {
+    return cache.getIfPresent(key);
+  }
+
+  void put(final HashCode key, final byte[] serializedResponse) {
+    cache.put(key, serializedResponse);
+  }
+
+  /**
+   * Write cache metrics in the Prometheus text format.
+   *
+   * @param output a buffer of {@link ParserMetrics#scrape()}
+   */
+  final void writeMetrics(final StringBuilder output) {
+    final CacheStats stats = cache.stats();
+    ParserMetrics.writeSample(output, "tptp_response_cache_hits_total", "counter",
+        stats.hitCount());
+    ParserMetrics.writeSample(output, "tptp_response_cache_misses_total", "counter",
+        stats.missCount());
+    ParserMetrics.writeSample(output, "tptp_response_cache_evictions_total", "counter",
+        stats.evictionCount());
+    ParserMetrics.writeSample(output, "tptp_response_cache_entries", "gauge", cache.size());
+  }
+
+  @Override
+  public final String toString() {
+    return "ResponseCache{entries=" + cache.size() + ", " + cache.stats() + "}";
+  }
+}
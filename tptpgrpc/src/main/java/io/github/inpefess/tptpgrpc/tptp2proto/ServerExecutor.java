@@ -0,0 +1,73 @@
+/*
+ *  Copyright 2023 Boris Shminke
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+
+package io.github.inpefess.tptpgrpc.tptp2proto;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Executors running gRPC calls of {@link TptpParserServer}.
+ */
+enum ServerExecutor {
+  /** A new thread for each call when all threads are busy (the default of gRPC). */
+  CACHED,
+  /** A fixed number of threads, calls wait for one of them without a limit. */
+  FIXED,
+  /**
+   * A virtual thread for each task (requires JDK 21 or later). Calls waiting for a parser don't
+   * hold platform threads.
+   */
+  VIRTUAL,
+  /**
+   * A fixed number of threads and a limited number of waiting calls. Calls above the limit fail
+   * with {@code RESOURCE_EXHAUSTED} at once.
+   */
+  BOUNDED;
+
+  /**
+   * Create an executor.
+   *
+   * @param threads the number of threads (for fixed-size executors)
+   * @return a new executor
+   * @throws IllegalStateException if virtual threads are not supported
+   */
+  final ExecutorService create(final int threads) {
+    final ThreadFactory threadFactory =
+        new ThreadFactoryBuilder().setDaemon(true).setNameFormat("tptp-grpc-call-%d").build();
+    switch (this) {
+      case FIXED:
+      case BOUNDED:
+        return Executors.newFixedThreadPool(threads, threadFactory);
+      case VIRTUAL:
+        return newVirtualThreadPerTaskExecutor();
+      default:
+        return Executors.newCachedThreadPool(threadFactory);
+    }
+  }
+
+  private static final ExecutorService newVirtualThreadPerTaskExecutor() {
+    try {
+      // the project is compiled for Java 11
+      return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor")
+          .invoke(null);
+    } catch (final ReflectiveOperationException e) {
+      throw new IllegalStateException("virtual threads require JDK 21 or later", e);
+    }
+  }
+}
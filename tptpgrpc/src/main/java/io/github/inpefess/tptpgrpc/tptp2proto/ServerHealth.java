@@ -0,0 +1,112 @@
+/*
+ *  Copyright 2023 Boris Shminke
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+
+package io.github.inpefess.tptpgrpc.tptp2proto;
+
+import java.util.concurrent.TimeUnit;
+import io.github.inpefess.tptpgrpc.tptpproto.TptpParserGrpc;
+import io.grpc.ForwardingServerCall;
+import io.grpc.Metadata;
+import io.grpc.Server;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.ServerInterceptors;
+import io.grpc.ServerServiceDefinition;
+import io.grpc.health.v1.HealthCheckResponse.ServingStatus;
+import io.grpc.protobuf.services.HealthStatusManager;
+
+/**
+ * The standard gRPC health service of {@link TptpParserServer}.
+ *
+ * <p>Both the server ({@code ""}) and the parsing service are {@code NOT_SERVING} until the parsers
+ * are warmed up, and again when the server is shutting down, so that load balancers send calls
+ * only to ready replicas. The headers of health responses carry the number of parsing calls in
+ * flight when a call starts: {@code Check} calls get the current load every time (as
+ * {@link BalancedChannel} asks for it), while a {@code Watch} stream gets it only once.
+ */
+final class ServerHealth implements ServerInterceptor {
+  /** The header with the number of parsing calls in flight. */
+  static final Metadata.Key<String> CALLS_IN_FLIGHT_KEY =
+      Metadata.Key.of("tptp-calls-in-flight", Metadata.ASCII_STRING_MARSHALLER);
+
+  /** How long balancers and probes have to see {@code NOT_SERVING} before the server stops. */
+  private static final long DRAIN_SECONDS = 5;
+  private static final long TERMINATION_SECONDS = 30;
+  private final HealthStatusManager statusManager = new HealthStatusManager();
+  private final ParserMetrics metrics;
+
+  /**
+   * Constructor.
+   *
+   * @param metrics metrics counting calls in flight
+   */
+  ServerHealth(final ParserMetrics metrics) {
+    this.metrics = metrics;
+    setServing(false);
+  }
+
+  /**
+   * Report the server ready or not.
+   *
+   * @param serving whether the server accepts calls
+   */
+  final void setServing(final boolean serving) {
+    final ServingStatus status = serving ? ServingStatus.SERVING : ServingStatus.NOT_SERVING;
+    statusManager.setStatus(HealthStatusManager.SERVICE_NAME_ALL_SERVICES, status);
+    statusManager.setStatus(TptpParserGrpc.SERVICE_NAME, status);
+  }
+
+  /**
+   * Report {@code NOT_SERVING} for good (status updates after that are ignored).
+   */
+  final void shutdown() {
+    statusManager.enterTerminalState();
+  }
+
+  /**
+   * Report {@code NOT_SERVING}, wait for balancers to stop sending new calls, and shut the server
+   * down, letting the started calls finish. Calls still running after that (e.g. {@code Watch}
+   * streams of health checks) are cancelled.
+   *
+   * @param server the server reporting its health here
+   * @throws InterruptedException if interrupted while waiting
+   */
+  final void drain(final Server server) throws InterruptedException {
+    shutdown();
+    TimeUnit.SECONDS.sleep(DRAIN_SECONDS);
+    if (!server.shutdown().awaitTermination(TERMINATION_SECONDS, TimeUnit.SECONDS)) {
+      server.shutdownNow();
+    }
+  }
+
+  final ServerServiceDefinition bindService() {
+    return ServerInterceptors.intercept(statusManager.getHealthService(), this);
+  }
+
+  @Override
+  public final <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(
+      final ServerCall<ReqT, RespT> call, final Metadata headers,
+      final ServerCallHandler<ReqT, RespT> next) {
+    return next.startCall(new ForwardingServerCall.SimpleForwardingServerCall<ReqT, RespT>(call) {
+      @Override
+      public void sendHeaders(final Metadata responseHeaders) {
+        responseHeaders.put(CALLS_IN_FLIGHT_KEY, String.valueOf(metrics.callsInFlight()));
+        super.sendHeaders(responseHeaders);
+      }
+    }, headers);
+  }
+}
@@ -0,0 +1,167 @@
+/*
+ *  Copyright 2023 Boris Shminke
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+
+package io.github.inpefess.tptpgrpc.tptp2proto;
+
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Options of {@link TptpParserServer} from command-line flags and environment variables.
+ *
+ * <p>Other command-line tools (as {@link LoadGenerator}) parse their own options the same way.
+ *
+ * <p>An option like {@literal max-inbound-message-size} is set by the flag
+ * {@literal --max-inbound-message-size=8388608} or by the environment variable
+ * {@literal TPTP_GRPC_MAX_INBOUND_MESSAGE_SIZE}. Flags take precedence over environment variables.
+ * The first five options can also be passed as positional arguments in their order.
+ */
+final class ServerOptions {
+  static final String POOL_SIZE = "pool-size";
+  static final String CACHE_BYTES = "cache-bytes";
+  static final String ENGINE = "engine";
+  static final String WARM_UP_ROUNDS = "warm-up-rounds";
+  static final String METRICS_PORT = "metrics-port";
+  static final String PORT = "port";
+  static final String EXECUTOR = "executor";
+  static final String THREADS = "threads";
+  static final String QUEUE_SIZE = "queue-size";
+  static final String RETRY_AFTER_MS = "retry-after-ms";
+  static final String MAX_INBOUND_MESSAGE_SIZE = "max-inbound-message-size";
+  static final String FLOW_CONTROL_WINDOW = "flow-control-window";
+  static final String CORPUS = "corpus";
+  static final String CONVERSION_THREADS = "conversion-threads";
+  static final String COMPRESSION = "compression";
+  static final String COMPRESSION_THRESHOLD = "compression-threshold";
+  static final String VOCABULARY = "vocabulary";
+  static final String MAX_INPUT_BYTES = "max-input-bytes";
+  static final String MAX_CLAUSES = "max-clauses";
+  static final String MAX_TERM_DEPTH = "max-term-depth";
+  static final String MAX_INCLUDES = "max-includes";
+  static final String MAX_VOCABULARY_SIZE = "max-vocabulary-size";
+  static final String TPTP_PATH = "tptp-path";
+
+  private static final String ENVIRONMENT_PREFIX = "TPTP_GRPC_";
+  private static final String FLAG_PREFIX = "--";
+  private static final String PROCESSORS =
+      String.valueOf(Runtime.getRuntime().availableProcessors());
+  private static final String[][] DEFAULTS = {{POOL_SIZE, PROCESSORS}, {CACHE_BYTES, "0"},
+      {ENGINE, ParserEngine.XTEXT.name()}, {WARM_UP_ROUNDS, "0"}, {METRICS_PORT, "0"},
+      {PORT, "50051"}, {EXECUTOR, ServerExecutor.CACHED.name()}, {THREADS, PROCESSORS},
+      {QUEUE_SIZE, "64"}, {RETRY_AFTER_MS, "1000"}, {MAX_INBOUND_MESSAGE_SIZE, "4194304"},
+      {FLOW_CONTROL_WINDOW, "1048576"}, {CORPUS, ""},
+      {CONVERSION_THREADS, "0"}, {COMPRESSION, AdaptiveCompression.DEFAULT_ENCODING},
+      {COMPRESSION_THRESHOLD, String.valueOf(AdaptiveCompression.DEFAULT_THRESHOLD_BYTES)},
+      {VOCABULARY, ""}, {MAX_INPUT_BYTES, "0"}, {MAX_CLAUSES, "0"}, {MAX_TERM_DEPTH, "0"},
+      {MAX_INCLUDES, "0"}, {MAX_VOCABULARY_SIZE, "100000"},
+      {TPTP_PATH, Paths.get(System.getProperty("user.home"), "data", "TPTP-v8.1.2").toString()}};
+  private static final List<String> POSITIONAL_OPTIONS =
+      Arrays.asList(POOL_SIZE, CACHE_BYTES, ENGINE, WARM_UP_ROUNDS, METRICS_PORT);
+
+  private final Map<String, String> values;
+
+  private ServerOptions(final Map<String, String> values) {
+    this.values = values;
+  }
+
+  /**
+   * Parse options.
+   *
+   * @param args command-line arguments (flags and positional arguments)
+   * @param environment environment variables
+   * @return options with defaults for the ones not set
+   * @throws IllegalArgumentException on an unknown option or too many positional arguments
+   */
+  static final ServerOptions parse(final String[] args, final Map<String, String> environment) {
+    return parse(args, environment, DEFAULTS, POSITIONAL_OPTIONS);
+  }
+
+  /**
+   * Parse options of any command-line tool.
+   *
+   * @param args command-line arguments (flags and positional arguments)
+   * @param environment environment variables
+   * @param defaults names of all options with their default values
+   * @param positionalOptions names of options which can be passed as positional arguments
+   * @return options with defaults for the ones not set
+   * @throws IllegalArgumentException on an unknown option or too many positional arguments
+   */
+  static final ServerOptions parse(final String[] args, final Map<String, String> environment,
+      final String[][] defaults, final List<String> positionalOptions) {
+    final Map<String, String> values = new LinkedHashMap<>();
+    for (final String[] nameAndDefault : defaults) {
+      final String name = nameAndDefault[0];
+      values.put(name, environment.getOrDefault(
+          ENVIRONMENT_PREFIX + name.replace('-', '_').toUpperCase(Locale.ROOT),
+          nameAndDefault[1]));
+    }
+    parseArguments(args, positionalOptions, values);
+    return new ServerOptions(values);
+  }
+
+  private static final void parseArguments(final String[] args,
+      final List<String> positionalOptions, final Map<String, String> values) {
+    int position = 0;
+    for (final String arg : args) {
+      final int equalsSign = arg.indexOf('=');
+      if (arg.startsWith(FLAG_PREFIX) && equalsSign > 0) {
+        set(values, arg.substring(FLAG_PREFIX.length(), equalsSign),
+            arg.substring(equalsSign + 1));
+      } else if (arg.startsWith(FLAG_PREFIX) || position == positionalOptions.size()) {
+        throw new IllegalArgumentException("expected --option=value: " + arg);
+      } else {
+        set(values, positionalOptions.get(position++), arg);
+      }
+    }
+  }
+
+  private static final void set(final Map<String, String> values, final String name,
+      final String value) {
+    if (values.replace(name, value) == null) {
+      throw new IllegalArgumentException("unknown option: " + name);
+    }
+  }
+
+  final int getInt(final String name) {
+    return Integer.parseInt(values.get(name));
+  }
+
+  final long getLong(final String name) {
+    return Long.parseLong(values.get(name));
+  }
+
+  final String getString(final String name) {
+    return values.get(name);
+  }
+
+  final <E extends Enum<E>> E getEnum(final String name, final Class<E> type) {
+    return Enum.valueOf(type, values.get(name));
+  }
+
+  final ConversionLimits getConversionLimits() {
+    return new ConversionLimits(getLong(MAX_INPUT_BYTES), getInt(MAX_CLAUSES),
+        getInt(MAX_TERM_DEPTH), getInt(MAX_INCLUDES));
+  }
+
+  @Override
+  public final String toString() {
+    return values.toString();
+  }
+}
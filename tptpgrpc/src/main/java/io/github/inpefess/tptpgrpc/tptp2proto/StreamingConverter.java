@@ -0,0 +1,226 @@
+/*
+ *  Copyright 2023 Boris Shminke
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+
+package io.github.inpefess.tptpgrpc.tptp2proto;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import io.github.inpefess.tptpgrpc.tptpproto.Node;
+
+/**
+ * Convert huge TPTP problems formula by formula.
+ *
+ * <p>A problem is split at top-level annotated formula boundaries (reading a file through a
+ * memory-mapped window). Each formula is parsed and converted on its own, and its clauses are
+ * emitted one at a time, so the peak memory is bounded by the largest formula (and included files)
+ * rather than by the whole problem.
+ *
+ * <p>The output is a sequence of quantified clauses in the order of the problem followed by the
+ * existential quantifier over all functions and predicates of the problem with an empty
+ * conjunction. {@link #assemble(Iterator)} puts the clauses into this conjunction, which gives the
+ * same result as {@link Tptp2Proto#tptp2Proto(java.io.Reader)}.
+ */
+public final class StreamingConverter {
+  /** The default size of a memory-mapped window in bytes. */
+  static final int DEFAULT_WINDOW_SIZE = 64 << 20;
+
+  private final Tptp2Proto tptp2Proto;
+  private final int windowSize;
+  private final FormulaSplitter formulaSplitter = new FormulaSplitter();
+
+  /**
+   * Constructor.
+   *
+   * @param tptp2Proto a parser to use
+   */
+  public StreamingConverter(final Tptp2Proto tptp2Proto) {
+    this(tptp2Proto, DEFAULT_WINDOW_SIZE);
+  }
+
+  StreamingConverter(final Tptp2Proto tptp2Proto, final int windowSize) {
+    this.tptp2Proto = tptp2Proto;
+    this.windowSize = windowSize;
+  }
+
+  /**
+   * Convert a problem file writing length-delimited {@link Node} messages to a stream.
+   *
+   * @param problemFile a TPTP problem file
+   * @param output a stream to write clauses and the final quantifier to
+   * @throws IOException if encounters errors when reading the problem or writing the output
+   * @throws TptpSyntaxErrorException on syntax error
+   */
+  public final void convert(final Path problemFile, final OutputStream output)
+      throws IOException, TptpSyntaxErrorException {
+    convert(problemFile, node -> node.writeDelimitedTo(output));
+  }
+
+  final void convert(final Path problemFile, final NodeSink sink)
+      throws IOException, TptpSyntaxErrorException {
+    final Set<String> functionAndPredicateNames = new HashSet<>();
+    try (FileChannel channel = FileChannel.open(problemFile, StandardOpenOption.READ)) {
+      long position = 0;
+      int currentWindowSize = windowSize;
+      while (position < channel.size()) {
+        final long length = Math.min(currentWindowSize, channel.size() - position);
+        final int consumed =
+            convertFormulas(channel.map(FileChannel.MapMode.READ_ONLY, position, length),
+                position + length == channel.size(), functionAndPredicateNames, sink);
+        currentWindowSize = nextWindowSize(currentWindowSize, consumed);
+        position += consumed;
+      }
+    }
+    sink.accept(quantifiedConjunction(functionAndPredicateNames));
+  }
+
+  /**
+   * Convert a problem text passing clauses and the final quantifier to a sink.
+   *
+   * @param problem a TPTP problem text
+   * @param sink a consumer of nodes
+   * @throws IOException if the sink fails
+   * @throws TptpSyntaxErrorException on syntax error
+   */
+  final void convert(final String problem, final NodeSink sink)
+      throws IOException, TptpSyntaxErrorException {
+    final Set<String> functionAndPredicateNames = new HashSet<>();
+    convertFormulas(ByteBuffer.wrap(problem.getBytes(StandardCharsets.UTF_8)), true,
+        functionAndPredicateNames, sink);
+    sink.accept(quantifiedConjunction(functionAndPredicateNames));
+  }
+
+  private final int nextWindowSize(final int currentWindowSize, final int consumed)
+      throws IOException {
+    if (consumed > 0) {
+      return windowSize;
+    }
+    if (currentWindowSize == Integer.MAX_VALUE) {
+      throw new IOException("A formula is longer than " + Integer.MAX_VALUE + " bytes");
+    }
+    // the window doesn't contain a whole formula
+    return (int) Math.min(2L * currentWindowSize, Integer.MAX_VALUE);
+  }
+
+  private final int convertFormulas(final ByteBuffer text, final boolean isLast,
+      final Set<String> functionAndPredicateNames, final NodeSink sink)
+      throws IOException, TptpSyntaxErrorException {
+    int start = 0;
+    int end = formulaSplitter.formulaEnd(text, start);
+    while (end != -1) {
+      convertFormula(text.duplicate().position(start).limit(end), functionAndPredicateNames, sink);
+      start = end;
+      end = formulaSplitter.formulaEnd(text, start);
+    }
+    if (isLast) {
+      // trailing comments or an unfinished formula (to report a syntax error)
+      convertFormula(text.duplicate().position(start), functionAndPredicateNames, sink);
+      start = text.limit();
+    }
+    return start;
+  }
+
+  private final void convertFormula(final ByteBuffer formula,
+      final Set<String> functionAndPredicateNames, final NodeSink sink)
+      throws IOException, TptpSyntaxErrorException {
+    final String formulaText = StandardCharsets.UTF_8.decode(formula).toString();
+    if (!formulaText.isBlank()) {
+      final List<Node> clauses = new ArrayList<>(1);
+      tptp2Proto.tptp2Proto(new StringReader(formulaText), functionAndPredicateNames,
+          clauses::add);
+      for (final Node clause : clauses) {
+        sink.accept(clause);
+      }
+    }
+  }
+
+  private static final Node quantifiedConjunction(final Set<String> functionAndPredicateNames) {
+    return ClauseConverter
+        .quantify(Node.newBuilder().setValue("&").build(), "?", functionAndPredicateNames).build();
+  }
+
+  /**
+   * Restore a whole problem from streamed clauses and the final quantifier.
+   *
+   * @param nodes clauses followed by the final quantifier
+   * @return a protobuf object representing the parsed TPTP problem
+   */
+  public static final Node assemble(final Iterator<Node> nodes) {
+    final Node.Builder conjunction = Node.newBuilder().setValue("&");
+    Node node = nodes.next();
+    while (nodes.hasNext()) {
+      conjunction.addChild(node);
+      node = nodes.next();
+    }
+    return node.toBuilder().setChild(node.getChildCount() - 1, conjunction).build();
+  }
+
+  /**
+   * Restore a whole problem from a stream of length-delimited messages.
+   *
+   * @param input a stream written by {@link #convert(Path, OutputStream)}
+   * @return a protobuf object representing the parsed TPTP problem
+   * @throws IOException if unable to read the stream
+   */
+  public static final Node assemble(final InputStream input) throws IOException {
+    final List<Node> nodes = new ArrayList<>();
+    Node node = Node.parseDelimitedFrom(input);
+    while (node != null) {
+      nodes.add(node);
+      node = Node.parseDelimitedFrom(input);
+    }
+    return assemble(nodes.iterator());
+  }
+
+  /**
+   * Convert a huge TPTP problem to a file of length-delimited {@link Node} messages.
+   *
+   * @param args three arguments: <ol>
+   *     <li> TPTP root folder </li>
+   *     <li> path to the problem file </li>
+   *     <li> path to the output file </li>
+   *     </ol>
+   * @throws IOException if there are any error when reading or writing files
+   * @throws TptpSyntaxErrorException on syntax error
+   */
+  public static final void main(final String[] args)
+      throws IOException, TptpSyntaxErrorException {
+    try (OutputStream output = new FileOutputStream(args[2])) {
+      new StreamingConverter(new Tptp2Proto(args[0])).convert(Paths.get(args[1]), output);
+    }
+  }
+
+  /**
+   * A consumer of converted nodes.
+   */
+  @FunctionalInterface
+  interface NodeSink {
+    void accept(Node node) throws IOException;
+  }
+}
@@ -0,0 +1,138 @@
+/*
+ *  Copyright 2023 Boris Shminke
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+
+package io.github.inpefess.tptpgrpc.tptp2proto;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * Generator of random CNF problems in TPTP syntax.
+ *
+ * <p>Used as a corpus for benchmarks and for warming up the server.
+ */
+public final class SyntheticProblems {
+  private static final int SYMBOL_COUNT = 10;
+
+  private final Random random;
+  private final int depth;
+
+  /**
+   * Constructor.
+   *
+   * @param seed a random seed
+   * @param depth the maximal depth of terms
+   */
+  public SyntheticProblems(final long seed, final int depth) {
+    this.random = new Random(seed);
+    this.depth = depth;
+  }
+
+  /**
+   * Generate a list of clauses.
+   *
+   * @param clauseCount the number of clauses
+   * @return clauses in TPTP syntax
+   */
+  public final String clauses(final int clauseCount) {
+    final StringBuilder problem = new StringBuilder();
+    for (int i = 0; i < clauseCount; i++) {
+      problem.append("cnf(c").append(i).append(", axiom, ");
+      final int literalCount = 1 + random.nextInt(4);
+      for (int j = 0; j < literalCount; j++) {
+        if (j > 0) {
+          problem.append(" | ");
+        }
+        appendLiteral(problem);
+      }
+      problem.append(").\n");
+    }
+    return problem.toString();
+  }
+
+  /**
+   * Generate clauses with deeply nested terms, the same in each clause.
+   *
+   * @param clauseCount the number of clauses
+   * @param nestingCount the number of nested functions in a term
+   * @return clauses in TPTP syntax
+   */
+  public static final String nestedClauses(final int clauseCount, final int nestingCount) {
+    final StringBuilder term = new StringBuilder("X0");
+    for (int depth = 1; depth <= nestingCount; depth++) {
+      term.insert(0, "f" + depth % 3 + "(X" + depth + ", ").append(")");
+    }
+    final StringBuilder problem = new StringBuilder();
+    for (int i = 0; i < clauseCount; i++) {
+      problem.append("cnf(c" + i + ", axiom, p(" + term + ") | ~ q(X1, c) | X2 != g(X3)).\n");
+    }
+    return problem.toString();
+  }
+
+  /**
+   * Write a TPTP folder with axiom files and a problem including all of them.
+   *
+   * @param tptpPath a TPTP root folder to create
+   * @param includeCount the number of axiom files
+   * @param clauseCount the number of clauses in each file
+   * @return the text of the problem
+   * @throws IOException if unable to write files
+   */
+  public final String writeProblemWithIncludes(final Path tptpPath, final int includeCount,
+      final int clauseCount) throws IOException {
+    Files.createDirectories(tptpPath.resolve("Axioms"));
+    final StringBuilder problem = new StringBuilder();
+    for (int i = 0; i < includeCount; i++) {
+      final String axiomFile = "Axioms/SYN000-" + i + ".ax";
+      Files.writeString(tptpPath.resolve(axiomFile), clauses(clauseCount));
+      problem.append("include('").append(axiomFile).append("').\n");
+    }
+    return problem.append(clauses(clauseCount)).toString();
+  }
+
+  private final void appendLiteral(final StringBuilder clause) {
+    if (random.nextBoolean()) {
+      clause.append("~ ");
+    }
+    if (random.nextInt(4) == 0) {
+      appendTerm(clause, depth);
+      clause.append(" = ");
+      appendTerm(clause, depth);
+    } else {
+      clause.append('p').append(random.nextInt(SYMBOL_COUNT)).append('(');
+      appendTerm(clause, depth);
+      clause.append(", ");
+      appendTerm(clause, depth);
+      clause.append(')');
+    }
+  }
+
+  private final void appendTerm(final StringBuilder clause, final int maxDepth) {
+    if (maxDepth == 0 || random.nextInt(3) == 0) {
+      clause.append('X').append(random.nextInt(SYMBOL_COUNT));
+      return;
+    }
+    clause.append('f').append(random.nextInt(SYMBOL_COUNT)).append('(');
+    appendTerm(clause, maxDepth - 1);
+    if (random.nextBoolean()) {
+      clause.append(", ");
+      appendTerm(clause, maxDepth - 1);
+    }
+    clause.append(')');
+  }
+}
@@ -16,43 +16,34 @@
 
 package io.github.inpefess.tptpgrpc.tptp2proto;
 
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.IOException;
 import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Scanner;
 import java.util.Set;
-import com.google.inject.Guice;
-import com.google.inject.Inject;
-import com.google.inject.Injector;
-import com.theoremsandstuff.tptp.ParserRuntimeModule;
-import com.theoremsandstuff.tptp.ParserStandaloneSetup;
-import com.theoremsandstuff.tptp.parser.cnf_constant;
-import com.theoremsandstuff.tptp.parser.cnf_equality;
-import com.theoremsandstuff.tptp.parser.cnf_expression;
-import com.theoremsandstuff.tptp.parser.cnf_not;
-import com.theoremsandstuff.tptp.parser.cnf_or;
-import com.theoremsandstuff.tptp.parser.cnf_root;
-import com.theoremsandstuff.tptp.parser.cnf_var;
-import com.theoremsandstuff.tptp.parser.include;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 import io.github.inpefess.tptpgrpc.tptpproto.Node;
+import io.github.inpefess.tptpgrpc.tptpproto.OutputFormat;
 import org.eclipse.emf.ecore.EObject;
-import org.eclipse.xtext.parser.IParseResult;
-import org.eclipse.xtext.parser.IParser;
 
 /**
  * Parse TPTP problems into protobuf objects.
  */
 public final class Tptp2Proto {
-  @Inject
-  private IParser parser;
-  Injector injector = Guice.createInjector(new ParserRuntimeModule());
-  private final String tptpPath;
+  private final ParserConfig config;
+  private final XtextParser xtextParser;
+  // time spent in included files by this instance
+  private long includeNanos;
+  // files included (directly or not) by the problem being parsed
+  private Set<Path> includedFiles = new HashSet<>();
+  // limits and the call of the problem being parsed
+  private ConversionGuard guard = ConversionGuard.NONE;
 
   /**
    * Constructor.
@@ -60,8 +51,18 @@ public final class Tptp2Proto {
    * @param tptpPath the absolute path to the TPTP root folder
    */
   public Tptp2Proto(final String tptpPath) {
-    this.tptpPath = tptpPath;
-    setupParser();
+    this(new ParserConfig(tptpPath));
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param config the TPTP root folder, the parser engine, and resources which can be shared
+   *     between instances (the include cache, metrics, and the conversion pool)
+   */
+  public Tptp2Proto(final ParserConfig config) {
+    this.config = config;
+    xtextParser = config.parserEngine == ParserEngine.XTEXT ? new XtextParser() : null;
   }
 
   /**
@@ -73,139 +74,187 @@ public final class Tptp2Proto {
    * @throws TptpSyntaxErrorException on syntax error
    */
   public final Node tptp2Proto(final Reader reader) throws IOException, TptpSyntaxErrorException {
-    final ParsingResult parsedTptp = ParsingResult.emptyParsingResult();
-    parsedTptp.nodeBuilder.setValue("&");
-    IParseResult parseResult = parser.parse(reader);
-    if (parseResult.hasSyntaxErrors()) {
-      throw new TptpSyntaxErrorException(
-          parseResult.getSyntaxErrors().iterator().next().getSyntaxErrorMessage().getMessage());
-    }
-    for (final EObject entry : parseResult.getRootASTElement().eContents()) {
-      if (entry instanceof cnf_root) {
-        final cnf_or clause = ((cnf_root) entry).getExp().getDisjunction();
-        parsedTptp.addChild(transform_clause(clause));
-      }
-      if (entry instanceof include) {
-        parseInclude(parsedTptp, (include) entry);
-      }
-    }
-    return quantify(parsedTptp.nodeBuilder.build(), "?", parsedTptp.functionAndPredicateNames)
-        .build();
+    includedFiles = new HashSet<>();
+    final Node.Builder conjunction = Node.newBuilder().setValue("&");
+    final Set<String> functionAndPredicateNames = new HashSet<>();
+    tptp2Proto(reader, functionAndPredicateNames, conjunction::addChild);
+    return ClauseConverter.quantify(conjunction.build(), "?", functionAndPredicateNames).build();
   }
 
-  private final void parseInclude(final ParsingResult parsedTptp, final include entry)
-      throws IOException, TptpSyntaxErrorException {
-    final File includedFile = Paths.get(tptpPath, entry.getPath()).toFile();
-    try (final FileReader includedFileReader = new FileReader(includedFile)) {
-      final List<Node> includedEntries = tptp2Proto(includedFileReader).getChildList();
-      final int symbolCount = includedEntries.size() - 1;
-      for (int i = 0; i < symbolCount; i++) {
-        parsedTptp.functionAndPredicateNames.add(includedEntries.get(i).getValue());
-      }
-      parsedTptp.nodeBuilder.addAllChild(includedEntries.get(symbolCount).getChildList());
+  /**
+   * Parse a part of a TPTP problem passing its clauses one by one.
+   *
+   * <p>The time spent in included files is recorded separately from parsing and conversion. The
+   * hand-written parser converts clauses while parsing, so its time is recorded as parsing.
+   *
+   * @param reader a reader of a part of a TPTP problem
+   * @param functionAndPredicateNames a set collecting functions and predicates of the problem
+   * @param clauses a consumer of quantified clauses (including the ones from included files)
+   * @throws IOException if encounters errors when reading the problem
+   * @throws TptpSyntaxErrorException on syntax error
+   */
+  final void tptp2Proto(final Reader reader, final Set<String> functionAndPredicateNames,
+      final Consumer<Node> clauses) throws IOException, TptpSyntaxErrorException {
+    final long includeNanosBefore = includeNanos;
+    final Consumer<Node> countedClauses = clause -> {
+      guard.countClause();
+      clauses.accept(clause);
+    };
+    final CnfParser.IncludeHandler includes = path -> {
+      guard.checkCancelled();
+      parseInclude(path, functionAndPredicateNames, countedClauses);
+    };
+    final EObject ast = config.parserEngine == ParserEngine.XTEXT ? parseAst(reader) : null;
+    final long start = System.nanoTime();
+    if (ast == null) {
+      new CnfParser(reader, functionAndPredicateNames, guard).parse(countedClauses, includes);
+    } else {
+      convertAst(ast, functionAndPredicateNames, countedClauses, includes);
     }
+    config.metrics.record(ast == null ? ParserMetrics.Phase.PARSE : ParserMetrics.Phase.CONVERT,
+        System.nanoTime() - start - (includeNanos - includeNanosBefore));
   }
 
-  private final ParsingResult transform_term(final cnf_expression term) {
-    final ParsingResult parsedTerm = ParsingResult.emptyParsingResult();
-    if (term instanceof cnf_var) {
-      final String variableName = ((cnf_var) term).getName();
-      parsedTerm.addVariable(variableName);
+  private final void convertAst(final EObject ast, final Set<String> functionAndPredicateNames,
+      final Consumer<Node> clauses, final CnfParser.IncludeHandler includes)
+      throws IOException, TptpSyntaxErrorException {
+    if (config.conversionPool == null) {
+      xtextParser.convert(ast, new ClauseConverter(functionAndPredicateNames, guard), clauses,
+          includes);
     } else {
-      final cnf_constant function = (cnf_constant) term;
-      parsedTerm.addFunctionOrPredicate(function.getName());
-      for (final cnf_expression argument : function.getParam()) {
-        parsedTerm.addChild(transform_term(argument));
-      }
+      // the time of concurrent included files isn't subtracted from the conversion time
+      new ParallelConverter(config.conversionPool, this::parseIncludeConcurrently, guard)
+          .convert(ast, functionAndPredicateNames, clauses, includedFiles);
     }
-    return parsedTerm;
   }
 
-  private final ParsingResult transform_predicate(final cnf_equality predicate) {
-    final ParsingResult parsedPredicate = ParsingResult.emptyParsingResult();
-    if (predicate.getExpR() != null) {
-      parsedPredicate.nodeBuilder.setValue(predicate.getEq());
-      parsedPredicate.addChild(transform_term(predicate.getExpL()));
-      parsedPredicate.addChild(transform_term(predicate.getExpR()));
-    } else {
-      if (predicate.getExpL() instanceof cnf_constant) {
-        parsedPredicate.addFunctionOrPredicate(predicate.getExpL().getName());
-        for (final cnf_expression argument : ((cnf_constant) predicate.getExpL()).getParam()) {
-          parsedPredicate.addChild(transform_term(argument));
-        }
-      } else {
-        parsedPredicate.nodeBuilder.setValue(predicate.getExpL().getCnf_exp());
-      }
-    }
-    return parsedPredicate;
+  /**
+   * Parse a TPTP problem into the Xtext AST.
+   *
+   * @param reader a reader of a TPTP problem
+   * @return the root of the AST
+   * @throws TptpSyntaxErrorException on syntax error
+   */
+  final EObject parseAst(final Reader reader) throws TptpSyntaxErrorException {
+    final long start = System.nanoTime();
+    final EObject ast = xtextParser.parseAst(reader);
+    config.metrics.record(ParserMetrics.Phase.PARSE, System.nanoTime() - start);
+    return ast;
   }
 
-  private final ParsingResult transform_clause(final cnf_or clause) {
-    final ParsingResult parsedClause = ParsingResult.emptyParsingResult();
-    parsedClause.nodeBuilder.setValue("|");
-    for (final cnf_not literal : clause.getOr()) {
-      final ParsingResult parsedLiteral = transform_predicate(literal.getLiteral());
-      if (literal.isNegated()) {
-        final Node.Builder negatedLiteral = Node.newBuilder();
-        negatedLiteral.setValue("~");
-        negatedLiteral.addChild(parsedLiteral.nodeBuilder.build());
-        parsedClause.addChild(new ParsingResult(negatedLiteral, parsedLiteral.variableNames,
-            parsedLiteral.functionAndPredicateNames));
-      } else {
-        parsedClause.addChild(parsedLiteral);
-      }
-    }
-    return new ParsingResult(
-        quantify(parsedClause.nodeBuilder.build(), "!", parsedClause.variableNames),
-        new HashSet<>(), parsedClause.functionAndPredicateNames);
+  private final void parseInclude(final String path, final Set<String> functionAndPredicateNames,
+      final Consumer<Node> clauses) throws IOException, TptpSyntaxErrorException {
+    final long includeNanosBefore = includeNanos;
+    final long start = System.nanoTime();
+    final ParsedInclude parsedInclude =
+        config.includeCache.get(Paths.get(config.tptpPath, path), this::parseIncludedFile);
+    includedFiles.addAll(parsedInclude.includedFiles);
+    guard.checkIncludeCount(includedFiles.size());
+    functionAndPredicateNames.addAll(parsedInclude.functionAndPredicateNames);
+    parsedInclude.clauses.forEach(clauses);
+    final long elapsed = System.nanoTime() - start;
+    // the time of nested includes is already a part of the elapsed time
+    includeNanos = includeNanosBefore + elapsed;
+    config.metrics.record(ParserMetrics.Phase.INCLUDE, elapsed);
   }
 
-  private final Node.Builder quantify(final Node node, final String quantor,
-      final Set<String> symbolNames) {
-    final Node.Builder universalQuantifier = Node.newBuilder();
-    universalQuantifier.setValue(quantor);
-    for (final String symbolName : symbolNames) {
-      final Node.Builder variable = Node.newBuilder();
-      variable.setValue(symbolName);
-      universalQuantifier.addChild(variable.build());
+  private final ParsedInclude parseIncludeConcurrently(final String path)
+      throws IOException, TptpSyntaxErrorException {
+    final long start = System.nanoTime();
+    // this instance is busy, so a new one parses the file (and its includes) in the pool
+    final ParsedInclude parsedInclude = config.includeCache.getOrParse(
+        Paths.get(config.tptpPath, path),
+        includedFile -> new Tptp2Proto(config).guard(guard).parseIncludedFile(includedFile));
+    config.metrics.record(ParserMetrics.Phase.INCLUDE, System.nanoTime() - start);
+    return parsedInclude;
+  }
+
+  private final ParsedInclude parseIncludedFile(final Path includedFile)
+      throws IOException, TptpSyntaxErrorException {
+    final Set<Path> outerIncludedFiles = includedFiles;
+    final ConversionGuard outerGuard = guard;
+    // other calls may wait for this file, so it's parsed regardless of this call
+    guard = guard.forInclude();
+    try (final FileReader includedFileReader = new FileReader(includedFile.toFile())) {
+      final List<Node> includedEntries = tptp2Proto(includedFileReader).getChildList();
+      includedFiles.add(includedFile);
+      final int symbolCount = includedEntries.size() - 1;
+      return new ParsedInclude(includedEntries.get(symbolCount).getChildList(),
+          Collections.unmodifiableSet(includedEntries.subList(0, symbolCount).stream()
+              .map(Node::getValue).collect(Collectors.toSet())),
+          Collections.unmodifiableSet(includedFiles));
+    } finally {
+      includedFiles = outerIncludedFiles;
+      guard = outerGuard;
     }
-    universalQuantifier.addChild(node);
-    return universalQuantifier;
   }
 
-  private final void setupParser() {
-    final Injector injector = new ParserStandaloneSetup().createInjectorAndDoEMFRegistration();
-    injector.injectMembers(this);
+  /**
+   * Start a new problem (maybe parsed in parts) with its limits and call.
+   *
+   * <p>Files included by previous problems are forgotten, so they don't count towards the limit
+   * of included files of this one.
+   *
+   * @param problemGuard a guard to check while parsing
+   * @return this parser
+   */
+  final Tptp2Proto guard(final ConversionGuard problemGuard) {
+    guard = problemGuard;
+    includedFiles = new HashSet<>();
+    return this;
+  }
+
+  /**
+   * Files included by the last parsed problem.
+   *
+   * @return paths of files included by the problem directly or by its included files
+   */
+  final Set<Path> getIncludedFiles() {
+    return includedFiles;
   }
 
   /**
    * Read TPTP problems from a given list, parse them, and save protobuf binaries to a given folder.
    *
    * <p>Resulting files in the output folder are called by order numbers of problems in the list,
-   * e.g. the first one becomes {@literal 0.pb}, the second one {@literal 1.pb}, and so forth.
+   * e.g. the first one becomes {@literal 0.pb}, the second one {@literal 1.pb}, and so forth. If a
+   * problem fails to parse, an error report (e.g. {@literal 1.error}) is written instead, and the
+   * exit status is non-zero.
    *
-   * @param args three arguments: <ol>
+   * @param args from three to eight arguments: <ol>
    *     <li> TPTP root folder </li>
    *     <li> absolute path to the problem list file </li>
-   *     <li> absolute path to the output folder (should exist and be empty) </li>
+   *     <li> absolute path to the output folder (should exist) </li>
+   *     <li> number of worker threads (optional, defaults to the number of processors) </li>
+   *     <li> output format: {@literal TREE}, {@literal COMPACT}, {@literal DAG}, or
+   *     {@literal GRAPH} (optional, defaults to {@literal TREE}) </li>
+   *     <li> parser engine: {@literal XTEXT} or {@literal HANDWRITTEN} (optional, defaults to
+   *     {@literal XTEXT}) </li>
+   *     <li> the maximal size of a shard in bytes (optional, defaults to zero, i.e. a file per
+   *     problem instead of shards, see {@link CorpusWriter}) </li>
+   *     <li> {@literal true} to convert only problems which changed since the previous conversion
+   *     to the same folder (optional, defaults to {@literal false}, works only without shards)
+   *     </li>
    *     </ol>
-   * @throws IOException if there are any error when reading TPTP problems
-   * @throws TptpSyntaxErrorException on syntax error
+   * @throws IOException if there are any error when reading the problem list
+   * @throws InterruptedException if interrupted while waiting for the conversion to finish
    */
-  public static final void main(final String[] args) throws IOException, TptpSyntaxErrorException {
-    final Tptp2Proto tptp2Proto = new Tptp2Proto(args[0]);
-    try (final FileInputStream fileInputStream = new FileInputStream(args[1]);
-        final Scanner problemList = new Scanner(fileInputStream)) {
-      int fileIndex = 0;
-      while (problemList.hasNextLine()) {
-        try (FileReader problemReader = new FileReader(problemList.nextLine())) {
-          final Node parsedTptp = tptp2Proto.tptp2Proto(problemReader);
-          final String outputFilename = Paths.get(args[2], fileIndex++ + ".pb").toString();
-          try (FileOutputStream outputProtobufFile = new FileOutputStream(outputFilename)) {
-            parsedTptp.writeTo(outputProtobufFile);
-          }
-        }
-      }
+  public static final void main(final String[] args) throws IOException, InterruptedException {
+    final int workerCount =
+        args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+    final List<String> problemList = Files.readAllLines(Paths.get(args[1]));
+    final OutputFormat outputFormat =
+        args.length > 4 ? OutputFormat.valueOf(args[4]) : OutputFormat.TREE;
+    final ParserEngine parserEngine =
+        args.length > 5 ? ParserEngine.valueOf(args[5]) : ParserEngine.XTEXT;
+    final long shardBytes = args.length > 6 ? Long.parseLong(args[6]) : 0;
+    final boolean incremental = args.length > 7 && Boolean.parseBoolean(args[7]);
+    final int failureCount =
+        new BatchConverter(new ParserConfig(args[0]).withParserEngine(parserEngine), workerCount,
+            outputFormat, shardBytes, incremental).convert(problemList, Paths.get(args[2]));
+    if (failureCount > 0) {
+      // scripts see that some problems have error reports instead of binaries
+      System.exit(1);
     }
   }
 }
@@ -0,0 +1,131 @@
+/*
+ *  Copyright 2023 Boris Shminke
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+
+package io.github.inpefess.tptpgrpc.tptp2proto;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import io.github.inpefess.tptpgrpc.tptpproto.Node;
+import io.grpc.Context;
+
+/**
+ * A bounded pool of {@link Tptp2Proto} instances.
+ *
+ * <p>The injected Xtext parser is stateful, so one {@link Tptp2Proto} must not be used by several
+ * threads at once. The pool creates parsers lazily (up to its size) and makes callers wait when
+ * all of them are busy. All parsers share one {@link IncludeCache}.
+ *
+ * <p>Each call gets a {@link ConversionGuard} with the limits of the pool and the gRPC context of
+ * the calling thread, so the parser stops when the call is cancelled or a limit is reached.
+ */
+final class Tptp2ProtoPool {
+  private final ParserConfig config;
+  private final BlockingQueue<Tptp2Proto> idleParsers;
+  private final AtomicInteger createdParsers = new AtomicInteger();
+  private final int size;
+
+  /**
+   * Constructor.
+   *
+   * @param config the settings of all parsers (which share its include cache, metrics, and
+   *     conversion pool) with the limits of each problem
+   * @param size the maximal number of parsers
+   */
+  Tptp2ProtoPool(final ParserConfig config, final int size) {
+    this.config = config;
+    this.size = size;
+    idleParsers = new ArrayBlockingQueue<>(size);
+  }
+
+  /**
+   * Parse a TPTP problem into protobuf with the next idle parser.
+   *
+   * @param reader a reader of a TPTP problem
+   * @return a protobuf object representing the parsed TPTP problem
+   * @throws IOException if encounters errors when reading the problem
+   * @throws TptpSyntaxErrorException on syntax error
+   * @throws InterruptedException if interrupted while waiting for an idle parser
+   */
+  Node tptp2Proto(final Reader reader)
+      throws IOException, TptpSyntaxErrorException, InterruptedException {
+    return apply(parser -> parser.tptp2Proto(reader));
+  }
+
+  /**
+   * Call a function with the next idle parser.
+   *
+   * @param <T> the type of the function result
+   * @param function a function using a parser
+   * @return the function result
+   * @throws IOException if encounters errors when reading the problem
+   * @throws TptpSyntaxErrorException on syntax error
+   * @throws InterruptedException if interrupted while waiting for an idle parser
+   * @throws io.grpc.StatusRuntimeException if the call is cancelled or a limit is reached
+   */
+  <T> T apply(final ParserFunction<T> function)
+      throws IOException, TptpSyntaxErrorException, InterruptedException {
+    final ConversionGuard guard = new ConversionGuard(config.limits, Context.current());
+    final Tptp2Proto parser = borrow();
+    try {
+      // the call could be cancelled while waiting for the parser
+      guard.checkCancelled();
+      return function.apply(parser.guard(guard));
+    } catch (final TptpSyntaxErrorException e) {
+      config.metrics.countSyntaxError();
+      throw e;
+    } finally {
+      idleParsers.add(parser.guard(ConversionGuard.NONE));
+    }
+  }
+
+  private final Tptp2Proto borrow() throws InterruptedException {
+    final Tptp2Proto idleParser = idleParsers.poll();
+    if (idleParser != null) {
+      return idleParser;
+    }
+    if (createdParsers.getAndUpdate(created -> Math.min(created + 1, size)) < size) {
+      try {
+        return new Tptp2Proto(config);
+      } catch (final RuntimeException e) {
+        // give the slot back, or the next calls would wait for a parser never to be created
+        createdParsers.decrementAndGet();
+        throw e;
+      }
+    }
+    return idleParsers.take();
+  }
+
+  IncludeCache getIncludeCache() {
+    return config.includeCache;
+  }
+
+  ConversionLimits getLimits() {
+    return config.limits;
+  }
+
+  /**
+   * A function using a parser.
+   *
+   * @param <T> the type of the function result
+   */
+  @FunctionalInterface
+  interface ParserFunction<T> {
+    T apply(Tptp2Proto parser) throws IOException, TptpSyntaxErrorException;
+  }
+}
@@ -17,15 +17,21 @@
 
 package io.github.inpefess.tptpgrpc.tptp2proto;
 
+import java.util.Iterator;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
+import io.github.inpefess.tptpgrpc.tptpproto.BatchRequest;
+import io.github.inpefess.tptpgrpc.tptpproto.GraphTensors;
 import io.github.inpefess.tptpgrpc.tptpproto.Node;
+import io.github.inpefess.tptpgrpc.tptpproto.ParseRequest;
+import io.github.inpefess.tptpgrpc.tptpproto.ParseResponse;
 import io.github.inpefess.tptpgrpc.tptpproto.StringMessage;
 import io.github.inpefess.tptpgrpc.tptpproto.TptpParserGrpc;
 import io.grpc.Channel;
-import io.grpc.Grpc;
-import io.grpc.InsecureChannelCredentials;
+import io.grpc.ClientInterceptors;
 import io.grpc.ManagedChannel;
+import io.grpc.stub.StreamObserver;
 
 /**
  * A simple client that requests to parse a TPTP string from the {@link TptpParserServer}.
@@ -34,6 +40,7 @@ public final class TptpGrpcClient {
   private static final Logger logger = Logger.getLogger(TptpGrpcClient.class.getName());
 
   private final TptpParserGrpc.TptpParserBlockingStub blockingStub;
+  private final TptpParserGrpc.TptpParserStub asyncStub;
   private static final String targetDefault = "localhost:50051";
   private static final String cnfStringDefault =
       "cnf(test, axiom, ~ p(f(X, g(Y, Z))) | X = Y | $false).";
@@ -47,6 +54,7 @@ public final class TptpGrpcClient {
   public TptpGrpcClient(final Channel channel) {
     // Passing Channels to code makes code easier to test and makes it easier to reuse Channels.
     blockingStub = TptpParserGrpc.newBlockingStub(channel);
+    asyncStub = TptpParserGrpc.newStub(channel);
   }
 
   /**
@@ -61,6 +69,65 @@ public final class TptpGrpcClient {
     return response;
   }
 
+  /**
+   * Parse a huge problem receiving its clauses one by one.
+   *
+   * <p>{@link StreamingConverter#assemble(Iterator)} restores the whole problem from them.
+   *
+   * @param tptpString logic formula(s) in TPTP syntax
+   * @return quantified clauses followed by the quantifier over functions and predicates
+   */
+  public final Iterator<Node> parseTptpClauses(final String tptpString) {
+    final StringMessage request = StringMessage.newBuilder().setStringMessage(tptpString).build();
+    return blockingStub.parseTptpClauses(request);
+  }
+
+  /**
+   * Parse a problem into graph tensors.
+   *
+   * @param tptpString logic formula(s) in TPTP syntax
+   * @return the tensors of the parsed problem labelled with the vocabulary of the server
+   */
+  public final GraphTensors parseTptpGraph(final String tptpString) {
+    return blockingStub
+        .parseTptpGraph(StringMessage.newBuilder().setStringMessage(tptpString).build());
+  }
+
+  /**
+   * Get a converted problem from the corpus of the server.
+   *
+   * @param name the original path of a problem
+   * @return the problem in the format of the corpus
+   */
+  public final ParseResponse getProblem(final String name) {
+    return blockingStub.getProblem(StringMessage.newBuilder().setStringMessage(name).build());
+  }
+
+  /**
+   * Send several strings to parse to server in one request.
+   *
+   * @param tptpStrings logic formulae in TPTP syntax
+   * @return parsing results (or errors) in the order of the strings
+   */
+  public final List<ParseResponse> parseBatch(final Iterable<String> tptpStrings) {
+    final BatchRequest request = BatchRequest.newBuilder().addAllStringMessage(tptpStrings).build();
+    return blockingStub.parseBatch(request).getResponseList();
+  }
+
+  /**
+   * Open a bidirectional parsing stream.
+   *
+   * <p>Each request should have a correlation id. Responses carry the id of their request and come
+   * as soon as they are ready, possibly not in the order of requests.
+   *
+   * @param responseObserver an observer of parsing results
+   * @return an observer to send parsing requests to
+   */
+  public final StreamObserver<ParseRequest> parseTptpStream(
+      final StreamObserver<ParseResponse> responseObserver) {
+    return asyncStub.parseTptpStream(responseObserver);
+  }
+
   /**
    * Extract server address from the argument list.
    *
@@ -74,6 +141,19 @@ public final class TptpGrpcClient {
     return targetDefault;
   }
 
+  /**
+   * Extract the policy of choosing a server from the argument list.
+   *
+   * @param args arguments passed to the {@code main}
+   * @return a balancing policy
+   */
+  private static final BalancingPolicy getPolicy(final String[] args) {
+    if (args.length > 2) {
+      return BalancingPolicy.valueOf(args[2]);
+    }
+    return BalancingPolicy.ROUND_ROBIN;
+  }
+
   /**
    * Extract the TPTP text to parse from the argument list.
    *
@@ -90,9 +170,11 @@ public final class TptpGrpcClient {
   /**
    * Parse.
    *
-   * @param args two arguments (both not required): <ol>
+   * @param args three arguments (all not required): <ol>
    *     <li> the TPTP string to parse </li>
-   *     <li> the target server </li>
+   *     <li> the target server or several comma-separated ones </li>
+   *     <li> the policy of choosing one of several servers, {@literal ROUND_ROBIN} (the default)
+   *     or {@literal LEAST_REQUEST} </li>
    *     </ol>
    * @throws InterruptedException if can't shutdown the channel
    */
@@ -101,24 +183,26 @@ public final class TptpGrpcClient {
     final String cnfString = getCnfString(args);
     if ("--help".equals(cnfString)) {
       System.err
-          .println("Usage: [cnfString [target]]\n  cnfString  The TPTP string you wish to parse."
-              + " Defaults to " + cnfStringDefault
-              + "\n  target     The server to connect to. Defaults to " + targetDefault);
+          .println("Usage: [cnfString [target[,target...] [policy]]]\n  cnfString  The TPTP"
+              + " string you wish to parse. Defaults to " + cnfStringDefault
+              + "\n  target     The server to connect to. Defaults to " + targetDefault
+              + "\n  policy     ROUND_ROBIN (the default) or LEAST_REQUEST to balance calls"
+              + " between several servers");
       return;
     }
-    // Access a service running on the local machine on port 50051
-    final String target = getTarget(args);
     // Create a communication channel to the server, known as a Channel. Channels are thread-safe
     // and reusable. It is common to create channels at the beginning of your application and reuse
     // them until the application shuts down.
     //
-    // For the example we use plaintext insecure credentials to avoid needing TLS certificates. To
-    // use TLS, use TlsChannelCredentials instead.
-    final ManagedChannel channel =
-        Grpc.newChannelBuilder(target, InsecureChannelCredentials.create()).build();
+    // For the example we use plaintext insecure credentials to avoid needing TLS certificates. With
+    // several servers, calls are balanced between the healthy ones.
+    final ManagedChannel channel = BalancedChannel.forTargets(getTarget(args), getPolicy(args));
     try {
       logger.info("Parsing string: " + cnfString);
-      final TptpGrpcClient client = new TptpGrpcClient(channel);
+      // large problems are sent compressed
+      final TptpGrpcClient client = new TptpGrpcClient(ClientInterceptors.intercept(channel,
+          new AdaptiveCompression(AdaptiveCompression.DEFAULT_ENCODING,
+              AdaptiveCompression.DEFAULT_THRESHOLD_BYTES)));
       logger.info("Parsing result: " + client.parseTptp(cnfString).toString());
     } finally {
       // ManagedChannels use resources like threads and TCP connections. To prevent leaking these
@@ -17,17 +17,40 @@
 
 package io.github.inpefess.tptpgrpc.tptp2proto;
 
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.StringReader;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.github.inpefess.tptpgrpc.tptpproto.BatchRequest;
+import io.github.inpefess.tptpgrpc.tptpproto.BatchResponse;
+import io.github.inpefess.tptpgrpc.tptpproto.GraphTensors;
 import io.github.inpefess.tptpgrpc.tptpproto.Node;
+import io.github.inpefess.tptpgrpc.tptpproto.OutputFormat;
+import io.github.inpefess.tptpgrpc.tptpproto.ParseRequest;
+import io.github.inpefess.tptpgrpc.tptpproto.ParseResponse;
 import io.github.inpefess.tptpgrpc.tptpproto.StringMessage;
 import io.github.inpefess.tptpgrpc.tptpproto.TptpParserGrpc;
-import io.grpc.Grpc;
+import io.grpc.Context;
 import io.grpc.InsecureServerCredentials;
 import io.grpc.Server;
+import io.grpc.ServerBuilder;
+import io.grpc.ServerInterceptors;
+import io.grpc.ServerServiceDefinition;
+import io.grpc.StatusRuntimeException;
+import io.grpc.netty.shaded.io.grpc.netty.NettyServerBuilder;
 import io.grpc.stub.StreamObserver;
 
 /**
@@ -37,13 +60,103 @@ public final class TptpParserServer {
   private static final Logger logger = Logger.getLogger(TptpParserServer.class.getName());
 
   private Server server;
+  private MetricsEndpoint metricsEndpoint;
+  private ExecutorService callExecutor;
+  private GraphVocabulary vocabulary;
+  private Path vocabularyFile;
+  private ServerHealth health;
 
-  private final void start() throws IOException {
-    /* The port on which the server should run */
-    final int port = 50051;
-    server = Grpc.newServerBuilderForPort(port, InsecureServerCredentials.create())
-        .addService(new TptpParserImpl()).build().start();
-    logger.info("Server started, listening on " + port);
+  private final void start(final ServerOptions options) throws IOException, InterruptedException {
+    final ParserMetrics metrics = new ParserMetrics();
+    final TptpParserImpl parserService = createParserService(options, metrics);
+    final int port = options.getInt(ServerOptions.PORT);
+    health = new ServerHealth(metrics);
+    server = configure(NettyServerBuilder.forPort(port, InsecureServerCredentials.create())
+        .flowControlWindow(options.getInt(ServerOptions.FLOW_CONTROL_WINDOW)), options,
+        bindService(parserService, options, metrics), metrics)
+        .addService(health.bindService()).build().start();
+    logger.info("Server started, listening on " + port + " with options " + options);
+    startMetricsEndpoint(options.getInt(ServerOptions.METRICS_PORT), metrics);
+    addShutdownHook();
+    // the health service reports serving only when the parsers are ready
+    parserService.warmUp(options.getInt(ServerOptions.WARM_UP_ROUNDS));
+    health.setServing(true);
+  }
+
+  private final TptpParserImpl createParserService(final ServerOptions options,
+      final ParserMetrics metrics) throws IOException {
+    final String vocabularyOption = options.getString(ServerOptions.VOCABULARY);
+    // labels come from clients, so the vocabulary is limited
+    final int maxVocabularySize = options.getInt(ServerOptions.MAX_VOCABULARY_SIZE);
+    vocabulary = new GraphVocabulary(maxVocabularySize);
+    if (!vocabularyOption.isEmpty()) {
+      vocabularyFile = Paths.get(vocabularyOption);
+      vocabulary = GraphVocabulary.load(vocabularyFile, maxVocabularySize);
+    }
+    return new TptpParserImpl(options, metrics, vocabulary);
+  }
+
+  private final void startMetricsEndpoint(final int metricsPort, final ParserMetrics metrics)
+      throws IOException {
+    if (metricsPort > 0) {
+      metricsEndpoint = new MetricsEndpoint(metricsPort, metrics);
+      logger.info("Metrics served on " + metricsPort);
+    }
+  }
+
+  /**
+   * Set up the call executor, limits, compression, and interceptors of a server (for any
+   * transport).
+   *
+   * @param builder a server builder
+   * @param options server options
+   * @param service the parsing service
+   * @param metrics metrics to record calls to
+   * @return the same builder
+   */
+  final ServerBuilder<?> configure(final ServerBuilder<?> builder, final ServerOptions options,
+      final ServerServiceDefinition service, final ParserMetrics metrics) {
+    final ServerExecutor serverExecutor =
+        options.getEnum(ServerOptions.EXECUTOR, ServerExecutor.class);
+    final int threads = options.getInt(ServerOptions.THREADS);
+    callExecutor = serverExecutor.create(threads);
+    ServerServiceDefinition interceptedService = service;
+    if (serverExecutor == ServerExecutor.BOUNDED) {
+      final LoadShedder loadShedder = new LoadShedder(callExecutor,
+          threads + options.getInt(ServerOptions.QUEUE_SIZE),
+          options.getLong(ServerOptions.RETRY_AFTER_MS));
+      builder.directExecutor().callExecutor(loadShedder);
+      interceptedService = ServerInterceptors.intercept(service, loadShedder);
+    } else {
+      builder.executor(callExecutor);
+    }
+    // metrics see the calls rejected by load shedding too
+    return builder.maxInboundMessageSize(options.getInt(ServerOptions.MAX_INBOUND_MESSAGE_SIZE))
+        .compressorRegistry(AdaptiveCompression.compressorRegistry())
+        .decompressorRegistry(AdaptiveCompression.decompressorRegistry())
+        .addService(ServerInterceptors.intercept(interceptedService,
+            new AdaptiveCompression(options.getString(ServerOptions.COMPRESSION),
+                options.getInt(ServerOptions.COMPRESSION_THRESHOLD)),
+            new MetricsInterceptor(metrics)));
+  }
+
+  private final ServerServiceDefinition bindService(final TptpParserImpl parserService,
+      final ServerOptions options, final ParserMetrics metrics) throws IOException {
+    final long responseCacheBytes = options.getLong(ServerOptions.CACHE_BYTES);
+    ServerServiceDefinition service = parserService.bindService();
+    if (responseCacheBytes > 0) {
+      final ResponseCache responseCache = new ResponseCache(responseCacheBytes);
+      metrics.addCollector(responseCache::writeMetrics);
+      service = CachingParseTptpMethod.bindService(parserService, responseCache);
+    }
+    final String corpusFolder = options.getString(ServerOptions.CORPUS);
+    if (!corpusFolder.isEmpty()) {
+      service = CorpusProblemMethod.bindService(service, Corpus.open(Paths.get(corpusFolder)));
+    }
+    return service;
+  }
+
+  private final void addShutdownHook() {
     Runtime.getRuntime().addShutdownHook(new Thread() {
       @Override
       public final void run() {
@@ -61,7 +174,26 @@ public final class TptpParserServer {
 
   private final void stop() throws InterruptedException {
     if (server != null) {
-      server.shutdown().awaitTermination(30, TimeUnit.SECONDS);
+      health.drain(server);
+    }
+    if (metricsEndpoint != null) {
+      metricsEndpoint.stop();
+    }
+    if (callExecutor != null) {
+      callExecutor.shutdown();
+    }
+    saveVocabulary();
+  }
+
+  private final void saveVocabulary() {
+    if (vocabularyFile == null) {
+      return;
+    }
+    try {
+      // labels added while serving are kept for the next start
+      vocabulary.save(vocabularyFile);
+    } catch (final IOException e) {
+      e.printStackTrace(System.err);
     }
   }
 
@@ -77,37 +209,244 @@ public final class TptpParserServer {
   /**
    * Launch the server from the command line.
    *
-   * @param args command line arguments (not used)
+   * <p>Options are passed as flags like {@literal --port=50051} or environment variables like
+   * {@literal TPTP_GRPC_PORT=50051}: <ul>
+   *     <li> {@literal pool-size}: the number of parsers working concurrently (defaults to the
+   *     number of processors) </li>
+   *     <li> {@literal cache-bytes}: the maximal total size of cached responses of
+   *     {@code parseTptp} (defaults to zero, i.e. no caching) </li>
+   *     <li> {@literal engine}: {@literal XTEXT} (the default) or {@literal HANDWRITTEN} </li>
+   *     <li> {@literal warm-up-rounds}: the number of warm-up rounds parsing a generated corpus
+   *     before the health service reports serving (defaults to zero, i.e. no warm-up) </li>
+   *     <li> {@literal metrics-port}: the port of the HTTP endpoint serving metrics at
+   *     {@literal /metrics} (defaults to zero, i.e. no endpoint) </li>
+   *     <li> {@literal port}: the port of the gRPC server (defaults to 50051) </li>
+   *     <li> {@literal tptp-path}: the TPTP root folder for included files (defaults to
+   *     {@literal ~/data/TPTP-v8.1.2}) </li>
+   *     <li> {@literal executor}: the executor of calls, {@literal CACHED} (the default),
+   *     {@literal FIXED}, {@literal VIRTUAL}, or {@literal BOUNDED} </li>
+   *     <li> {@literal threads}: the number of threads of {@literal FIXED} and {@literal BOUNDED}
+   *     executors (defaults to the number of processors) </li>
+   *     <li> {@literal queue-size}: the number of calls waiting for a thread of a
+   *     {@literal BOUNDED} executor above which calls are rejected (defaults to 64) </li>
+   *     <li> {@literal retry-after-ms}: the retry hint sent with rejected calls (defaults to
+   *     1000) </li>
+   *     <li> {@literal max-inbound-message-size}: in bytes (defaults to 4 MiB) </li>
+   *     <li> {@literal flow-control-window}: the initial HTTP/2 flow-control window in bytes
+   *     (defaults to 1 MiB) </li>
+   *     <li> {@literal corpus}: a folder with converted shards served by {@code getProblem}
+   *     (defaults to none) </li>
+   *     <li> {@literal conversion-threads}: the size of a fork-join pool converting parts of one
+   *     problem concurrently (defaults to zero, i.e. no pool) </li>
+   *     <li> {@literal compression}: the encoding of large responses, {@literal gzip} (the
+   *     default), {@literal deflate}, or {@literal identity} </li>
+   *     <li> {@literal compression-threshold}: the size in bytes from which responses are
+   *     compressed (defaults to 65536) </li>
+   *     <li> {@literal vocabulary}: the file with labels of graph tensors, saved back when the
+   *     server stops (defaults to none) </li>
+   *     <li> {@literal max-vocabulary-size}: the maximal number of labels of graph tensors
+   *     (defaults to 100000) </li>
+   *     <li> {@literal max-input-bytes}, {@literal max-clauses}, {@literal max-term-depth}, and
+   *     {@literal max-includes}: limits on each problem (default to zero, i.e. no limit) </li>
+   *     </ul>
+   *     The first five options can also be passed as positional arguments in this order. The
+   *     README describes all options in detail.
+   *
+   * @param args options
    * @throws IOException if unable to bind
    * @throws InterruptedException if server process interrupted
    */
   public static final void main(final String[] args) throws IOException, InterruptedException {
     final TptpParserServer server = new TptpParserServer();
-    server.start();
+    server.start(ServerOptions.parse(args, System.getenv()));
     server.blockUntilShutdown();
   }
 
+  /**
+   * Parsing service.
+   *
+   * <p>Concurrent calls share a bounded pool of parsers. When all parsers are busy, a call waits
+   * for the next idle one instead of failing.
+   */
   static final class TptpParserImpl extends TptpParserGrpc.TptpParserImplBase {
-    private final Tptp2Proto tptp2ProtoParser;
+    private static final int WARM_UP_CLAUSE_COUNT = 1000;
+    private static final int WARM_UP_DEPTH = 6;
+
+    private final Tptp2ProtoPool parserPool;
+    private final GraphVocabulary vocabulary;
+    private final ExecutorService executor;
+    private final int parserPoolSize;
 
-    public TptpParserImpl() {
-      final String tptpPath = Paths.get(System.getenv("HOME"), "data", "TPTP-v8.1.2").toString();
-      tptp2ProtoParser = new Tptp2Proto(tptpPath);
+    /**
+     * Constructor.
+     *
+     * @param options the TPTP root folder, the number of parsers, the parser engine, the number of
+     *     threads converting parts of a problem concurrently, and limits of each problem
+     */
+    public TptpParserImpl(final ServerOptions options) {
+      this(options, new ParserMetrics(), new GraphVocabulary());
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param options the TPTP root folder, the number of parsers, the parser engine, the number of
+     *     threads converting parts of a problem concurrently, and limits of each problem
+     * @param metrics metrics to record parsing phases to
+     * @param vocabulary the vocabulary to label graph tensors with
+     */
+    public TptpParserImpl(final ServerOptions options, final ParserMetrics metrics,
+        final GraphVocabulary vocabulary) {
+      final int conversionThreads = options.getInt(ServerOptions.CONVERSION_THREADS);
+      this.parserPoolSize = options.getInt(ServerOptions.POOL_SIZE);
+      this.vocabulary = vocabulary;
+      parserPool = new Tptp2ProtoPool(new ParserConfig(options.getString(ServerOptions.TPTP_PATH))
+          .withParserEngine(options.getEnum(ServerOptions.ENGINE, ParserEngine.class))
+          .withMetrics(metrics)
+          .withConversionPool(conversionThreads > 0 ? new ForkJoinPool(conversionThreads) : null)
+          .withLimits(options.getConversionLimits()), parserPoolSize);
+      executor = Executors.newFixedThreadPool(parserPoolSize,
+          new ThreadFactoryBuilder().setDaemon(true).setNameFormat("tptp-parser-%d").build());
+    }
+
+    /**
+     * Parse a generated corpus on all threads to set up parsers and compile the hot code.
+     *
+     * @param rounds the number of problems to parse per thread (zero for no warm-up)
+     * @throws InterruptedException if interrupted while waiting for the warm-up to finish
+     */
+    final void warmUp(final int rounds) throws InterruptedException {
+      if (rounds == 0) {
+        return;
+      }
+      final long start = System.nanoTime();
+      final String problem =
+          new SyntheticProblems(0, WARM_UP_DEPTH).clauses(WARM_UP_CLAUSE_COUNT);
+      final List<Callable<byte[]>> tasks = new ArrayList<>();
+      for (int i = 0; i < rounds * parserPoolSize; i++) {
+        final ParseRequest request = ParseRequest.newBuilder().setStringMessage(problem)
+            .setFormat(OutputFormat.forNumber(i % 2)).build();
+        tasks.add(() -> ParseRequestObserver.parse(parserPool, vocabulary, request)
+            .toByteArray());
+      }
+      executor.invokeAll(tasks);
+      logger.info("Warmed up in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)
+          + " ms");
     }
 
     @Override
     public final void parseTptp(final StringMessage req,
         final StreamObserver<Node> responseObserver) {
+      respond(responseObserver, () -> responseObserver.onNext(parse(req)));
+    }
+
+    @Override
+    public final void parseTptpClauses(final StringMessage req,
+        final StreamObserver<Node> responseObserver) {
+      respond(responseObserver, () -> {
+        parserPool.getLimits().checkInputBytes(req.getStringMessageBytes().size());
+        parserPool.apply(parser -> {
+          new StreamingConverter(parser).convert(req.getStringMessage(),
+              new FlowControlledSink(responseObserver));
+          return null;
+        });
+      });
+    }
+
+    @Override
+    public final void parseTptpGraph(final StringMessage req,
+        final StreamObserver<GraphTensors> responseObserver) {
+      respond(responseObserver,
+          () -> responseObserver.onNext(GraphTensorCodec.encode(parse(req), vocabulary)));
+    }
+
+    private final Node parse(final StringMessage req)
+        throws IOException, TptpSyntaxErrorException, InterruptedException {
+      // the size is known before decoding the text
+      parserPool.getLimits().checkInputBytes(req.getStringMessageBytes().size());
+      return parserPool.tptp2Proto(new StringReader(req.getStringMessage()));
+    }
+
+    private static final void respond(final StreamObserver<?> responseObserver,
+        final ParserCall call) {
+      try {
+        call.run();
+        responseObserver.onCompleted();
+      } catch (final IOException | TptpSyntaxErrorException e) {
+        responseObserver.onError(errorStatus(e).asException());
+      } catch (final StatusRuntimeException e) {
+        // a cancelled call, a deadline, or a limit
+        responseObserver.onError(e);
+      } catch (final InterruptedException e) {
+        Thread.currentThread().interrupt();
+        responseObserver.onError(io.grpc.Status.CANCELLED.withCause(e).asException());
+      }
+    }
+
+    /**
+     * The status of a call failed with an exception which is not a gRPC one.
+     *
+     * @param t an exception thrown by parsing
+     * @return {@code NOT_FOUND} for a missing included file or {@code INTERNAL} otherwise
+     */
+    private static final io.grpc.Status errorStatus(final Throwable t) {
+      if (t instanceof NoSuchFileException || t instanceof FileNotFoundException) {
+        return io.grpc.Status.NOT_FOUND.withDescription(t.toString());
+      }
+      if (t instanceof TptpSyntaxErrorException) {
+        return io.grpc.Status.INTERNAL.withDescription(t.getMessage());
+      }
+      return io.grpc.Status.INTERNAL.withDescription(t.toString()).withCause(t);
+    }
+
+    @Override
+    public final StreamObserver<ParseRequest> parseTptpStream(
+        final StreamObserver<ParseResponse> responseObserver) {
+      return new ParseRequestObserver(parserPool, vocabulary, executor, responseObserver,
+          parserPoolSize);
+    }
+
+    @Override
+    public final void parseBatch(final BatchRequest req,
+        final StreamObserver<BatchResponse> responseObserver) {
+      final List<Future<ParseResponse>> results = new ArrayList<>();
+      for (int i = 0; i < req.getStringMessageCount(); i++) {
+        final ParseRequest request = ParseRequest.newBuilder().setId(i)
+            .setStringMessage(req.getStringMessage(i)).setFormat(req.getFormat()).build();
+        // the parsing stops if the call is cancelled
+        results.add(executor.submit(Context.current()
+            .wrap(() -> ParseRequestObserver.parse(parserPool, vocabulary, request))));
+      }
       try {
-        responseObserver
-            .onNext(tptp2ProtoParser.tptp2Proto(new StringReader(req.getStringMessage())));
+        responseObserver.onNext(collectBatch(results));
         responseObserver.onCompleted();
-      } catch (final IOException e) {
-        logger.severe(e.getMessage());
-      } catch (final TptpSyntaxErrorException e) {
-        responseObserver
-            .onError(io.grpc.Status.INTERNAL.withDescription(e.getMessage()).asException());
+      } catch (final ExecutionException e) {
+        responseObserver.onError(e.getCause() instanceof StatusRuntimeException ? e.getCause()
+            : errorStatus(e.getCause()).asException());
+      } catch (final InterruptedException e) {
+        Thread.currentThread().interrupt();
+        responseObserver.onError(io.grpc.Status.CANCELLED.withCause(e).asException());
+      } finally {
+        // after a failure, the other problems would hold parsers for a dead call
+        results.forEach(result -> result.cancel(true));
+      }
+    }
+
+    private static final BatchResponse collectBatch(final List<Future<ParseResponse>> results)
+        throws InterruptedException, ExecutionException {
+      final BatchResponse.Builder response = BatchResponse.newBuilder();
+      for (final Future<ParseResponse> result : results) {
+        response.addResponse(result.get());
       }
+      return response.build();
+    }
+
+    /**
+     * A parsing call sending its results to a response observer.
+     */
+    @FunctionalInterface
+    private interface ParserCall {
+      void run() throws IOException, TptpSyntaxErrorException, InterruptedException;
     }
   }
 }
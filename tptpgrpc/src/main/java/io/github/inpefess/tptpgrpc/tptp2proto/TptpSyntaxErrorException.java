@@ -20,6 +20,9 @@ package io.github.inpefess.tptpgrpc.tptp2proto;
  * TPTP syntax error.
  */
 public class TptpSyntaxErrorException extends Exception {
+  private final int line;
+  private final int column;
+
   /**
    * Constructor.
    *
@@ -27,5 +30,38 @@ public class TptpSyntaxErrorException extends Exception {
    */
   public TptpSyntaxErrorException(String errorMessage) {
     super(errorMessage);
+    line = 0;
+    column = 0;
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param errorMessage error message
+   * @param line the line of the error (starting from one)
+   * @param column the column of the error (starting from one)
+   */
+  public TptpSyntaxErrorException(String errorMessage, int line, int column) {
+    super("line " + line + ", column " + column + ": " + errorMessage);
+    this.line = line;
+    this.column = column;
+  }
+
+  /**
+   * The line of the error.
+   *
+   * @return the line starting from one or zero if unknown
+   */
+  public final int getLine() {
+    return line;
+  }
+
+  /**
+   * The column of the error.
+   *
+   * @return the column starting from one or zero if unknown
+   */
+  public final int getColumn() {
+    return column;
   }
 }
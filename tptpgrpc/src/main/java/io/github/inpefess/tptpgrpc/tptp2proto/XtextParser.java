@@ -0,0 +1,102 @@
+/*
+ *  Copyright 2023 Boris Shminke
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+
+package io.github.inpefess.tptpgrpc.tptp2proto;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.function.Consumer;
+import com.google.inject.Inject;
+import com.google.inject.Injector;
+import com.theoremsandstuff.tptp.ParserStandaloneSetup;
+import com.theoremsandstuff.tptp.parser.cnf_or;
+import com.theoremsandstuff.tptp.parser.cnf_root;
+import com.theoremsandstuff.tptp.parser.include;
+import io.github.inpefess.tptpgrpc.tptpproto.Node;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.xtext.nodemodel.INode;
+import org.eclipse.xtext.nodemodel.util.NodeModelUtils;
+import org.eclipse.xtext.parser.IParseResult;
+import org.eclipse.xtext.parser.IParser;
+import org.eclipse.xtext.util.LineAndColumn;
+
+/**
+ * Xtext parser engine of {@link Tptp2Proto}.
+ *
+ * <p>The injected Xtext parser is stateful, so an instance must not be used by several threads at
+ * once.
+ */
+final class XtextParser {
+  @Inject
+  private IParser parser;
+
+  /**
+   * Constructor.
+   */
+  XtextParser() {
+    InjectorHolder.INJECTOR.injectMembers(this);
+  }
+
+  /**
+   * Parse a TPTP problem into the Xtext AST.
+   *
+   * @param reader a reader of a TPTP problem
+   * @return the root of the AST
+   * @throws TptpSyntaxErrorException on syntax error
+   */
+  final EObject parseAst(final Reader reader) throws TptpSyntaxErrorException {
+    final IParseResult parseResult = parser.parse(reader);
+    if (parseResult.hasSyntaxErrors()) {
+      final INode error = parseResult.getSyntaxErrors().iterator().next();
+      final LineAndColumn position = NodeModelUtils.getLineAndColumn(error, error.getOffset());
+      throw new TptpSyntaxErrorException(error.getSyntaxErrorMessage().getMessage(),
+          position.getLine(), position.getColumn());
+    }
+    return parseResult.getRootASTElement();
+  }
+
+  /**
+   * Convert the AST passing its clauses and included files one by one.
+   *
+   * @param ast the root of the AST
+   * @param clauseConverter a converter of clauses
+   * @param clauses a consumer of quantified clauses
+   * @param includes a handler of included files
+   * @throws IOException if the include handler fails
+   * @throws TptpSyntaxErrorException if the include handler fails
+   */
+  final void convert(final EObject ast, final ClauseConverter clauseConverter,
+      final Consumer<Node> clauses, final CnfParser.IncludeHandler includes)
+      throws IOException, TptpSyntaxErrorException {
+    for (final EObject entry : ast.eContents()) {
+      if (entry instanceof cnf_root) {
+        final cnf_or clause = ((cnf_root) entry).getExp().getDisjunction();
+        clauses.accept(clauseConverter.convertClause(clause));
+      }
+      if (entry instanceof include) {
+        includes.include(((include) entry).getPath());
+      }
+    }
+  }
+
+  /**
+   * The Xtext injector, created (with EMF registration) once per JVM on first use.
+   */
+  private static final class InjectorHolder {
+    private static final Injector INJECTOR =
+        new ParserStandaloneSetup().createInjectorAndDoEMFRegistration();
+  }
+}
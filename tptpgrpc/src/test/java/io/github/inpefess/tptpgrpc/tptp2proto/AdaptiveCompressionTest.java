@@ -0,0 +1,125 @@
+/*
+ *  Copyright 2023 Boris Shminke
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+
+package io.github.inpefess.tptpgrpc.tptp2proto;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptor;
+import io.grpc.ClientInterceptors;
+import io.grpc.ClientStreamTracer;
+import io.grpc.ManagedChannel;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Server;
+import io.grpc.netty.shaded.io.grpc.netty.NettyChannelBuilder;
+import io.grpc.netty.shaded.io.grpc.netty.NettyServerBuilder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test compression of large responses over a real transport (in-process calls aren't framed).
+ */
+public final class AdaptiveCompressionTest {
+  private final AtomicLong wireBytes = new AtomicLong();
+  private final AtomicLong uncompressedBytes = new AtomicLong();
+  private Server server;
+  private ManagedChannel channel;
+  private TptpGrpcClient client;
+
+  /**
+   * Start a server compressing responses of at least 1000 bytes and connect a client to it.
+   *
+   * @throws IOException if unable to start the server
+   */
+  @BeforeEach
+  public final void setUp() throws IOException {
+    final ParserMetrics metrics = new ParserMetrics();
+    server = new TptpParserServer().configure(NettyServerBuilder.forPort(0),
+        ServerOptions.parse(new String[] {"--compression=deflate", "--compression-threshold=1000"},
+            Collections.emptyMap()),
+        new TptpParserServer.TptpParserImpl(ServerOptions.parse(
+            new String[] {"2", "0", "HANDWRITTEN"}, Collections.emptyMap()), metrics,
+            new GraphVocabulary()).bindService(),
+        metrics).build().start();
+    channel = NettyChannelBuilder.forAddress("localhost", server.getPort()).usePlaintext()
+        .compressorRegistry(AdaptiveCompression.compressorRegistry())
+        .decompressorRegistry(AdaptiveCompression.decompressorRegistry()).build();
+    client = new TptpGrpcClient(ClientInterceptors.intercept(channel,
+        new AdaptiveCompression(DeflateCodec.ENCODING, 1000), new InboundSizes()));
+  }
+
+  @AfterEach
+  public final void tearDown() throws InterruptedException {
+    channel.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+    server.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+  }
+
+  @Test
+  public final void smallResponseTest() {
+    client.parseTptp("cnf(test, axiom, p(X)).");
+    assertTrue(wireBytes.get() > 0);
+    assertEquals(uncompressedBytes.get(), wireBytes.get());
+  }
+
+  @Test
+  public final void largeResponseTest() {
+    // a large request is compressed as well
+    client.parseTptp(new SyntheticProblems(0, 4).clauses(1000));
+    assertTrue(3 * wireBytes.get() < uncompressedBytes.get(),
+        wireBytes + " bytes vs " + uncompressedBytes + " bytes");
+  }
+
+  @Test
+  public final void unknownEncodingTest() {
+    assertThrows(IllegalArgumentException.class, () -> new AdaptiveCompression("zstd", 0));
+  }
+
+  private final class InboundSizes implements ClientInterceptor {
+    @Override
+    public <ReqT, RespT> ClientCall<ReqT, RespT> interceptCall(
+        final MethodDescriptor<ReqT, RespT> method, final CallOptions callOptions,
+        final Channel next) {
+      return next.newCall(method,
+          callOptions.withStreamTracerFactory(new ClientStreamTracer.Factory() {
+            @Override
+            public ClientStreamTracer newClientStreamTracer(
+                final ClientStreamTracer.StreamInfo info, final Metadata headers) {
+              return new ClientStreamTracer() {
+                @Override
+                public void inboundWireSize(final long bytes) {
+                  wireBytes.addAndGet(bytes);
+                }
+
+                @Override
+                public void inboundUncompressedSize(final long bytes) {
+                  uncompressedBytes.addAndGet(bytes);
+                }
+              };
+            }
+          }));
+    }
+  }
+}
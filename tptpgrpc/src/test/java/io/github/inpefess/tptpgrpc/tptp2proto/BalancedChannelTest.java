@@ -0,0 +1,204 @@
+/*
+ *  Copyright 2023 Boris Shminke
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+
+package io.github.inpefess.tptpgrpc.tptp2proto;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import io.github.inpefess.tptpgrpc.tptpproto.ParseRequest;
+import io.github.inpefess.tptpgrpc.tptpproto.ParseResponse;
+import io.github.inpefess.tptpgrpc.tptpproto.TptpParserGrpc;
+import io.grpc.ClientInterceptors;
+import io.grpc.ManagedChannel;
+import io.grpc.Metadata;
+import io.grpc.Server;
+import io.grpc.ServerInterceptors;
+import io.grpc.health.v1.HealthCheckRequest;
+import io.grpc.health.v1.HealthCheckResponse.ServingStatus;
+import io.grpc.health.v1.HealthGrpc;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.MetadataUtils;
+import io.grpc.stub.StreamObserver;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test balancing calls between several in-process servers with health checking.
+ */
+public final class BalancedChannelTest {
+  private static final String PROBLEM = "cnf(test, axiom, p(X)).";
+  private static final int SERVER_COUNT = 3;
+  private static final HealthCheckRequest HEALTH_REQUEST =
+      HealthCheckRequest.newBuilder().setService(TptpParserGrpc.SERVICE_NAME).build();
+  private final List<String> serverNames = new ArrayList<>();
+  private final List<Server> servers = new ArrayList<>();
+  private final List<ServerHealth> healths = new ArrayList<>();
+  private final List<ParserMetrics> metrics = new ArrayList<>();
+  // no load checks during a test
+  private static final long NO_LOAD_CHECKS = TimeUnit.HOURS.toMillis(1);
+  private static final StreamObserver<ParseResponse> IGNORED_RESPONSES =
+      new StreamObserver<ParseResponse>() {
+        @Override
+        public void onNext(final ParseResponse response) {
+        }
+
+        @Override
+        public void onError(final Throwable t) {
+        }
+
+        @Override
+        public void onCompleted() {
+        }
+      };
+  private ManagedChannel channel;
+
+  /**
+   * Start in-process servers reporting serving.
+   *
+   * @throws IOException if unable to start a server
+   */
+  @BeforeEach
+  public final void setUp() throws IOException {
+    for (int i = 0; i < SERVER_COUNT; i++) {
+      final ParserMetrics serverMetrics = new ParserMetrics();
+      final ServerHealth health = new ServerHealth(serverMetrics);
+      health.setServing(true);
+      serverNames.add(startServer(serverMetrics, health));
+      healths.add(health);
+      metrics.add(serverMetrics);
+    }
+  }
+
+  private final String startServer(final ParserMetrics serverMetrics, final ServerHealth health)
+      throws IOException {
+    final String serverName = InProcessServerBuilder.generateName();
+    servers.add(InProcessServerBuilder.forName(serverName).directExecutor()
+        .addService(ServerInterceptors.intercept(
+            new TptpParserServer.TptpParserImpl(ServerOptions.parse(
+                new String[] {"1", "0", "HANDWRITTEN"}, Collections.emptyMap()), serverMetrics,
+                new GraphVocabulary()).bindService(),
+            new MetricsInterceptor(serverMetrics)))
+        .addService(health.bindService()).build().start());
+    return serverName;
+  }
+
+  private final ManagedChannel connect(final BalancingPolicy policy, final long loadCheckMillis) {
+    final List<ManagedChannel> channels = new ArrayList<>();
+    serverNames.forEach(
+        serverName -> channels.add(InProcessChannelBuilder.forName(serverName).directExecutor()
+            .build()));
+    channel = new BalancedChannel(channels, policy, loadCheckMillis);
+    return channel;
+  }
+
+  /**
+   * Shut the channel and the servers down.
+   *
+   * @throws InterruptedException if interrupted while waiting for termination
+   */
+  @AfterEach
+  public final void tearDown() throws InterruptedException {
+    if (channel != null) {
+      channel.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+    }
+    for (final Server server : servers) {
+      server.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+    }
+  }
+
+  private final List<Integer> parseTptpCalls(final int count) {
+    final TptpGrpcClient client = new TptpGrpcClient(channel);
+    for (int i = 0; i < count; i++) {
+      client.parseTptp(PROBLEM);
+    }
+    final List<Integer> calls = new ArrayList<>();
+    for (final ParserMetrics serverMetrics : metrics) {
+      final String sample = "tptp_calls_total{method=\"parseTptp\",code=\"OK\"} ";
+      final String scrape = serverMetrics.scrape();
+      final int start = scrape.indexOf(sample);
+      calls.add(start < 0 ? 0 : Integer.parseInt(
+          scrape.substring(start + sample.length(), scrape.indexOf('\n', start))));
+    }
+    return calls;
+  }
+
+  @Test
+  public final void roundRobinTest() {
+    connect(BalancingPolicy.ROUND_ROBIN, NO_LOAD_CHECKS);
+    assertEquals(List.of(2, 2, 2), parseTptpCalls(6));
+  }
+
+  @Test
+  public final void ejectionTest() throws InterruptedException {
+    connect(BalancingPolicy.ROUND_ROBIN, NO_LOAD_CHECKS);
+    healths.get(0).setServing(false);
+    assertEquals(List.of(0, 2, 2), parseTptpCalls(4));
+    servers.get(1).shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+    assertEquals(List.of(0, 2, 6), parseTptpCalls(4));
+    healths.get(0).setServing(true);
+    assertEquals(List.of(2, 2, 8), parseTptpCalls(4));
+  }
+
+  @Test
+  public final void leastRequestTest() {
+    connect(BalancingPolicy.LEAST_REQUEST, NO_LOAD_CHECKS);
+    // an open stream keeps a call in flight on the first server
+    final StreamObserver<ParseRequest> stream =
+        TptpParserGrpc.newStub(channel).parseTptpStream(IGNORED_RESPONSES);
+    assertEquals(0, parseTptpCalls(4).get(0));
+    stream.onCompleted();
+    assertEquals(1, parseTptpCalls(3).get(0));
+  }
+
+  @Test
+  public final void reportedLoadTest() throws InterruptedException {
+    // another client keeps a call in flight on the first server
+    final ManagedChannel otherClient =
+        InProcessChannelBuilder.forName(serverNames.get(0)).directExecutor().build();
+    final StreamObserver<ParseRequest> stream =
+        TptpParserGrpc.newStub(otherClient).parseTptpStream(IGNORED_RESPONSES);
+    connect(BalancingPolicy.LEAST_REQUEST, 10);
+    Thread.sleep(200);
+    assertEquals(0, parseTptpCalls(4).get(0));
+    stream.onCompleted();
+    otherClient.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+  }
+
+  @Test
+  public final void healthTest() throws IOException {
+    final ServerHealth health = new ServerHealth(metrics.get(0));
+    final AtomicReference<Metadata> headers = new AtomicReference<>();
+    channel = InProcessChannelBuilder.forName(startServer(metrics.get(0), health))
+        .directExecutor().build();
+    final HealthGrpc.HealthBlockingStub stub = HealthGrpc.newBlockingStub(ClientInterceptors
+        .intercept(channel, MetadataUtils.newCaptureMetadataInterceptor(headers,
+            new AtomicReference<>())));
+    // not ready before the warm-up
+    assertEquals(ServingStatus.NOT_SERVING, stub.check(HEALTH_REQUEST).getStatus());
+    health.setServing(true);
+    assertEquals(ServingStatus.SERVING, stub.check(HEALTH_REQUEST).getStatus());
+    assertEquals("0", headers.get().get(ServerHealth.CALLS_IN_FLIGHT_KEY));
+    health.shutdown();
+    assertEquals(ServingStatus.NOT_SERVING, stub.check(HEALTH_REQUEST).getStatus());
+  }
+}
@@ -0,0 +1,145 @@
+/*
+ *  Copyright 2023 Boris Shminke
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+
+package io.github.inpefess.tptpgrpc.tptp2proto;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import io.github.inpefess.tptpgrpc.tptpproto.GraphTensors;
+import io.github.inpefess.tptpgrpc.tptpproto.Node;
+import io.github.inpefess.tptpgrpc.tptpproto.OutputFormat;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Test converting a list of TPTP problems in parallel.
+ */
+public final class BatchConverterTest {
+  private static final FileTime UNCHANGED = FileTime.fromMillis(0);
+  @TempDir
+  Path outputFolder;
+
+  @Test
+  public final void convertTest() throws IOException, InterruptedException {
+    final String testProblem =
+        this.getClass().getResource("/TPTP-mock/Problems/TST/TST001-1.p").getPath();
+    final Path brokenProblem = outputFolder.resolve("broken.p");
+    Files.writeString(brokenProblem, "cnf(test, axiom, p(X).");
+    final BatchConverter batchConverter =
+        new BatchConverter(this.getClass().getResource("/TPTP-mock").getPath(), 2);
+    final int failureCount = batchConverter.convert(
+        Arrays.asList(testProblem, brokenProblem.toString(), testProblem), outputFolder);
+    assertEquals(1, failureCount);
+    assertOutput(0);
+    assertOutput(2);
+    assertFalse(Files.exists(outputFolder.resolve("1.pb")));
+    assertTrue(
+        Files.readString(outputFolder.resolve("1.error")).startsWith(brokenProblem.toString()));
+  }
+
+  @Test
+  public final void runtimeFailureTest() throws IOException, InterruptedException {
+    final String testProblem =
+        this.getClass().getResource("/TPTP-mock/Problems/TST/TST001-1.p").getPath();
+    // a limit fails with an unchecked exception
+    final BatchConverter batchConverter = new BatchConverter(
+        handwritten(this.getClass().getResource("/TPTP-mock").getPath())
+            .withLimits(new ConversionLimits(0, 1, 0, 0)),
+        1, OutputFormat.TREE, 0, false);
+    assertEquals(1, batchConverter.convert(Arrays.asList(testProblem), outputFolder));
+    assertTrue(Files.readString(outputFolder.resolve("0.error")).contains("RESOURCE_EXHAUSTED"));
+  }
+
+  @Test
+  public final void corpusTest() throws IOException, InterruptedException {
+    final String testProblem =
+        this.getClass().getResource("/TPTP-mock/Problems/TST/TST001-1.p").getPath();
+    final BatchConverter batchConverter =
+        new BatchConverter(handwritten(this.getClass().getResource("/TPTP-mock").getPath()), 2,
+            OutputFormat.TREE, 1, false);
+    assertEquals(1, batchConverter.convert(
+        Arrays.asList(testProblem, "missing.p", testProblem), outputFolder));
+    final Corpus corpus = Corpus.open(outputFolder);
+    assertEquals(2, corpus.size());
+    assertEquals(testProblem, corpus.getName(1));
+    assertEquals(Node.parseFrom(this.getClass().getResourceAsStream("/test.pb")),
+        corpus.getNode(1));
+    assertTrue(Files.exists(outputFolder.resolve("1.error")));
+  }
+
+  @Test
+  public final void graphTest() throws IOException, InterruptedException {
+    final String testProblem =
+        this.getClass().getResource("/TPTP-mock/Problems/TST/TST001-1.p").getPath();
+    final BatchConverter batchConverter =
+        new BatchConverter(handwritten(this.getClass().getResource("/TPTP-mock").getPath()), 1,
+            OutputFormat.GRAPH, 0, false);
+    assertEquals(0, batchConverter.convert(Arrays.asList(testProblem), outputFolder));
+    final byte[] graphTensors = Files.readAllBytes(outputFolder.resolve("0.pb"));
+    assertEquals(Node.parseFrom(this.getClass().getResourceAsStream("/test.pb")),
+        GraphTensorCodec.decode(GraphTensors.parseFrom(graphTensors),
+            GraphVocabulary.load(outputFolder.resolve(GraphVocabulary.FILE_NAME))));
+    // the next conversion takes labels from the same vocabulary
+    assertEquals(0, batchConverter.convert(Arrays.asList(testProblem), outputFolder));
+    assertArrayEquals(graphTensors, Files.readAllBytes(outputFolder.resolve("0.pb")));
+  }
+
+  @Test
+  public final void incrementalTest() throws IOException, InterruptedException {
+    final Path tptpRoot = Files.createDirectory(outputFolder.resolve("TPTP"));
+    final Path axioms = copyAxioms(tptpRoot);
+    final Path output = Files.createDirectory(outputFolder.resolve("output"));
+    assertEquals(0, convertIncrementally(tptpRoot, output));
+    Files.setLastModifiedTime(output.resolve("0.pb"), UNCHANGED);
+    assertEquals(0, convertIncrementally(tptpRoot, output));
+    assertEquals(UNCHANGED, Files.getLastModifiedTime(output.resolve("0.pb")));
+    Files.writeString(axioms, "cnf(test_axiom, axiom, h(B)).");
+    assertEquals(0, convertIncrementally(tptpRoot, output));
+    assertNotEquals(UNCHANGED, Files.getLastModifiedTime(output.resolve("0.pb")));
+  }
+
+  private final Path copyAxioms(final Path tptpRoot) throws IOException {
+    final Path axioms = Files.createDirectory(tptpRoot.resolve("Axioms")).resolve("TST001-1.ax");
+    Files.copy(Path.of(this.getClass().getResource("/TPTP-mock/Axioms/TST001-1.ax").getPath()),
+        axioms);
+    return axioms;
+  }
+
+  private final int convertIncrementally(final Path tptpRoot, final Path output)
+      throws IOException, InterruptedException {
+    final String testProblem =
+        this.getClass().getResource("/TPTP-mock/Problems/TST/TST001-1.p").getPath();
+    return new BatchConverter(handwritten(tptpRoot.toString()), 1, OutputFormat.TREE, 0, true)
+        .convert(Arrays.asList(testProblem), output);
+  }
+
+  private static final ParserConfig handwritten(final String tptpPath) {
+    return new ParserConfig(tptpPath).withParserEngine(ParserEngine.HANDWRITTEN);
+  }
+
+  private final void assertOutput(final int fileIndex) throws IOException {
+    assertEquals(Node.parseFrom(this.getClass().getResourceAsStream("/test.pb")),
+        Node.parseFrom(Files.readAllBytes(outputFolder.resolve(fileIndex + ".pb"))));
+  }
+}
@@ -0,0 +1,66 @@
+/*
+ *  Copyright 2023 Boris Shminke
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+
+package io.github.inpefess.tptpgrpc.tptp2proto;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import com.theoremsandstuff.tptp.parser.cnf_or;
+import com.theoremsandstuff.tptp.parser.cnf_root;
+import io.github.inpefess.tptpgrpc.tptpproto.Node;
+import org.eclipse.emf.ecore.EObject;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Compare the single-pass clause converter with the original recursive one (their allocations are
+ * compared by {@code ParseBenchmark} with the GC profiler).
+ */
+public final class ClauseConverterTest {
+  private static final List<cnf_or> clauses = new ArrayList<>();
+
+  /**
+   * Parse a generated problem with deeply nested terms.
+   *
+   * @throws TptpSyntaxErrorException on syntax error
+   */
+  @BeforeAll
+  public static final void parseClauses() throws TptpSyntaxErrorException {
+    final EObject ast = new Tptp2Proto("")
+        .parseAst(new StringReader(SyntheticProblems.nestedClauses(50, 30)));
+    for (final EObject entry : ast.eContents()) {
+      clauses.add(((cnf_root) entry).getExp().getDisjunction());
+    }
+  }
+
+  @Test
+  public final void sameOutputTest() {
+    final Set<String> functionAndPredicateNames = new HashSet<>();
+    final ClauseConverter clauseConverter = new ClauseConverter(functionAndPredicateNames);
+    final LegacyClauseConverter legacyClauseConverter = new LegacyClauseConverter();
+    final Set<String> legacyFunctionAndPredicateNames = new HashSet<>();
+    for (final cnf_or clause : clauses) {
+      final ParsingResult legacyClause = legacyClauseConverter.transform_clause(clause);
+      legacyFunctionAndPredicateNames.addAll(legacyClause.functionAndPredicateNames);
+      assertEquals(legacyClause.nodeBuilder.build(), clauseConverter.convertClause(clause));
+    }
+    assertEquals(legacyFunctionAndPredicateNames, functionAndPredicateNames);
+  }
+}
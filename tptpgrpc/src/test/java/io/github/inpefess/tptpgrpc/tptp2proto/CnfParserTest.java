@@ -0,0 +1,86 @@
+/*
+ *  Copyright 2023 Boris Shminke
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+
+package io.github.inpefess.tptpgrpc.tptp2proto;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.stream.Collectors;
+import io.github.inpefess.tptpgrpc.tptpproto.Node;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test the hand-written CNF parser.
+ */
+public final class CnfParserTest {
+  // quoted, numeric and defined symbols
+  private static final String SYMBOLS = "cnf('e', axiom, 'f g'(X, 'it\\'s', \"an object\") = c"
+      + " | $less(-1, 2.5) | p(1/2, -3.0E-2, +4, 5e6) | 'q').";
+  private final String tptpPath = this.getClass().getResource("/TPTP-mock").getPath();
+
+  private final Tptp2Proto handwritten() {
+    return new Tptp2Proto(new ParserConfig(tptpPath).withIncludeCache(new IncludeCache(1))
+        .withParserEngine(ParserEngine.HANDWRITTEN));
+  }
+
+  @Test
+  public final void testProblemTest() throws IOException, TptpSyntaxErrorException {
+    assertEquals(
+        handwritten().tptp2Proto(new InputStreamReader(
+            this.getClass().getResourceAsStream("/TPTP-mock/Problems/TST/TST001-1.p"))),
+        Node.parseFrom(this.getClass().getResourceAsStream("/test.pb")));
+  }
+
+  @Test
+  public final void sameOutputTest() throws IOException, TptpSyntaxErrorException {
+    final StringBuilder problem = new StringBuilder("% a comment. with a full stop\n")
+        .append(SyntheticProblems.nestedClauses(50, 30))
+        .append("/* fof(skipped, axiom, p). */ fof(skipped, axiom, ![X]: (p(X) => q(X))).\n")
+        .append("cnf(d, negated_conjecture, (~ $true | r), inference(a, [status(thm)], [c0])).\n")
+        .append(SYMBOLS);
+    assertEquals(new Tptp2Proto(tptpPath).tptp2Proto(new StringReader(problem.toString())),
+        handwritten().tptp2Proto(new StringReader(problem.toString())));
+  }
+
+  @Test
+  public final void symbolsTest() throws IOException, TptpSyntaxErrorException {
+    final Node problem = handwritten().tptp2Proto(new StringReader(SYMBOLS));
+    // the existential quantifier over symbols, then the conjunction of clauses
+    final Node clause = problem.getChild(problem.getChildCount() - 1).getChild(0);
+    final Node disjunction = clause.getChild(clause.getChildCount() - 1);
+    assertEquals("f g", disjunction.getChild(0).getChild(0).getValue());
+    assertEquals(Arrays.asList("X", "it's", "\"an object\""),
+        disjunction.getChild(0).getChild(0).getChildList().stream().map(Node::getValue)
+            .collect(Collectors.toList()));
+    assertEquals("-1", disjunction.getChild(1).getChild(0).getValue());
+    assertEquals(Arrays.asList("1/2", "-3.0E-2", "+4", "5e6"), disjunction.getChild(2)
+        .getChildList().stream().map(Node::getValue).collect(Collectors.toList()));
+    assertEquals("q", disjunction.getChild(3).getValue());
+  }
+
+  @Test
+  public final void syntaxErrorTest() {
+    final TptpSyntaxErrorException error = assertThrows(TptpSyntaxErrorException.class,
+        () -> handwritten()
+            .tptp2Proto(new StringReader("cnf(a, axiom, p(X)).\n\ncnf(b, axiom, p(X) q).")));
+    assertEquals(3, error.getLine());
+    assertEquals(20, error.getColumn());
+  }
+}
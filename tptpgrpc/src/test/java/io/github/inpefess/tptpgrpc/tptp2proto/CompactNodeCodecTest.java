@@ -0,0 +1,39 @@
+/*
+ *  Copyright 2023 Boris Shminke
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+
+package io.github.inpefess.tptpgrpc.tptp2proto;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.io.IOException;
+import io.github.inpefess.tptpgrpc.tptpproto.CompactNode;
+import io.github.inpefess.tptpgrpc.tptpproto.Node;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test converting trees to the compact form and back.
+ */
+public final class CompactNodeCodecTest {
+  @Test
+  public final void roundTripTest() throws IOException {
+    final Node node = Node.parseFrom(this.getClass().getResourceAsStream("/test.pb"));
+    final CompactNode compactNode = CompactNodeCodec.encode(node);
+    assertEquals(node, CompactNodeCodec.decode(compactNode));
+    assertEquals(compactNode.getSymbolIdCount(), compactNode.getChildCountCount());
+    assertTrue(compactNode.getSymbolCount() < compactNode.getSymbolIdCount());
+    assertTrue(compactNode.getSerializedSize() < node.getSerializedSize());
+  }
+}
@@ -0,0 +1,184 @@
+/*
+ *  Copyright 2023 Boris Shminke
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+
+package io.github.inpefess.tptpgrpc.tptp2proto;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import io.github.inpefess.tptpgrpc.tptpproto.ParseResponse;
+import io.grpc.Context;
+import io.grpc.Deadline;
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Test limits of problems and stopping the conversion of cancelled calls.
+ */
+public final class ConversionLimitsTest {
+  private static final String PROBLEM = "cnf(a, axiom, p(f(X))).\ncnf(b, axiom, q(X)).";
+  @TempDir
+  Path tptpFolder;
+  private Server server;
+  private ManagedChannel channel;
+
+  private final Tptp2ProtoPool parserPool(final ConversionLimits limits) {
+    return new Tptp2ProtoPool(new ParserConfig(this.getClass().getResource("/TPTP-mock").getPath())
+        .withParserEngine(ParserEngine.HANDWRITTEN).withLimits(limits), 1);
+  }
+
+  private static final Status.Code code(final Tptp2ProtoPool parserPool, final String problem) {
+    return assertThrows(StatusRuntimeException.class,
+        () -> parserPool.tptp2Proto(new StringReader(problem))).getStatus().getCode();
+  }
+
+  @Test
+  public final void limitsTest() throws IOException, InterruptedException,
+      TptpSyntaxErrorException {
+    assertEquals(Status.Code.RESOURCE_EXHAUSTED,
+        code(parserPool(new ConversionLimits(0, 1, 0, 0)), PROBLEM));
+    assertEquals(Status.Code.RESOURCE_EXHAUSTED,
+        code(parserPool(new ConversionLimits(0, 0, 2, 0)), PROBLEM));
+    final Tptp2ProtoPool parserPool = parserPool(new ConversionLimits(0, 2, 4, 0));
+    assertEquals(parserPool(ConversionLimits.NONE).tptp2Proto(new StringReader(PROBLEM)),
+        parserPool.tptp2Proto(new StringReader(PROBLEM)));
+    // an included clause is counted once
+    parserPool.tptp2Proto(new InputStreamReader(
+        this.getClass().getResourceAsStream("/TPTP-mock/Problems/TST/TST001-1.p")));
+  }
+
+  @Test
+  public final void includeCountTest() throws IOException, InterruptedException,
+      TptpSyntaxErrorException {
+    final String problem = new SyntheticProblems(0, 2).writeProblemWithIncludes(tptpFolder, 3, 2);
+    final ForkJoinPool conversionPool = new ForkJoinPool(2);
+    for (final ForkJoinPool pool : Arrays.asList(null, conversionPool)) {
+      final ParserConfig config = new ParserConfig(tptpFolder.toString())
+          .withParserEngine(ParserEngine.HANDWRITTEN).withConversionPool(pool);
+      assertEquals(Status.Code.RESOURCE_EXHAUSTED, code(new Tptp2ProtoPool(
+          config.withLimits(new ConversionLimits(0, 0, 0, 2)), 1), problem));
+      // the same file included twice counts once
+      new Tptp2ProtoPool(config.withLimits(new ConversionLimits(0, 0, 0, 3)), 1).tptp2Proto(
+              new StringReader(problem + "include('Axioms/SYN000-0.ax').\n"));
+    }
+    conversionPool.shutdown();
+  }
+
+  @Test
+  public final void streamingTest() throws IOException, InterruptedException,
+      TptpSyntaxErrorException {
+    new SyntheticProblems(0, 2).writeProblemWithIncludes(tptpFolder, 2, 2);
+    final Tptp2ProtoPool parserPool = new Tptp2ProtoPool(new ParserConfig(tptpFolder.toString())
+        .withParserEngine(ParserEngine.HANDWRITTEN).withLimits(new ConversionLimits(0, 0, 0, 1)),
+        1);
+    // the same parser streams both problems, each of them includes one file
+    for (final String axioms : Arrays.asList("SYN000-0", "SYN000-1")) {
+      parserPool.apply(parser -> {
+        new StreamingConverter(parser).convert("include('Axioms/" + axioms + ".ax').\n" + PROBLEM,
+            node -> { });
+        return null;
+      });
+    }
+  }
+
+  @Test
+  public final void cancellationTest() throws Exception {
+    final Tptp2ProtoPool parserPool = parserPool(ConversionLimits.NONE);
+    final Context.CancellableContext cancelled = Context.current().withCancellation();
+    cancelled.cancel(null);
+    assertEquals(Status.Code.CANCELLED, cancelled.call(() -> code(parserPool, PROBLEM)));
+    // a shared included file is parsed even if the call which started parsing it is cancelled
+    assertDoesNotThrow(
+        () -> new ConversionGuard(ConversionLimits.NONE, cancelled).forInclude().checkCancelled());
+    final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    final Context.CancellableContext expired = Context.current()
+        .withDeadline(Deadline.after(0, TimeUnit.NANOSECONDS), scheduler);
+    assertEquals(Status.Code.DEADLINE_EXCEEDED, expired.call(() -> code(parserPool, PROBLEM)));
+    scheduler.shutdown();
+    // the parser is returned to the pool
+    assertEquals(parserPool(ConversionLimits.NONE).tptp2Proto(new StringReader(PROBLEM)),
+        parserPool.tptp2Proto(new StringReader(PROBLEM)));
+  }
+
+  /**
+   * Stop the in-process server if a test started one.
+   *
+   * @throws InterruptedException if interrupted while waiting for termination
+   */
+  @AfterEach
+  public final void tearDown() throws InterruptedException {
+    if (server != null) {
+      channel.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+      server.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+    }
+  }
+
+  @Test
+  public final void serviceTest() throws IOException {
+    final String serverName = InProcessServerBuilder.generateName();
+    server = InProcessServerBuilder.forName(serverName).directExecutor()
+        .addService(new TptpParserServer.TptpParserImpl(ServerOptions.parse(
+            new String[] {"1", "0", "HANDWRITTEN", "--max-input-bytes=30"},
+            Collections.emptyMap())))
+        .build().start();
+    channel = InProcessChannelBuilder.forName(serverName).build();
+    final TptpGrpcClient client = new TptpGrpcClient(channel);
+    assertEquals(Status.Code.RESOURCE_EXHAUSTED, assertThrows(StatusRuntimeException.class,
+        () -> client.parseTptp(PROBLEM)).getStatus().getCode());
+    assertEquals(Status.Code.NOT_FOUND, assertThrows(StatusRuntimeException.class,
+        () -> client.parseTptp("include('missing.ax').")).getStatus().getCode());
+    final List<ParseResponse> responses =
+        client.parseBatch(Arrays.asList("cnf(a, axiom, p(X)).", PROBLEM));
+    assertEquals(ParseResponse.ResultCase.NODE, responses.get(0).getResultCase());
+    assertEquals(ParseResponse.ResultCase.ERROR, responses.get(1).getResultCase());
+  }
+
+  @Test
+  public final void batchFailureTest() throws IOException {
+    final String serverName = InProcessServerBuilder.generateName();
+    server = InProcessServerBuilder.forName(serverName)
+        .addService(new TptpParserServer.TptpParserImpl(ServerOptions.parse(
+            new String[] {"1", "0", "HANDWRITTEN", "--tptp-path=" + tptpFolder},
+            Collections.emptyMap())))
+        .build().start();
+    channel = InProcessChannelBuilder.forName(serverName).build();
+    // a file including itself fails the whole batch, not only its problem
+    Files.writeString(tptpFolder.resolve("cycle.ax"), "include('cycle.ax').");
+    final StatusRuntimeException error = assertThrows(StatusRuntimeException.class,
+        () -> new TptpGrpcClient(channel).parseBatch(
+            Arrays.asList("include('cycle.ax').", PROBLEM, PROBLEM, PROBLEM)));
+    assertEquals(Status.Code.INTERNAL, error.getStatus().getCode());
+  }
+}
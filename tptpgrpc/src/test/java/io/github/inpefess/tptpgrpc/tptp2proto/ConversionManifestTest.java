@@ -0,0 +1,59 @@
+/*
+ *  Copyright 2023 Boris Shminke
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+
+package io.github.inpefess.tptpgrpc.tptp2proto;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import io.github.inpefess.tptpgrpc.tptpproto.ManifestEntry;
+import io.github.inpefess.tptpgrpc.tptpproto.OutputFormat;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Test fingerprints of an incremental conversion.
+ */
+public final class ConversionManifestTest {
+  @TempDir
+  Path outputFolder;
+
+  private final void convert(final Path problem, final String newText) throws IOException {
+    final ConversionManifest manifest =
+        new ConversionManifest(outputFolder, OutputFormat.TREE, 1, true);
+    final ManifestEntry.Builder fingerprint = manifest.fingerprint(0, problem.toString());
+    // the problem is edited while being converted
+    Files.writeString(problem, newText);
+    Files.writeString(outputFolder.resolve("0.pb"), "");
+    manifest.record(0, fingerprint, Collections.emptySet());
+    manifest.save();
+  }
+
+  @Test
+  public final void editedDuringConversionTest() throws IOException {
+    final Path problem = Files.writeString(outputFolder.resolve("problem.p"), "cnf(a, axiom, p).");
+    convert(problem, "cnf(a, axiom, q).");
+    assertFalse(new ConversionManifest(outputFolder, OutputFormat.TREE, 1, true)
+        .isUpToDate(0, problem.toString()));
+    // no edits this time
+    convert(problem, "cnf(a, axiom, q).");
+    assertTrue(new ConversionManifest(outputFolder, OutputFormat.TREE, 1, true)
+        .isUpToDate(0, problem.toString()));
+  }
+}
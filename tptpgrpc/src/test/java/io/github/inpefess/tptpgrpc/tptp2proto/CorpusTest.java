@@ -0,0 +1,87 @@
+/*
+ *  Copyright 2023 Boris Shminke
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+
+package io.github.inpefess.tptpgrpc.tptp2proto;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import io.github.inpefess.tptpgrpc.tptpproto.Node;
+import io.github.inpefess.tptpgrpc.tptpproto.OutputFormat;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Test writing and reading a sharded corpus.
+ */
+public final class CorpusTest {
+  @TempDir
+  Path corpusFolder;
+
+  private static final Node problem(final int i) {
+    return Node.newBuilder().setValue("&")
+        .addChild(Node.newBuilder().setValue("p" + i).addChild(Node.newBuilder().setValue("X")))
+        .build();
+  }
+
+  private final void writeCorpus() throws IOException, InterruptedException {
+    try (CorpusWriter corpusWriter =
+        new CorpusWriter(corpusFolder, 2 * problem(0).getSerializedSize() + 2, OutputFormat.DAG)) {
+      // out of order, with a skipped problem
+      for (final int i : new int[] {1, 0, 4, 3}) {
+        corpusWriter.add(i, "P" + i, DagNodeCodec.encode(problem(i)));
+      }
+      corpusWriter.add(2, "P2", null);
+    }
+    assertTrue(Files.exists(corpusFolder.resolve("shard-00001.index")));
+  }
+
+  @Test
+  public final void writeAndReadTest() throws IOException, InterruptedException {
+    writeCorpus();
+    final Corpus corpus = Corpus.open(corpusFolder);
+    assertEquals(4, corpus.size());
+    assertEquals("P3", corpus.getName(2));
+    assertEquals(2, corpus.indexOf("P3"));
+    assertEquals(-1, corpus.indexOf("P2"));
+    for (final int i : new int[] {0, 1, 3, 4}) {
+      assertEquals(problem(i), corpus.getNode(corpus.indexOf("P" + i)));
+    }
+    assertTrue(corpus.getRecord(3).isDirect());
+    assertThrows(IndexOutOfBoundsException.class, () -> corpus.getRecord(4));
+  }
+
+  @Test
+  public final void graphTest() throws IOException, InterruptedException {
+    final GraphVocabulary vocabulary = new GraphVocabulary();
+    try (CorpusWriter corpusWriter = new CorpusWriter(corpusFolder, 1 << 20, OutputFormat.GRAPH)) {
+      corpusWriter.add(0, "P0", GraphTensorCodec.encode(problem(0), vocabulary));
+    }
+    final Corpus corpus = Corpus.open(corpusFolder);
+    assertEquals(problem(0), corpus.getNode(0, vocabulary));
+    assertThrows(IllegalStateException.class, () -> corpus.getNode(0));
+  }
+
+  @Test
+  public final void missingRecordTest() throws IOException, InterruptedException {
+    final CorpusWriter corpusWriter = new CorpusWriter(corpusFolder, 1 << 20, OutputFormat.TREE);
+    corpusWriter.add(1, "P1", problem(1));
+    assertThrows(IOException.class, corpusWriter::close);
+  }
+}
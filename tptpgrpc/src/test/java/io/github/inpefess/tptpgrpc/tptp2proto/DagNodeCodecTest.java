@@ -0,0 +1,59 @@
+/*
+ *  Copyright 2023 Boris Shminke
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+
+package io.github.inpefess.tptpgrpc.tptp2proto;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.io.IOException;
+import java.io.StringReader;
+import io.github.inpefess.tptpgrpc.tptpproto.DagNode;
+import io.github.inpefess.tptpgrpc.tptpproto.Node;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test converting trees to graphs of distinct subtrees and back.
+ */
+public final class DagNodeCodecTest {
+  @Test
+  public final void roundTripTest() throws IOException {
+    final Node node = Node.parseFrom(this.getClass().getResourceAsStream("/test.pb"));
+    final DagNode dagNode = DagNodeCodec.encode(node);
+    assertEquals(node, DagNodeCodec.decode(dagNode));
+    assertEquals(dagNode.getSymbolIdCount(), dagNode.getChildCountCount());
+    assertTrue(dagNode.getSerializedSize() < node.getSerializedSize());
+  }
+
+  @Test
+  public final void sharedSubtermTest() throws IOException, TptpSyntaxErrorException {
+    final Node node = new Tptp2Proto(new ParserConfig("")
+        .withParserEngine(ParserEngine.HANDWRITTEN)).tptp2Proto(new StringReader(
+            "cnf(a, axiom, p(mult(X, inverse(X))))."
+            + "cnf(b, axiom, q(mult(X, inverse(X))) | p(mult(X, inverse(X))))."));
+    final DagNode dagNode = DagNodeCodec.encode(node);
+    assertEquals(node, DagNodeCodec.decode(dagNode));
+    // leaves (X, p, q, mult, inverse), inverse(X), mult(..), p(..), q(..), two disjunctions, two
+    // quantified clauses, the conjunction and the quantifier over symbols
+    assertEquals(5 + 4 + 2 + 2 + 2, dagNode.getSymbolIdCount());
+  }
+
+  @Test
+  public final void wrongOrderTest() {
+    assertThrows(IllegalArgumentException.class, () -> DagNodeCodec.decode(DagNode.newBuilder()
+        .addSymbol("f").addSymbolId(0).addChildCount(1).addChildId(0).build()));
+  }
+}
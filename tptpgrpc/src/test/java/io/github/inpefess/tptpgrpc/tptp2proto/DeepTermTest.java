@@ -0,0 +1,110 @@
+/*
+ *  Copyright 2023 Boris Shminke
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+
+package io.github.inpefess.tptpgrpc.tptp2proto;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import java.lang.reflect.Proxy;
+import java.util.HashSet;
+import java.util.Map;
+import com.theoremsandstuff.tptp.parser.cnf_constant;
+import com.theoremsandstuff.tptp.parser.cnf_equality;
+import com.theoremsandstuff.tptp.parser.cnf_expression;
+import com.theoremsandstuff.tptp.parser.cnf_not;
+import com.theoremsandstuff.tptp.parser.cnf_or;
+import com.theoremsandstuff.tptp.parser.cnf_var;
+import io.github.inpefess.tptpgrpc.tptpproto.Node;
+import org.eclipse.emf.common.util.BasicEList;
+import org.eclipse.emf.common.util.ECollections;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test converting clauses with very deep terms, like {@literal p(s(s(...s(X)...)))}.
+ *
+ * <p>The AST is built from dynamic proxies, since the Xtext parser itself is recursive.
+ */
+public final class DeepTermTest {
+  @Test
+  public final void deepTermTest() {
+    final int depth = 100_000;
+    final Node clause =
+        new ClauseConverter(new HashSet<>()).convertClause(deepClause(depth, false));
+    assertEquals("!", clause.getValue());
+    assertEquals("X", clause.getChild(0).getValue());
+    final Node literal = clause.getChild(1).getChild(0).getChild(0);
+    assertEquals("p", literal.getValue());
+    assertDeepTerm(literal.getChild(0), depth);
+  }
+
+  private static final void assertDeepTerm(final Node deepTerm, final int depth) {
+    Node term = deepTerm;
+    for (int i = 0; i < depth; i++) {
+      assertEquals("s", term.getValue());
+      term = term.getChild(0);
+    }
+    assertEquals("X", term.getValue());
+    assertEquals(0, term.getChildCount());
+  }
+
+  @Test
+  public final void sameAsRecursiveTest() {
+    final cnf_or clause = deepClause(1000, true);
+    assertEquals(new RecursiveClauseConverter(new HashSet<>()).convertClause(clause),
+        new ClauseConverter(new HashSet<>()).convertClause(clause));
+  }
+
+  /**
+   * Build a clause {@literal ~ p(s(...s(X)...)) | X = s(...s(X)...)}.
+   *
+   * @param depth the number of {@literal s} applications
+   * @param withEquality whether to add the equality literal
+   * @return a clause AST
+   */
+  static final cnf_or deepClause(final int depth, final boolean withEquality) {
+    final BasicEList<cnf_not> literals = new BasicEList<>();
+    literals.add(astNode(cnf_not.class, Map.of("isNegated", true, "getLiteral",
+        astNode(cnf_equality.class, Map.of("getExpL", function("p", deepTerm(depth)))))));
+    if (withEquality) {
+      literals.add(astNode(cnf_not.class, Map.of("isNegated", false, "getLiteral",
+          astNode(cnf_equality.class,
+              Map.of("getEq", "=", "getExpL", variable(), "getExpR", deepTerm(depth))))));
+    }
+    return astNode(cnf_or.class, Map.of("getOr", literals));
+  }
+
+  private static final cnf_expression deepTerm(final int depth) {
+    cnf_expression term = variable();
+    for (int i = 0; i < depth; i++) {
+      term = function("s", term);
+    }
+    return term;
+  }
+
+  private static final cnf_expression variable() {
+    return astNode(cnf_var.class, Map.of("getName", "X"));
+  }
+
+  private static final cnf_expression function(final String name,
+      final cnf_expression argument) {
+    return astNode(cnf_constant.class,
+        Map.of("getName", name, "getParam", ECollections.singletonEList(argument)));
+  }
+
+  private static final <T> T astNode(final Class<T> astClass, final Map<String, Object> values) {
+    return astClass.cast(Proxy.newProxyInstance(DeepTermTest.class.getClassLoader(),
+        new Class<?>[] {astClass}, (proxy, method, arguments) -> values.get(method.getName())));
+  }
+}
@@ -0,0 +1,105 @@
+/*
+ *  Copyright 2023 Boris Shminke
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+
+package io.github.inpefess.tptpgrpc.tptp2proto;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import io.github.inpefess.tptpgrpc.tptpproto.Node;
+import io.grpc.ForwardingServerCall;
+import io.grpc.ManagedChannel;
+import io.grpc.Metadata;
+import io.grpc.Server;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.ServerInterceptors;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test that streaming clauses waits for a slow client.
+ */
+public final class FlowControlledSinkTest {
+  private static final int CLAUSE_COUNT = 100;
+
+  private final AtomicInteger sentCount = new AtomicInteger();
+  private Server server;
+  private ManagedChannel channel;
+
+  /**
+   * Start an in-process server counting the messages it sends.
+   *
+   * @throws IOException if unable to start the server
+   */
+  @BeforeEach
+  public final void setUp() throws IOException {
+    final String serverName = InProcessServerBuilder.generateName();
+    server = InProcessServerBuilder.forName(serverName)
+        .addService(ServerInterceptors.intercept(
+            new TptpParserServer.TptpParserImpl(ServerOptions.parse(
+                new String[] {"1", "0", "HANDWRITTEN"}, Collections.emptyMap())),
+            new SendCounter()))
+        .build().start();
+    channel = InProcessChannelBuilder.forName(serverName).build();
+  }
+
+  @AfterEach
+  public final void tearDown() throws InterruptedException {
+    channel.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+    server.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+  }
+
+  @Test
+  public final void slowClientTest() throws InterruptedException {
+    final Iterator<Node> clauses =
+        new TptpGrpcClient(channel).parseTptpClauses(new SyntheticProblems(0, 2)
+            .clauses(CLAUSE_COUNT));
+    clauses.next();
+    TimeUnit.MILLISECONDS.sleep(200);
+    // the client buffers only a few messages, so the server waits for it
+    assertTrue(sentCount.get() < 10);
+    int receivedCount = 1;
+    for (; clauses.hasNext(); clauses.next()) {
+      receivedCount++;
+    }
+    // clauses and the quantifier over symbols
+    assertEquals(CLAUSE_COUNT + 1, receivedCount);
+  }
+
+  private final class SendCounter implements ServerInterceptor {
+    @Override
+    public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(
+        final ServerCall<ReqT, RespT> call, final Metadata headers,
+        final ServerCallHandler<ReqT, RespT> next) {
+      return next.startCall(new ForwardingServerCall.SimpleForwardingServerCall<>(call) {
+        @Override
+        public void sendMessage(final RespT message) {
+          sentCount.incrementAndGet();
+          super.sendMessage(message);
+        }
+      }, headers);
+    }
+  }
+}
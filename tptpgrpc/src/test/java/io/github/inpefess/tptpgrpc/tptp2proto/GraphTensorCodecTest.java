@@ -0,0 +1,174 @@
+/*
+ *  Copyright 2023 Boris Shminke
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+
+package io.github.inpefess.tptpgrpc.tptp2proto;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import com.google.protobuf.ByteString;
+import io.github.inpefess.tptpgrpc.tptpproto.BatchRequest;
+import io.github.inpefess.tptpgrpc.tptpproto.GraphTensors;
+import io.github.inpefess.tptpgrpc.tptpproto.Node;
+import io.github.inpefess.tptpgrpc.tptpproto.NodeType;
+import io.github.inpefess.tptpgrpc.tptpproto.OutputFormat;
+import io.github.inpefess.tptpgrpc.tptpproto.TptpParserGrpc;
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Test converting trees to graph tensors and back.
+ */
+public final class GraphTensorCodecTest {
+  private static final String PROBLEM = "cnf(a, axiom, p(X)).\ncnf(b, axiom, ~ q(f(X)) | X = Y).";
+
+  @TempDir
+  Path vocabularyFolder;
+
+  @Test
+  public final void roundTripTest() throws IOException {
+    final Node node = Node.parseFrom(this.getClass().getResourceAsStream("/test.pb"));
+    final GraphVocabulary vocabulary = new GraphVocabulary();
+    final GraphTensors graphTensors = GraphTensorCodec.encode(node, vocabulary);
+    assertEquals(node, GraphTensorCodec.decode(graphTensors, vocabulary));
+    final int nodeCount = graphTensors.getNodeCount();
+    assertEquals(nodeCount, ints(graphTensors.getLabelId()).remaining());
+    assertEquals(2 * (nodeCount - 1), ints(graphTensors.getEdgeIndex()).remaining());
+    assertEquals(nodeCount, ints(graphTensors.getNodeType()).remaining());
+  }
+
+  @Test
+  public final void nodeTypeTest() throws IOException, TptpSyntaxErrorException {
+    final GraphVocabulary vocabulary = new GraphVocabulary();
+    final GraphTensors graphTensors =
+        GraphTensorCodec.encode(parse("cnf(a, axiom, ~ p(X) | X = f(c))."), vocabulary);
+    final IntBuffer labelIds = ints(graphTensors.getLabelId());
+    final IntBuffer nodeTypes = ints(graphTensors.getNodeType());
+    for (int i = 0; i < graphTensors.getNodeCount(); i++) {
+      final String label = vocabulary.getLabel(labelIds.get(i));
+      assertEquals(expectedNodeType(label), nodeTypes.get(i), label);
+    }
+  }
+
+  @Test
+  public final void edgeIndexTest() throws IOException, TptpSyntaxErrorException {
+    final GraphTensors graphTensors = GraphTensorCodec
+        .encode(parse("cnf(a, axiom, p(f(X), Y) | q(Y))."), new GraphVocabulary());
+    final IntBuffer edgeIndex = ints(graphTensors.getEdgeIndex());
+    final int edgeCount = graphTensors.getNodeCount() - 1;
+    // nodes are numbered in preorder, so the edge to a node goes from an earlier one
+    for (int edge = 0; edge < edgeCount; edge++) {
+      assertEquals(edge + 1, edgeIndex.get(edgeCount + edge));
+      assertTrue(edgeIndex.get(edge) <= edge);
+    }
+  }
+
+  private static final int expectedNodeType(final String label) {
+    if ("!".equals(label) || "?".equals(label)) {
+      return NodeType.QUANTIFIER_VALUE;
+    }
+    if ("|".equals(label) || "~".equals(label) || "&".equals(label)) {
+      return NodeType.CONNECTIVE_VALUE;
+    }
+    return "X".equals(label) ? NodeType.VARIABLE_VALUE : NodeType.FUNCTION_OR_PREDICATE_VALUE;
+  }
+
+  @Test
+  public final void sharedVocabularyTest() throws IOException, TptpSyntaxErrorException {
+    final GraphVocabulary vocabulary = new GraphVocabulary();
+    final Node first = parse("cnf(a, axiom, p(X) | q(X)).");
+    final GraphTensors firstTensors = GraphTensorCodec.encode(first, vocabulary);
+    final Node second = parse("cnf(b, axiom, r(f(Y)) | ~ q(Y)).");
+    final GraphTensors secondTensors = GraphTensorCodec.encode(second, vocabulary);
+    final Path vocabularyFile = vocabularyFolder.resolve(GraphVocabulary.FILE_NAME);
+    vocabulary.save(vocabularyFile);
+    final GraphVocabulary loadedVocabulary = GraphVocabulary.load(vocabularyFile);
+    assertEquals(firstTensors, GraphTensorCodec.encode(first, loadedVocabulary));
+    assertEquals(second, GraphTensorCodec.decode(secondTensors, loadedVocabulary));
+  }
+
+  @Test
+  public final void serviceTest() throws IOException, InterruptedException {
+    final GraphVocabulary vocabulary = new GraphVocabulary();
+    final String serverName = InProcessServerBuilder.generateName();
+    final Server server = InProcessServerBuilder.forName(serverName).directExecutor()
+        .addService(new TptpParserServer.TptpParserImpl(ServerOptions.parse(
+            new String[] {"2", "0", "HANDWRITTEN"}, Collections.emptyMap()), new ParserMetrics(),
+            vocabulary))
+        .build().start();
+    final ManagedChannel channel = InProcessChannelBuilder.forName(serverName).build();
+    final Node node = new TptpGrpcClient(channel).parseTptp(PROBLEM);
+    assertEquals(node, GraphTensorCodec
+        .decode(new TptpGrpcClient(channel).parseTptpGraph(PROBLEM), vocabulary));
+    assertEquals(node, GraphTensorCodec.decode(TptpParserGrpc.newBlockingStub(channel)
+        .parseBatch(BatchRequest.newBuilder().addStringMessage(PROBLEM)
+            .setFormat(OutputFormat.GRAPH).build())
+        .getResponse(0).getGraphTensors(), vocabulary));
+    channel.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+    server.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+  }
+
+  @Test
+  public final void maxSizeTest() throws IOException, TptpSyntaxErrorException {
+    final Path vocabularyFile = vocabularyFolder.resolve(GraphVocabulary.FILE_NAME);
+    final GraphVocabulary vocabulary = new GraphVocabulary();
+    GraphTensorCodec.encode(parse("cnf(a, axiom, p(X) | q(X))."), vocabulary);
+    vocabulary.save(vocabularyFile);
+    // labels of the file are kept even over the limit
+    final GraphVocabulary limitedVocabulary = GraphVocabulary.load(vocabularyFile, 3);
+    final Node known = parse("cnf(a, axiom, q(X) | p(X)).");
+    assertEquals(known, GraphTensorCodec
+        .decode(GraphTensorCodec.encode(known, limitedVocabulary), limitedVocabulary));
+    assertEquals(Status.Code.RESOURCE_EXHAUSTED, assertThrows(StatusRuntimeException.class,
+        () -> GraphTensorCodec.encode(parse("cnf(a, axiom, r(X))."), limitedVocabulary))
+        .getStatus().getCode());
+    assertEquals(vocabulary.size(), limitedVocabulary.size());
+  }
+
+  @Test
+  public final void wrongOrderTest() {
+    final GraphVocabulary vocabulary = new GraphVocabulary();
+    vocabulary.getLabelId("f");
+    assertThrows(IllegalArgumentException.class,
+        () -> GraphTensorCodec.decode(GraphTensors.newBuilder().setNodeCount(2)
+            .setLabelId(ByteString.copyFrom(new byte[8]))
+            .setEdgeIndex(ByteString.copyFrom(new byte[] {1, 0, 0, 0, 0, 0, 0, 0}))
+            .build(), vocabulary));
+  }
+
+  private static final Node parse(final String problem)
+      throws IOException, TptpSyntaxErrorException {
+    return new Tptp2Proto(new ParserConfig("").withParserEngine(ParserEngine.HANDWRITTEN))
+        .tptp2Proto(new StringReader(problem));
+  }
+
+  private static final IntBuffer ints(final ByteString bytes) {
+    return bytes.asReadOnlyByteBuffer().order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+  }
+}
@@ -0,0 +1,40 @@
+/*
+ *  Copyright 2023 Boris Shminke
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+
+package io.github.inpefess.tptpgrpc.tptp2proto;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test the Prometheus text format of histograms.
+ */
+public final class HistogramTest {
+  @Test
+  public final void writeTest() {
+    final Histogram histogram = new Histogram(new long[] {10, 100});
+    histogram.observe(10);
+    histogram.observe(50);
+    histogram.observe(1000);
+    final StringBuilder output = new StringBuilder();
+    histogram.write(output, "test_seconds", "phase=\"parse\"", 10);
+    assertEquals("test_seconds_bucket{phase=\"parse\",le=\"1.0\"} 1\n"
+        + "test_seconds_bucket{phase=\"parse\",le=\"10.0\"} 2\n"
+        + "test_seconds_bucket{phase=\"parse\",le=\"+Inf\"} 3\n"
+        + "test_seconds_sum{phase=\"parse\"} 106.0\n"
+        + "test_seconds_count{phase=\"parse\"} 3\n", output.toString());
+  }
+}
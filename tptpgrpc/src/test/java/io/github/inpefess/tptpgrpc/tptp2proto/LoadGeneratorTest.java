@@ -0,0 +1,117 @@
+/*
+ *  Copyright 2023 Boris Shminke
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+
+package io.github.inpefess.tptpgrpc.tptp2proto;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Test the load generator against an in-process server.
+ */
+public final class LoadGeneratorTest {
+  @TempDir
+  Path reportFolder;
+  private Server server;
+  private ManagedChannel channel;
+  private List<String> problems;
+
+  /**
+   * Generate problems and start an in-process server.
+   *
+   * @throws IOException if unable to start the server
+   */
+  @BeforeEach
+  public final void setUp() throws IOException {
+    problems = LoadGenerator.problems(LoadGenerator.parseOptions(new String[] {"--clauses=10"}));
+    final String serverName = InProcessServerBuilder.generateName();
+    server = InProcessServerBuilder.forName(serverName)
+        .addService(new TptpParserServer.TptpParserImpl(ServerOptions.parse(
+            new String[] {"2", "0", "HANDWRITTEN"}, Collections.emptyMap())))
+        .build().start();
+    channel = InProcessChannelBuilder.forName(serverName).build();
+  }
+
+  @AfterEach
+  public final void tearDown() throws InterruptedException {
+    channel.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+    server.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+  }
+
+  @Test
+  public final void fixedConcurrencyTest() throws IOException, InterruptedException {
+    final LoadReport report = new LoadGenerator(channel, 4, 0).run(problems, 200);
+    final Map<String, Double> summary = report.summary();
+    assertEquals(0, summary.get(LoadReport.ERRORS));
+    assertTrue(summary.get(LoadReport.P50) <= summary.get(LoadReport.P99));
+    assertTrue(summary.get(LoadReport.P99) <= summary.get(LoadReport.P999));
+    final Path reportFile = reportFolder.resolve("report.properties");
+    report.save(reportFile);
+    assertEquals(summary, LoadReport.load(reportFile));
+    assertEquals(0, report.compare(LoadReport.load(reportFile), 0));
+  }
+
+  @Test
+  public final void fixedRateTest() throws InterruptedException {
+    final long startTime = System.nanoTime();
+    final LoadReport report = new LoadGenerator(channel, 4, 100).run(problems, 20);
+    // the last request is sent in 190 ms
+    assertTrue(System.nanoTime() - startTime >= TimeUnit.MILLISECONDS.toNanos(190));
+    assertEquals(0, report.summary().get(LoadReport.ERRORS));
+  }
+
+  @Test
+  public final void percentileTest() {
+    final Map<String, Double> summary = syntheticReport().summary();
+    assertEquals(500, summary.get(LoadReport.THROUGHPUT));
+    assertEquals(500, summary.get(LoadReport.P50));
+    assertEquals(990, summary.get(LoadReport.P99));
+    assertEquals(999, summary.get(LoadReport.P999));
+    assertEquals(1, summary.get(LoadReport.ERRORS));
+  }
+
+  @Test
+  public final void compareTest() {
+    assertEquals(3, syntheticReport().compare(Map.of(LoadReport.THROUGHPUT, 1000.0,
+        LoadReport.P99, 500.0, LoadReport.P50, 499.0, LoadReport.ERRORS, 0.0), 0.1));
+    assertThrows(IllegalArgumentException.class,
+        () -> LoadGenerator.parseOptions(new String[] {"--unknown=1"}));
+  }
+
+  private static final LoadReport syntheticReport() {
+    final LoadReport report = new LoadReport(1000);
+    for (int i = 1000; i > 0; i--) {
+      report.record(TimeUnit.MILLISECONDS.toNanos(i), i != 1);
+    }
+    report.finish(TimeUnit.SECONDS.toNanos(2));
+    return report;
+  }
+}
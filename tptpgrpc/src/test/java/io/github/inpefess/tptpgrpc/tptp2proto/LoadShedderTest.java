@@ -0,0 +1,115 @@
+/*
+ *  Copyright 2023 Boris Shminke
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+
+package io.github.inpefess.tptpgrpc.tptp2proto;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import io.github.inpefess.tptpgrpc.tptpproto.ParseRequest;
+import io.github.inpefess.tptpgrpc.tptpproto.ParseResponse;
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.health.v1.HealthCheckRequest;
+import io.grpc.health.v1.HealthCheckResponse;
+import io.grpc.health.v1.HealthGrpc;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.StreamObserver;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test call executors and load shedding using an in-process server.
+ */
+public final class LoadShedderTest {
+  private static final String PROBLEM = "cnf(test, axiom, p(X)).";
+
+  private Server server;
+  private ManagedChannel channel;
+  private TptpGrpcClient client;
+
+  private final void startServer(final String... args) throws IOException {
+    final String serverName = InProcessServerBuilder.generateName();
+    final ParserMetrics metrics = new ParserMetrics();
+    server = new TptpParserServer().configure(InProcessServerBuilder.forName(serverName),
+        ServerOptions.parse(args, Collections.emptyMap()),
+        new TptpParserServer.TptpParserImpl(ServerOptions.parse(
+            new String[] {"2", "0", "HANDWRITTEN"}, Collections.emptyMap()), metrics,
+            new GraphVocabulary()).bindService(),
+        metrics).addService(new ServerHealth(metrics).bindService()).build().start();
+    channel = InProcessChannelBuilder.forName(serverName).directExecutor().build();
+    client = new TptpGrpcClient(channel);
+  }
+
+  @AfterEach
+  public final void tearDown() throws InterruptedException {
+    channel.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+    server.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+  }
+
+  @Test
+  public final void fixedExecutorTest() throws IOException {
+    startServer("--executor=FIXED", "--threads=2");
+    assertEquals("?", client.parseTptp(PROBLEM).getValue());
+  }
+
+  @Test
+  public final void loadSheddingTest() throws IOException, InterruptedException {
+    startServer("--executor=BOUNDED", "--threads=1", "--queue-size=0", "--retry-after-ms=10");
+    final CountDownLatch finished = new CountDownLatch(1);
+    // an open stream holds the only permit
+    final StreamObserver<ParseRequest> requestObserver =
+        client.parseTptpStream(new StreamObserver<ParseResponse>() {
+          @Override
+          public void onNext(final ParseResponse response) {}
+
+          @Override
+          public void onError(final Throwable t) {
+            finished.countDown();
+          }
+
+          @Override
+          public void onCompleted() {
+            finished.countDown();
+          }
+        });
+    final StatusRuntimeException rejection =
+        assertThrows(StatusRuntimeException.class, () -> client.parseTptp(PROBLEM));
+    assertEquals(Status.Code.RESOURCE_EXHAUSTED, rejection.getStatus().getCode());
+    assertEquals("10", rejection.getTrailers().get(LoadShedder.RETRY_PUSHBACK_KEY));
+    requestObserver.onCompleted();
+    finished.await(5, TimeUnit.SECONDS);
+    assertEquals("?", client.parseTptp(PROBLEM).getValue());
+  }
+
+  @Test
+  public final void healthCheckTest() throws IOException {
+    startServer("--executor=BOUNDED", "--threads=1", "--queue-size=0");
+    final HealthGrpc.HealthBlockingStub healthStub = HealthGrpc.newBlockingStub(channel);
+    // health checks take no permits of the parsing calls
+    for (int i = 0; i < 3; i++) {
+      assertEquals(HealthCheckResponse.ServingStatus.NOT_SERVING,
+          healthStub.check(HealthCheckRequest.getDefaultInstance()).getStatus());
+    }
+    assertEquals("?", client.parseTptp(PROBLEM).getValue());
+  }
+}
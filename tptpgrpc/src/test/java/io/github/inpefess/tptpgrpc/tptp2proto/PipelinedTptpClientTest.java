@@ -0,0 +1,115 @@
+/*
+ *  Copyright 2023 Boris Shminke
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+
+package io.github.inpefess.tptpgrpc.tptp2proto;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import io.github.inpefess.tptpgrpc.tptpproto.Node;
+import io.github.inpefess.tptpgrpc.tptpproto.StringMessage;
+import io.github.inpefess.tptpgrpc.tptpproto.TptpParserGrpc;
+import io.grpc.BindableService;
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.Status;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.StreamObserver;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test pipelined parsing with deadlines and retries using an in-process server.
+ */
+public final class PipelinedTptpClientTest {
+  private Server server;
+  private ManagedChannel channel;
+
+  private final PipelinedTptpClient startServer(final BindableService service)
+      throws IOException {
+    final String serverName = InProcessServerBuilder.generateName();
+    server = InProcessServerBuilder.forName(serverName).addService(service).build().start();
+    channel = InProcessChannelBuilder.forName(serverName).build();
+    return new PipelinedTptpClient(channel, 4, 1000, 3);
+  }
+
+  @AfterEach
+  public final void tearDown() throws InterruptedException {
+    channel.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+    server.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+  }
+
+  @Test
+  public final void parseAllTest()
+      throws IOException, InterruptedException, ExecutionException {
+    final List<String> problems = new ArrayList<>();
+    for (int i = 0; i < 20; i++) {
+      problems.add("cnf(test, axiom, p" + i + "(X)).");
+    }
+    try (PipelinedTptpClient client = startServer(
+        new TptpParserServer.TptpParserImpl(ServerOptions.parse(
+            new String[] {"2", "0", "HANDWRITTEN"}, Collections.emptyMap())))) {
+      final List<Node> results = client.parseAll(problems);
+      assertEquals(problems.size(), results.size());
+      final TptpGrpcClient blockingClient = new TptpGrpcClient(channel);
+      for (int i = 0; i < problems.size(); i++) {
+        assertEquals(blockingClient.parseTptp(problems.get(i)), results.get(i));
+      }
+    }
+  }
+
+  @Test
+  public final void retryTest() throws IOException, InterruptedException, ExecutionException {
+    final AtomicInteger attempts = new AtomicInteger();
+    try (PipelinedTptpClient client = startServer(new TptpParserGrpc.TptpParserImplBase() {
+      @Override
+      public void parseTptp(final StringMessage request,
+          final StreamObserver<Node> responseObserver) {
+        if (attempts.incrementAndGet() < 3) {
+          responseObserver.onError(Status.UNAVAILABLE.asRuntimeException());
+        } else {
+          responseObserver.onNext(Node.newBuilder().setValue(request.getStringMessage()).build());
+          responseObserver.onCompleted();
+        }
+      }
+    })) {
+      assertEquals("p", client.parseTptp("p").get().getValue());
+      assertEquals(3, attempts.get());
+    }
+  }
+
+  @Test
+  public final void deadlineTest() throws IOException {
+    try (PipelinedTptpClient client = startServer(new TptpParserGrpc.TptpParserImplBase() {
+      @Override
+      public void parseTptp(final StringMessage request,
+          final StreamObserver<Node> responseObserver) {
+        // never responds
+      }
+    })) {
+      assertEquals(Status.Code.DEADLINE_EXCEEDED, Status.fromThrowable(assertThrows(
+          ExecutionException.class, () -> client.parseAll(List.of("p", "q"))).getCause())
+          .getCode());
+    }
+  }
+}
@@ -0,0 +1,54 @@
+/*
+ *  Copyright 2023 Boris Shminke
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+
+package io.github.inpefess.tptpgrpc.tptp2proto;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import java.util.Collections;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test parsing server options.
+ */
+public final class ServerOptionsTest {
+  private static final Map<String, String> ENVIRONMENT =
+      Collections.singletonMap("TPTP_GRPC_PORT", "456");
+
+  @Test
+  public final void parseTest() {
+    final ServerOptions options =
+        ServerOptions.parse(new String[] {"3", "0", "HANDWRITTEN", "--port=123"}, ENVIRONMENT);
+    assertEquals(3, options.getInt(ServerOptions.POOL_SIZE));
+    assertEquals(ParserEngine.HANDWRITTEN,
+        options.getEnum(ServerOptions.ENGINE, ParserEngine.class));
+    assertEquals(123, options.getInt(ServerOptions.PORT));
+    assertEquals(ServerExecutor.CACHED,
+        options.getEnum(ServerOptions.EXECUTOR, ServerExecutor.class));
+    assertEquals(456, ServerOptions.parse(new String[0], ENVIRONMENT).getInt(ServerOptions.PORT));
+  }
+
+  @Test
+  public final void wrongOptionsTest() {
+    assertThrows(IllegalArgumentException.class,
+        () -> ServerOptions.parse(new String[] {"--unknown=1"}, ENVIRONMENT));
+    assertThrows(IllegalArgumentException.class,
+        () -> ServerOptions.parse(new String[] {"--port"}, ENVIRONMENT));
+    assertThrows(IllegalArgumentException.class,
+        () -> ServerOptions.parse(new String[] {"1", "2", "XTEXT", "4", "5", "6"}, ENVIRONMENT));
+  }
+}
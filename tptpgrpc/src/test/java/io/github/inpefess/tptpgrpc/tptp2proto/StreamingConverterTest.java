@@ -0,0 +1,71 @@
+/*
+ *  Copyright 2023 Boris Shminke
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+
+package io.github.inpefess.tptpgrpc.tptp2proto;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import io.github.inpefess.tptpgrpc.tptpproto.Node;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test converting problems formula by formula.
+ */
+public final class StreamingConverterTest {
+  private static final List<Integer> formulaEnds(final String text) {
+    final ByteBuffer buffer = ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8));
+    final FormulaSplitter formulaSplitter = new FormulaSplitter();
+    final List<Integer> ends = new ArrayList<>();
+    int end = formulaSplitter.formulaEnd(buffer, 0);
+    while (end != -1) {
+      ends.add(end);
+      end = formulaSplitter.formulaEnd(buffer, end);
+    }
+    return ends;
+  }
+
+  @Test
+  public final void formulaSplitterTest() {
+    assertEquals(List.of(7, 15), formulaEnds("cnf(a).\ncnf(b).\n"));
+    assertEquals(List.of(18), formulaEnds("cnf(a, p(f(X).Y)).\ncnf(b"));
+    assertEquals(List.of(20), formulaEnds("% a. comment\ncnf(a)."));
+    assertEquals(List.of(18), formulaEnds("/* a.\n*/ \n cnf(a)."));
+    assertEquals(List.of(13), formulaEnds("/*/ a. */cnf."));
+    assertEquals(List.of(19), formulaEnds("cnf('a.\\'.', \"b.\")."));
+    assertEquals(List.of(14), formulaEnds("thf(a, [X.Y])."));
+  }
+
+  @Test
+  public final void streamingConverterTest() throws IOException, TptpSyntaxErrorException {
+    final String tptpPath = this.getClass().getResource("/TPTP-mock").getPath();
+    // a window smaller than a formula has to grow
+    final StreamingConverter streamingConverter =
+        new StreamingConverter(new Tptp2Proto(tptpPath), 16);
+    final ByteArrayOutputStream output = new ByteArrayOutputStream();
+    streamingConverter.convert(
+        Paths.get(tptpPath, "Problems", "TST", "TST001-1.p"), output);
+    assertEquals(
+        StreamingConverter.assemble(new ByteArrayInputStream(output.toByteArray())),
+        Node.parseFrom(this.getClass().getResourceAsStream("/test.pb")));
+  }
+}
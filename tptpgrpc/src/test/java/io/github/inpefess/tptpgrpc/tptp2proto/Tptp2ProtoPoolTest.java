@@ -0,0 +1,53 @@
+/*
+ *  Copyright 2023 Boris Shminke
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+
+package io.github.inpefess.tptpgrpc.tptp2proto;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import io.github.inpefess.tptpgrpc.tptpproto.Node;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test sharing a parser pool between more threads than there are parsers.
+ */
+public final class Tptp2ProtoPoolTest {
+  @Test
+  public final void concurrentParsingTest()
+      throws IOException, InterruptedException, ExecutionException {
+    final Tptp2ProtoPool parserPool =
+        new Tptp2ProtoPool(new ParserConfig(this.getClass().getResource("/TPTP-mock").getPath()),
+            2);
+    final ExecutorService executor = Executors.newFixedThreadPool(8);
+    final List<Future<Node>> results = new ArrayList<>();
+    for (int i = 0; i < 32; i++) {
+      results.add(executor.submit(() -> parserPool.tptp2Proto(new InputStreamReader(
+          this.getClass().getResourceAsStream("/TPTP-mock/Problems/TST/TST001-1.p")))));
+    }
+    final Node expected = Node.parseFrom(this.getClass().getResourceAsStream("/test.pb"));
+    for (final Future<Node> result : results) {
+      assertEquals(expected, result.get());
+    }
+    executor.shutdown();
+  }
+}
@@ -16,18 +16,28 @@
 
 package io.github.inpefess.tptpgrpc.tptp2proto;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ForkJoinPool;
 import io.github.inpefess.tptpgrpc.tptpproto.Node;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 /**
  * Test parsing a TPTP problem to a serialised protobuf.
  */
 public final class Tptp2ProtoTest {
+  @TempDir
+  Path tptpFolder;
+
   @Test
   public final void tptpCnf2ProtoTest()
       throws FileNotFoundException, IOException, TptpSyntaxErrorException {
@@ -38,4 +48,57 @@ public final class Tptp2ProtoTest {
     assertEquals(tptp2Proto.tptp2Proto(new InputStreamReader(testProblem)),
         Node.parseFrom(this.getClass().getResourceAsStream("/test.pb")));
   }
+
+  @Test
+  public final void includeCacheTest()
+      throws FileNotFoundException, IOException, TptpSyntaxErrorException {
+    final IncludeCache includeCache = new IncludeCache(1);
+    final Tptp2Proto tptp2Proto = new Tptp2Proto(
+        new ParserConfig(this.getClass().getResource("/TPTP-mock").getPath())
+            .withIncludeCache(includeCache));
+    final Node expected = Node.parseFrom(this.getClass().getResourceAsStream("/test.pb"));
+    for (int i = 0; i < 2; i++) {
+      final InputStream testProblem =
+          this.getClass().getResourceAsStream("/TPTP-mock/Problems/TST/TST001-1.p");
+      assertEquals(tptp2Proto.tptp2Proto(new InputStreamReader(testProblem)), expected);
+    }
+    assertEquals(1, includeCache.missCount());
+    assertEquals(1, includeCache.hitCount());
+  }
+
+  @Test
+  public final void nestedIncludeTest() throws IOException, TptpSyntaxErrorException {
+    Files.writeString(tptpFolder.resolve("outer.ax"), "include('inner.ax').");
+    final Path innerFile = Files.writeString(tptpFolder.resolve("inner.ax"), "cnf(a, axiom, p).");
+    final Tptp2Proto tptp2Proto = new Tptp2Proto(
+        new ParserConfig(tptpFolder.toString()).withParserEngine(ParserEngine.HANDWRITTEN));
+    final String problem = "include('outer.ax').";
+    final Node before = tptp2Proto.tptp2Proto(new StringReader(problem));
+    // only the file included by the cached one changes
+    Files.writeString(innerFile, "cnf(a, axiom, p).\ncnf(b, axiom, q).");
+    final Node after = tptp2Proto.tptp2Proto(new StringReader(problem));
+    // the conjunction of clauses is the last child
+    assertEquals(1, before.getChild(before.getChildCount() - 1).getChildCount());
+    assertEquals(2, after.getChild(after.getChildCount() - 1).getChildCount());
+  }
+
+  @Test
+  public final void parallelConversionTest() throws IOException, TptpSyntaxErrorException {
+    final SyntheticProblems syntheticProblems = new SyntheticProblems(0, 4);
+    // more clauses than in one chunk and the same file included twice
+    final String problem = syntheticProblems.writeProblemWithIncludes(tptpFolder, 5,
+        ParallelConverter.CHUNK_SIZE + 1) + "include('Axioms/SYN000-0.ax').\n"
+        + syntheticProblems.clauses(10);
+    final Node sequential = new Tptp2Proto(tptpFolder.toString()).tptp2Proto(
+        new StringReader(problem));
+    final ForkJoinPool conversionPool = new ForkJoinPool(4);
+    final Tptp2Proto parallelTptp2Proto = new Tptp2Proto(
+        new ParserConfig(tptpFolder.toString()).withConversionPool(conversionPool));
+    assertArrayEquals(sequential.toByteArray(),
+        parallelTptp2Proto.tptp2Proto(new StringReader(problem)).toByteArray());
+    assertEquals(5, parallelTptp2Proto.getIncludedFiles().size());
+    assertThrows(IOException.class, () -> parallelTptp2Proto.tptp2Proto(
+        new StringReader("include('Axioms/SYN000-0.ax').\ninclude('Axioms/missing.ax').")));
+    conversionPool.shutdown();
+  }
 }
@@ -0,0 +1,196 @@
+/*
+ * Copyright 2023 Boris Shminke
+ * Copyright 2015 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.inpefess.tptpgrpc.tptp2proto;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import io.github.inpefess.tptpgrpc.tptpproto.Node;
+import io.github.inpefess.tptpgrpc.tptpproto.OutputFormat;
+import io.github.inpefess.tptpgrpc.tptpproto.ParseRequest;
+import io.github.inpefess.tptpgrpc.tptpproto.ParseResponse;
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.ServerInterceptors;
+import io.grpc.ServerServiceDefinition;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.StreamObserver;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Test batch and streaming parsing calls using an in-process server.
+ */
+public final class TptpParserImplTest {
+  private static final ServerOptions XTEXT =
+      ServerOptions.parse(new String[] {"2"}, Collections.emptyMap());
+  private static final ServerOptions HANDWRITTEN =
+      ServerOptions.parse(new String[] {"2", "0", "HANDWRITTEN"}, Collections.emptyMap());
+  @TempDir
+  Path corpusFolder;
+  private Server server;
+  private ManagedChannel channel;
+  private TptpGrpcClient client;
+
+  /**
+   * Start an in-process server and connect a client to it.
+   *
+   * @throws IOException if unable to start the server
+   */
+  @BeforeEach
+  public final void setUp() throws IOException {
+    startServer(new TptpParserServer.TptpParserImpl(XTEXT).bindService());
+  }
+
+  private final void startServer(final ServerServiceDefinition service) throws IOException {
+    final String serverName = InProcessServerBuilder.generateName();
+    server = InProcessServerBuilder.forName(serverName).directExecutor().addService(service)
+        .build().start();
+    channel = InProcessChannelBuilder.forName(serverName).directExecutor().build();
+    client = new TptpGrpcClient(channel);
+  }
+
+  @AfterEach
+  public final void tearDown() throws InterruptedException {
+    channel.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+    server.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+  }
+
+  @Test
+  public final void parseBatchTest() {
+    final List<ParseResponse> responses =
+        client.parseBatch(Arrays.asList("cnf(a, axiom, p(X)).", "cnf(b, axiom, p(X)"));
+    assertEquals(2, responses.size());
+    assertEquals(ParseResponse.ResultCase.NODE, responses.get(0).getResultCase());
+    assertEquals(ParseResponse.ResultCase.ERROR, responses.get(1).getResultCase());
+    assertEquals(1, responses.get(1).getId());
+  }
+
+  @Test
+  public final void parseTptpStreamTest() throws InterruptedException {
+    final Map<Long, ParseResponse> responses = new ConcurrentHashMap<>();
+    final CountDownLatch finished = new CountDownLatch(1);
+    final StreamObserver<ParseRequest> requestObserver =
+        client.parseTptpStream(new StreamObserver<ParseResponse>() {
+          @Override
+          public void onNext(final ParseResponse response) {
+            responses.put(response.getId(), response);
+          }
+
+          @Override
+          public void onError(final Throwable t) {
+            finished.countDown();
+          }
+
+          @Override
+          public void onCompleted() {
+            finished.countDown();
+          }
+        });
+    for (long id = 0; id < 5; id++) {
+      requestObserver.onNext(ParseRequest.newBuilder().setId(id)
+          .setStringMessage("cnf(test, axiom, p(f(X)) | X = Y).").build());
+    }
+    requestObserver.onCompleted();
+    assertTrue(finished.await(10, TimeUnit.SECONDS));
+    assertEquals(5, responses.size());
+    responses.values()
+        .forEach(response -> assertEquals(ParseResponse.ResultCase.NODE, response.getResultCase()));
+  }
+
+  @Test
+  public final void parseTptpClausesTest() {
+    final String problem = "cnf(a, axiom, p(X)).\ncnf(b, axiom, ~ q(f(X)) | X = Y).";
+    assertEquals(client.parseTptp(problem),
+        StreamingConverter.assemble(client.parseTptpClauses(problem)));
+  }
+
+  @Test
+  public final void warmUpTest() throws IOException, InterruptedException {
+    tearDown();
+    final TptpParserServer.TptpParserImpl parserService =
+        new TptpParserServer.TptpParserImpl(HANDWRITTEN);
+    parserService.warmUp(1);
+    startServer(parserService.bindService());
+    assertEquals("?", client.parseTptp("cnf(test, axiom, p(X)).").getValue());
+  }
+
+  @Test
+  public final void metricsTest() throws IOException, InterruptedException {
+    tearDown();
+    final ParserMetrics metrics = new ParserMetrics();
+    startServer(ServerInterceptors.intercept(
+        new TptpParserServer.TptpParserImpl(HANDWRITTEN, metrics, new GraphVocabulary())
+            .bindService(),
+        new MetricsInterceptor(metrics)));
+    client.parseTptp("cnf(test, axiom, p(X)).");
+    assertThrows(StatusRuntimeException.class, () -> client.parseTptp("cnf(test, axiom, p(X)"));
+    final String scrape = metrics.scrape();
+    Arrays.asList("tptp_calls_total{method=\"parseTptp\",code=\"OK\"} 1",
+        "tptp_calls_total{method=\"parseTptp\",code=\"INTERNAL\"} 1",
+        "tptp_phase_seconds_count{phase=\"parse\"} 1",
+        "tptp_phase_seconds_count{phase=\"send\"} 1", "tptp_request_bytes_count 2",
+        "tptp_response_bytes_count 1", "tptp_calls_in_flight 0", "tptp_syntax_errors_total 1")
+        .forEach(sample -> assertTrue(scrape.contains(sample + "\n"), sample));
+  }
+
+  @Test
+  public final void getProblemTest() throws IOException, InterruptedException {
+    tearDown();
+    final Node problem = Node.newBuilder().setValue("p")
+        .addChild(Node.newBuilder().setValue("f").addChild(Node.newBuilder().setValue("X")))
+        .build();
+    try (CorpusWriter corpusWriter = new CorpusWriter(corpusFolder, 1 << 20, OutputFormat.TREE)) {
+      corpusWriter.add(0, "P0", problem);
+    }
+    startServer(CorpusProblemMethod.bindService(new TptpParserServer.TptpParserImpl(XTEXT)
+        .bindService(), Corpus.open(corpusFolder)));
+    assertEquals(ParseResponse.newBuilder().setNode(problem).build(), client.getProblem("P0"));
+    assertEquals(Status.Code.NOT_FOUND, assertThrows(StatusRuntimeException.class,
+        () -> client.getProblem("P1")).getStatus().getCode());
+  }
+
+  @Test
+  public final void responseCacheTest() throws IOException, InterruptedException {
+    tearDown();
+    final ResponseCache responseCache = new ResponseCache(1 << 20);
+    startServer(CachingParseTptpMethod.bindService(new TptpParserServer.TptpParserImpl(XTEXT),
+        responseCache));
+    final String problem = "cnf(test, axiom, ~ p(f(X, g(Y, Z))) | X = Y | $false).";
+    assertEquals(client.parseTptp(problem), client.parseTptp(problem));
+    final ParserMetrics metrics = new ParserMetrics();
+    metrics.addCollector(responseCache::writeMetrics);
+    assertTrue(metrics.scrape().contains("tptp_response_cache_hits_total 1\n"));
+    assertEquals(1, client.parseBatch(Arrays.asList(problem)).size());
+    assertTrue(CachingParseTptpMethod.hasIncludes("include('Axioms/SYN000-0.ax').\n" + problem));
+  }
+}
@@ -0,0 +1,89 @@
+/*
+ *  Copyright 2023 Boris Shminke
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+
+package io.github.inpefess.tptpgrpc.tptp2proto;
+
+import java.util.HashSet;
+import com.theoremsandstuff.tptp.parser.cnf_constant;
+import com.theoremsandstuff.tptp.parser.cnf_equality;
+import com.theoremsandstuff.tptp.parser.cnf_expression;
+import com.theoremsandstuff.tptp.parser.cnf_not;
+import com.theoremsandstuff.tptp.parser.cnf_or;
+import com.theoremsandstuff.tptp.parser.cnf_var;
+import io.github.inpefess.tptpgrpc.tptpproto.Node;
+
+/**
+ * The original recursive converter of CNF clauses from the Xtext AST to protobuf.
+ *
+ * <p>It builds a {@link ParsingResult} with fresh sets of symbols for every subterm. It's not used
+ * by {@link Tptp2Proto} anymore and is kept as a reference for {@link ClauseConverter}.
+ */
+final class LegacyClauseConverter {
+  private final ParsingResult transform_term(final cnf_expression term) {
+    final ParsingResult parsedTerm = ParsingResult.emptyParsingResult();
+    if (term instanceof cnf_var) {
+      final String variableName = ((cnf_var) term).getName();
+      parsedTerm.addVariable(variableName);
+    } else {
+      final cnf_constant function = (cnf_constant) term;
+      parsedTerm.addFunctionOrPredicate(function.getName());
+      for (final cnf_expression argument : function.getParam()) {
+        parsedTerm.addChild(transform_term(argument));
+      }
+    }
+    return parsedTerm;
+  }
+
+  private final ParsingResult transform_predicate(final cnf_equality predicate) {
+    final ParsingResult parsedPredicate = ParsingResult.emptyParsingResult();
+    if (predicate.getExpR() != null) {
+      parsedPredicate.nodeBuilder.setValue(predicate.getEq());
+      parsedPredicate.addChild(transform_term(predicate.getExpL()));
+      parsedPredicate.addChild(transform_term(predicate.getExpR()));
+    } else {
+      if (predicate.getExpL() instanceof cnf_constant) {
+        parsedPredicate.addFunctionOrPredicate(predicate.getExpL().getName());
+        for (final cnf_expression argument : ((cnf_constant) predicate.getExpL()).getParam()) {
+          parsedPredicate.addChild(transform_term(argument));
+        }
+      } else {
+        parsedPredicate.nodeBuilder.setValue(predicate.getExpL().getCnf_exp());
+      }
+    }
+    return parsedPredicate;
+  }
+
+  final ParsingResult transform_clause(final cnf_or clause) {
+    final ParsingResult parsedClause = ParsingResult.emptyParsingResult();
+    parsedClause.nodeBuilder.setValue("|");
+    for (final cnf_not literal : clause.getOr()) {
+      final ParsingResult parsedLiteral = transform_predicate(literal.getLiteral());
+      if (literal.isNegated()) {
+        final Node.Builder negatedLiteral = Node.newBuilder();
+        negatedLiteral.setValue("~");
+        negatedLiteral.addChild(parsedLiteral.nodeBuilder.build());
+        parsedClause.addChild(new ParsingResult(negatedLiteral, parsedLiteral.variableNames,
+            parsedLiteral.functionAndPredicateNames));
+      } else {
+        parsedClause.addChild(parsedLiteral);
+      }
+    }
+    return new ParsingResult(
+        ClauseConverter.quantify(parsedClause.nodeBuilder.build(), "!",
+            parsedClause.variableNames),
+        new HashSet<>(), parsedClause.functionAndPredicateNames);
+  }
+}
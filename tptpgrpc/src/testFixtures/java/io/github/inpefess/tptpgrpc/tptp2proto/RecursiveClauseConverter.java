@@ -0,0 +1,100 @@
+/*
+ *  Copyright 2023 Boris Shminke
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+
+package io.github.inpefess.tptpgrpc.tptp2proto;
+
+import java.util.HashSet;
+import java.util.Set;
+import com.theoremsandstuff.tptp.parser.cnf_constant;
+import com.theoremsandstuff.tptp.parser.cnf_equality;
+import com.theoremsandstuff.tptp.parser.cnf_expression;
+import com.theoremsandstuff.tptp.parser.cnf_not;
+import com.theoremsandstuff.tptp.parser.cnf_or;
+import com.theoremsandstuff.tptp.parser.cnf_var;
+import io.github.inpefess.tptpgrpc.tptpproto.Node;
+
+/**
+ * A recursive single-pass converter of CNF clauses from the Xtext AST to protobuf.
+ *
+ * <p>It's not used by {@link Tptp2Proto} anymore since deep terms overflow the thread stack, and is
+ * kept as a reference for {@link ClauseConverter}.
+ */
+final class RecursiveClauseConverter {
+  private final Set<String> functionAndPredicateNames;
+  private Set<String> variableNames;
+
+  /**
+   * Constructor.
+   *
+   * @param functionAndPredicateNames a set collecting functions and predicates of a problem
+   */
+  RecursiveClauseConverter(final Set<String> functionAndPredicateNames) {
+    this.functionAndPredicateNames = functionAndPredicateNames;
+  }
+
+  /**
+   * Convert a clause.
+   *
+   * @param clause a disjunction of literals
+   * @return the clause universally quantified over its variables
+   */
+  final Node convertClause(final cnf_or clause) {
+    variableNames = new HashSet<>();
+    final Node.Builder disjunction = Node.newBuilder().setValue("|");
+    for (final cnf_not literal : clause.getOr()) {
+      final Node predicate = convertPredicate(literal.getLiteral());
+      if (literal.isNegated()) {
+        disjunction.addChild(Node.newBuilder().setValue("~").addChild(predicate));
+      } else {
+        disjunction.addChild(predicate);
+      }
+    }
+    return ClauseConverter.quantify(disjunction.build(), "!", variableNames).build();
+  }
+
+  private final Node convertPredicate(final cnf_equality predicate) {
+    final Node.Builder node = Node.newBuilder();
+    if (predicate.getExpR() != null) {
+      node.setValue(predicate.getEq());
+      node.addChild(convertTerm(predicate.getExpL()));
+      node.addChild(convertTerm(predicate.getExpR()));
+    } else if (predicate.getExpL() instanceof cnf_constant) {
+      convertFunction(node, (cnf_constant) predicate.getExpL());
+    } else {
+      node.setValue(predicate.getExpL().getCnf_exp());
+    }
+    return node.build();
+  }
+
+  private final Node convertTerm(final cnf_expression term) {
+    final Node.Builder node = Node.newBuilder();
+    if (term instanceof cnf_var) {
+      node.setValue(term.getName());
+      variableNames.add(term.getName());
+    } else {
+      convertFunction(node, (cnf_constant) term);
+    }
+    return node.build();
+  }
+
+  private final void convertFunction(final Node.Builder node, final cnf_constant function) {
+    node.setValue(function.getName());
+    functionAndPredicateNames.add(function.getName());
+    for (final cnf_expression argument : function.getParam()) {
+      node.addChild(convertTerm(argument));
+    }
+  }
+}